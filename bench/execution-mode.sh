@@ -0,0 +1,60 @@
+#!/usr/bin/env bash
+# Compares the default (platform thread) execution mode with the "virtual" profile on
+# GET /api/books, GET /api/books/search/page and POST /api/matches. Each mode gets a
+# fresh application instance against the same database; results are appended as JSON
+# lines to bench/results.jsonl.
+#
+# Required: a running PostgreSQL and Keycloak as configured in application.properties,
+# BENCH_TOKEN (access token of a provisioned user) and BENCH_BOOK_IDS (a range of books
+# not owned by that user, e.g. "1-20000"). The range is split in two halves, one per mode,
+# so the second mode never matches books the first one already matched; make each half
+# at least as large as the number of POSTs a mode sends. Matches are left in place, so
+# rerun against a freshly seeded database or a different range.
+#
+# Optional: BENCH_CLIENTS (400), BENCH_DURATION (30), BENCH_WARMUP (10),
+# BENCH_SEARCH_TERMS (comma-separated, "the,love,war,history,garden")
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+: "${BENCH_TOKEN:?set BENCH_TOKEN}"
+: "${BENCH_BOOK_IDS:?set BENCH_BOOK_IDS}"
+CLIENTS="${BENCH_CLIENTS:-400}"
+DURATION="${BENCH_DURATION:-30}"
+WARMUP="${BENCH_WARMUP:-10}"
+SEARCH_TERMS="${BENCH_SEARCH_TERMS:-the,love,war,history,garden}"
+RESULTS=bench/results.jsonl
+
+if [[ ! "$BENCH_BOOK_IDS" =~ ^([0-9]+)-([0-9]+)$ ]]; then
+  echo "BENCH_BOOK_IDS must be a range like 1-20000" >&2
+  exit 1
+fi
+FIRST_ID="${BASH_REMATCH[1]}"
+LAST_ID="${BASH_REMATCH[2]}"
+MID_ID=$(( (FIRST_ID + LAST_ID) / 2 ))
+
+./mvnw -q -DskipTests package
+./mvnw -q test-compile
+JAR=$(ls target/bookexchange-*.jar | head -n 1)
+
+run_mode() {
+  local label="$1" profiles="$2" book_ids="$3"
+  # Pinned virtual threads are reported on stderr in the app log
+  java -Djdk.tracePinnedThreads=short -jar "$JAR" --spring.profiles.active="$profiles" \
+      > "bench/app-$label.log" 2>&1 &
+  local pid=$!
+  trap 'kill $pid 2>/dev/null || true' EXIT
+  until curl -s -o /dev/null "http://localhost:8080/api/"; do sleep 1; done
+
+  java -cp target/test-classes \
+      -Dbench.label="$label" -Dbench.token="$BENCH_TOKEN" -Dbench.bookIds="$book_ids" \
+      -Dbench.clients="$CLIENTS" -Dbench.durationSeconds="$DURATION" -Dbench.warmupSeconds="$WARMUP" \
+      -Dbench.searchTerms="$SEARCH_TERMS" \
+      com.example.bookexchange.bench.HttpLoadBenchmark | tee -a "$RESULTS"
+
+  kill "$pid"
+  wait "$pid" 2>/dev/null || true
+  trap - EXIT
+}
+
+run_mode blocking default "$FIRST_ID-$MID_ID"
+run_mode virtual virtual "$((MID_ID + 1))-$LAST_ID"
@@ -0,0 +1,88 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.model.entity.Book;
+import com.example.bookexchange.model.entity.User;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+
+/**
+ * Deterministic fixtures shared by the benchmarks. Sizes are chosen by the benchmarks'
+ * {@code @Param}s; the seed is fixed so runs are comparable between releases.
+ */
+final class BenchmarkFixtures {
+    static final long SEED = 42L;
+    // Roughly what we see in production: ten listed books per user
+    static final int BOOKS_PER_USER = 10;
+    // Enough pre-drawn positions that the JIT cannot specialise on a single element
+    static final int ACCESS_PATTERN_SIZE = 1 << 16;
+
+    private BenchmarkFixtures() {
+    }
+
+    static List<User> users(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            User user = new User();
+            user.setId((long) i + 1);
+            user.setUsername("reader" + (i + 1));
+            user.setEmail("reader" + (i + 1) + "@example.com");
+            users.add(user);
+        }
+        return users;
+    }
+
+    static List<Book> books(int count, List<User> owners, SplittableRandom random) {
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Book book = new Book();
+            book.setId((long) i + 1);
+            book.setTitle("The Collected Stories, Volume " + (i + 1));
+            book.setAuthor("Author " + random.nextInt(count / 20 + 1));
+            book.setDescription("A well kept paperback copy with a few pencil notes in the margins.");
+            book.setPictureUrl("https://cdn.example.com/books/" + (i + 1) + ".jpg");
+            book.setOwner(owners.get(i / BOOKS_PER_USER % owners.size()));
+            book.setLikeCount(random.nextInt(500));
+            book.setMatchCount(random.nextInt(50));
+            book.setExchangeCount(random.nextInt(10));
+            books.add(book);
+        }
+        return books;
+    }
+
+    static int[] accessPattern(int bound, SplittableRandom random) {
+        int[] positions = new int[ACCESS_PATTERN_SIZE];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = random.nextInt(bound);
+        }
+        return positions;
+    }
+
+    // Counter service with unflushed deltas on roughly one book in a hundred
+    static BookCounterService countersWithPending(int books, SplittableRandom random) {
+        BookCounterService counters = new BookCounterService(null, null);
+        for (int i = 0; i < books / 100; i++) {
+            counters.addPending(BookCounterService.Counter.LIKES, (long) random.nextInt(books) + 1, 1);
+        }
+        return counters;
+    }
+
+    /**
+     * Minimal repository stand-in: answers the named methods and fails on anything else,
+     * so a benchmark can never silently measure an unexpected code path.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T stub(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Function<Object[], Object> answer = answers.get(method.getName());
+            if (answer == null) {
+                throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+            }
+            return answer.apply(args);
+        });
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.bookexchange.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups and incremental updates on the co-occurrence index. Each user matches on about
+ * twenty books, and books get skewed interest: low ids are wanted far more often than
+ * high ones, as with real bestsellers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+public class CoOccurrenceBenchmark {
+    private static final int MATCHES_PER_USER = 20;
+
+    @Param({"1000000", "10000000"})
+    int matches;
+
+    private CoOccurrenceIndex index;
+    private long[] bookIds;
+    private long[] userIds;
+    private int books;
+    private long nextMatchId;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(BenchmarkFixtures.SEED);
+        int users = Math.max(1, matches / MATCHES_PER_USER);
+        books = Math.max(1, matches / BenchmarkFixtures.BOOKS_PER_USER);
+
+        index = new CoOccurrenceIndex(null, 50, 200, null, 300_000);
+        for (int i = 0; i < matches; i++) {
+            index.matchCreated(++nextMatchId, (long) i / MATCHES_PER_USER + 1, skewedBook(random));
+        }
+
+        bookIds = new long[BenchmarkFixtures.ACCESS_PATTERN_SIZE];
+        userIds = new long[BenchmarkFixtures.ACCESS_PATTERN_SIZE];
+        for (int i = 0; i < bookIds.length; i++) {
+            bookIds[i] = skewedBook(random);
+            userIds[i] = random.nextInt(users) + 1;
+        }
+    }
+
+    private long skewedBook(SplittableRandom random) {
+        return random.nextInt(random.nextInt(books) + 1) + 1;
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (BenchmarkFixtures.ACCESS_PATTERN_SIZE - 1);
+        return cursor;
+    }
+
+    @Benchmark
+    public long[] similar() {
+        return index.similar(bookIds[next()], 20);
+    }
+
+    @Benchmark
+    public long[] recommendFor() {
+        return index.recommendFor(userIds[next()], 20);
+    }
+
+    // One new match for an existing user: pairs it with their history and re-prunes
+    @Benchmark
+    public void matchCreated() {
+        int i = next();
+        index.matchCreated(++nextMatchId, userIds[i], bookIds[(i + 1) & (BenchmarkFixtures.ACCESS_PATTERN_SIZE - 1)]);
+    }
+}
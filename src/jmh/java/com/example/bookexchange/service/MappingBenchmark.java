@@ -0,0 +1,112 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.model.dto.response.BookResponse;
+import com.example.bookexchange.model.dto.response.ExchangeResponse;
+import com.example.bookexchange.model.dto.response.MatchResponse;
+import com.example.bookexchange.model.entity.Book;
+import com.example.bookexchange.model.entity.BookMatch;
+import com.example.bookexchange.model.entity.Exchange;
+import com.example.bookexchange.model.entity.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO mapping for books, exchanges and matches. Each invocation maps an
+ * entity picked from the fixture, so larger catalogs also show cache effects.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class MappingBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    int books;
+
+    private List<Book> catalog;
+    private List<Exchange> exchanges;
+    private List<BookMatch> matches;
+    private int[] bookPattern;
+    private int[] exchangePattern;
+    private int[] matchPattern;
+    private int cursor;
+
+    private BookService bookService;
+    private ExchangeService exchangeService;
+    private MatchService matchService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(BenchmarkFixtures.SEED);
+        List<User> users = BenchmarkFixtures.users(Math.max(2, books / BenchmarkFixtures.BOOKS_PER_USER));
+        catalog = BenchmarkFixtures.books(books, users, random);
+
+        exchanges = new ArrayList<>(books / 2);
+        for (int i = 0; i + 1 < books; i += 2) {
+            Exchange exchange = new Exchange();
+            exchange.setId((long) i / 2 + 1);
+            exchange.setBook1(catalog.get(i));
+            exchange.setBook2(catalog.get(random.nextInt(books)));
+            exchange.setUser1(exchange.getBook2().getOwner());
+            exchange.setUser2(exchange.getBook1().getOwner());
+            exchanges.add(exchange);
+        }
+
+        ReciprocalMatchIndex index = new ReciprocalMatchIndex(null);
+        matches = new ArrayList<>(books);
+        for (int i = 0; i < books; i++) {
+            BookMatch match = new BookMatch();
+            match.setId((long) i + 1);
+            match.setUser(users.get(random.nextInt(users.size())));
+            match.setInterestedInBook(catalog.get(random.nextInt(books)));
+            matches.add(match);
+            index.matchActivated(match.getId(), match.getUser().getId(), match.getInterestedInBook().getOwner().getId());
+        }
+
+        BookCounterService counters = BenchmarkFixtures.countersWithPending(books, random);
+        bookService = new BookService(null, null, counters, null, null, null);
+        exchangeService = new ExchangeService(null, null, null, index, bookService, counters, null, null, null, null, null, null);
+        matchService = new MatchService(null, null, null, index, new TradeCycleFinder(index), bookService, counters, null, null, null);
+
+        bookPattern = BenchmarkFixtures.accessPattern(catalog.size(), random);
+        exchangePattern = BenchmarkFixtures.accessPattern(exchanges.size(), random);
+        matchPattern = BenchmarkFixtures.accessPattern(matches.size(), random);
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (BenchmarkFixtures.ACCESS_PATTERN_SIZE - 1);
+        return cursor;
+    }
+
+    @Benchmark
+    public BookResponse mapToBookResponse() {
+        return bookService.mapToBookResponse(catalog.get(bookPattern[next()]));
+    }
+
+    @Benchmark
+    public ExchangeResponse mapToExchangeResponse() {
+        return exchangeService.mapToExchangeResponse(exchanges.get(exchangePattern[next()]));
+    }
+
+    @Benchmark
+    public MatchResponse mapToMatchResponse() {
+        return matchService.mapToMatchResponse(matches.get(matchPattern[next()]));
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.model.entity.Review;
+import com.example.bookexchange.model.entity.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link User#updateAverageRating()} reads the running rating aggregates, so its cost must
+ * stay flat as a user's review count grows. The recompute baseline averages every received
+ * review, as the method did before the aggregates existed, to keep the gap visible.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class RatingAggregateBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int reviews;
+
+    private User user;
+    private List<Review> received;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(BenchmarkFixtures.SEED);
+        user = new User();
+        received = new ArrayList<>(reviews);
+        long sum = 0;
+        for (int i = 0; i < reviews; i++) {
+            Review review = new Review();
+            review.setRating(random.nextInt(5) + 1);
+            received.add(review);
+            sum += review.getRating();
+        }
+        user.setRatingSum(sum);
+        user.setRatingCount(reviews);
+    }
+
+    @Benchmark
+    public Double updateAverageRating() {
+        user.updateAverageRating();
+        return user.getAverageRating();
+    }
+
+    @Benchmark
+    public double recomputeFromReviews() {
+        return received.stream().mapToInt(Review::getRating).average().orElse(0.0);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.bookexchange.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reciprocal-match lookups and bounded trade-cycle searches on the in-memory want-graph.
+ * The graph has one active match per listed book, spread over one user per ten books.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ReciprocalMatchBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    int books;
+
+    private ReciprocalMatchIndex index;
+    private TradeCycleFinder finder;
+    private long[] askers;
+    private long[] owners;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(BenchmarkFixtures.SEED);
+        int users = Math.max(2, books / BenchmarkFixtures.BOOKS_PER_USER);
+
+        index = new ReciprocalMatchIndex(null);
+        for (int i = 0; i < books; i++) {
+            long user = random.nextInt(users) + 1;
+            long owner = random.nextInt(users) + 1;
+            if (user != owner) {
+                index.matchActivated((long) i + 1, user, owner);
+            }
+        }
+        finder = new TradeCycleFinder(index);
+
+        askers = new long[BenchmarkFixtures.ACCESS_PATTERN_SIZE];
+        owners = new long[BenchmarkFixtures.ACCESS_PATTERN_SIZE];
+        for (int i = 0; i < askers.length; i++) {
+            askers[i] = random.nextInt(users) + 1;
+            owners[i] = random.nextInt(users) + 1;
+        }
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (BenchmarkFixtures.ACCESS_PATTERN_SIZE - 1);
+        return cursor;
+    }
+
+    @Benchmark
+    public boolean hasReciprocal() {
+        int i = next();
+        return index.hasReciprocal(askers[i], owners[i]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<List<Long>> findTradeCycles() {
+        return finder.findCyclesFor(askers[next()], 20);
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.model.dto.response.BookResponse;
+import com.example.bookexchange.model.dto.response.CursorPageResponse;
+import com.example.bookexchange.model.entity.Book;
+import com.example.bookexchange.repository.BookRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The in-JVM part of the search path: turning ranked ids into ordered responses with
+ * pending counters applied, and building cursor pages. The trigram query itself runs
+ * in PostgreSQL and is measured end to end by the GET /api/books/search/page phase of
+ * HttpLoadBenchmark (bench/execution-mode.sh); here the repository returns pre-ranked
+ * ids from the fixture and fresh projections, as the database would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SearchBenchmark {
+    private static final int RESULT_SETS = 256;
+
+    @Param({"10000", "100000", "1000000"})
+    int books;
+
+    private BookService bookService;
+    private List<List<Long>> rankedResults;
+    private List<BookResponse> projections;
+    private int cursor;
+    private List<Long> current;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(BenchmarkFixtures.SEED);
+        List<Book> catalog = BenchmarkFixtures.books(books,
+                BenchmarkFixtures.users(Math.max(2, books / BenchmarkFixtures.BOOKS_PER_USER)), random);
+        BookCounterService counters = BenchmarkFixtures.countersWithPending(books, random);
+        BookService mapper = new BookService(null, null, counters, null, null, null);
+        projections = new ArrayList<>(books);
+        for (Book book : catalog) {
+            projections.add(mapper.mapToBookResponse(book));
+        }
+
+        // Result sets of the maximum search size, in rank order rather than id order
+        rankedResults = new ArrayList<>(RESULT_SETS);
+        for (int i = 0; i < RESULT_SETS; i++) {
+            List<Long> ids = new ArrayList<>(BookService.MAX_SEARCH_RESULTS);
+            for (int j = 0; j < BookService.MAX_SEARCH_RESULTS; j++) {
+                ids.add((long) random.nextInt(books) + 1);
+            }
+            rankedResults.add(ids.stream().distinct().collect(Collectors.toList()));
+        }
+
+        BookRepository repository = BenchmarkFixtures.stub(BookRepository.class, Map.of(
+                "searchAvailableBookIds", args -> current,
+                "searchAvailableBookIdsAfter", args -> current.subList(0, Math.min(current.size(), (Integer) args[3])),
+                "findBookResponsesByIdIn", args -> project((Collection<?>) args[0])));
+        bookService = new BookService(repository, null, counters, null, null, null);
+    }
+
+    // The database returns new rows in index order, not in rank order
+    private List<BookResponse> project(Collection<?> ids) {
+        List<BookResponse> rows = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            BookResponse source = projections.get((int) ((Long) id - 1));
+            BookResponse row = new BookResponse();
+            row.setId(source.getId());
+            row.setTitle(source.getTitle());
+            row.setAuthor(source.getAuthor());
+            row.setDescription(source.getDescription());
+            row.setPictureUrl(source.getPictureUrl());
+            row.setOwnerId(source.getOwnerId());
+            row.setOwnerUsername(source.getOwnerUsername());
+            row.setLikeCount(source.getLikeCount());
+            row.setMatchCount(source.getMatchCount());
+            row.setExchangeCount(source.getExchangeCount());
+            row.setAvailable(source.isAvailable());
+            rows.add(row);
+        }
+        rows.sort(Comparator.comparing(BookResponse::getId));
+        return rows;
+    }
+
+    private void nextResultSet() {
+        cursor = (cursor + 1) % RESULT_SETS;
+        current = rankedResults.get(cursor);
+    }
+
+    @Benchmark
+    public List<BookResponse> searchBooks() {
+        nextResultSet();
+        return bookService.searchBooks(1L, "stories");
+    }
+
+    @Benchmark
+    public CursorPageResponse<BookResponse> searchBooksPage() {
+        nextResultSet();
+        return bookService.searchBooksPage(1L, "stories", null, BookService.DEFAULT_PAGE_SIZE);
+    }
+}
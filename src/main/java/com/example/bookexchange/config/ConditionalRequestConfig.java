@@ -0,0 +1,20 @@
+package com.example.bookexchange.config;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+
+@Configuration
+public class ConditionalRequestConfig {
+
+    // Catalog lists have no single version to compare, so their ETag is a hash of the rendered
+    // body: the query still runs, but an unchanged page goes back as a bodiless 304
+    @Bean
+    public FilterRegistrationBean<ShallowEtagHeaderFilter> catalogEtagFilter() {
+        FilterRegistrationBean<ShallowEtagHeaderFilter> registration =
+                new FilterRegistrationBean<>(new ShallowEtagHeaderFilter());
+        registration.addUrlPatterns("/api/books", "/api/books/page", "/api/books/search", "/api/books/search/page");
+        return registration;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.bookexchange.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+@Configuration
+public class MetricsConfig {
+
+    // Backs the class-level @Timed on the services: one timer per service method
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    // Pool gauges come from the Hikari binder; this adds the virtual-thread concurrency cap when enabled
+    @Bean
+    public MeterBinder databasePermitMetrics(DataSource dataSource) {
+        return registry -> {
+            if (dataSource instanceof ConcurrencyLimitedDataSource limited) {
+                Gauge.builder("bookexchange.db.permits.available", limited, ConcurrencyLimitedDataSource::availablePermits)
+                        .description("Database permits left under bookexchange.db.max-concurrency")
+                        .register(registry);
+            }
+        };
+    }
+
+    // Replica lag as last measured by ReplicaLagMonitor; -1 while a replica is unreachable.
+    // The replica pools are not beans, so their hikaricp.* meters (pool=replica-N) are bound here.
+    @Bean
+    public MeterBinder replicaLagMetrics(DataSource dataSource) throws SQLException {
+        ReplicaRoutingDataSource router = dataSource.isWrapperFor(ReplicaRoutingDataSource.class)
+                ? dataSource.unwrap(ReplicaRoutingDataSource.class)
+                : null;
+        return registry -> {
+            if (router == null) {
+                return;
+            }
+            for (int i = 0; i < router.replicaCount(); i++) {
+                int replica = i;
+                Gauge.builder("bookexchange.db.replica.lag", router, r -> r.replicaLagMs(replica))
+                        .description("Replication lag of a read replica in milliseconds")
+                        .baseUnit("milliseconds")
+                        .tag("replica", String.valueOf(replica))
+                        .register(registry);
+                if (router.replica(i) instanceof HikariDataSource pool
+                        && pool.getMetricRegistry() == null && pool.getMetricsTrackerFactory() == null) {
+                    pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.bookexchange.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+// Active whenever bookexchange.replica.urls lists at least one read replica
+@Configuration
+@ConditionalOnProperty(name = "bookexchange.replica.urls")
+public class ReadReplicaConfig {
+
+    @Bean
+    public static BeanPostProcessor replicaRoutingDataSourcePostProcessor(Environment environment) {
+        return new ReplicaRoutingPostProcessor(environment);
+    }
+
+    /**
+     * Wraps the primary pool in a {@link ReplicaRoutingDataSource}. Ordered so that it runs
+     * before the concurrency cap of {@link DatabaseConcurrencyConfig}, which then limits
+     * primary and replica connections together.
+     */
+    static class ReplicaRoutingPostProcessor implements BeanPostProcessor, Ordered {
+        private final Environment environment;
+
+        ReplicaRoutingPostProcessor(Environment environment) {
+            this.environment = environment;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!"dataSource".equals(beanName) || !(bean instanceof DataSource primary)) {
+                return bean;
+            }
+            long maxLagMs = environment.getProperty("bookexchange.replica.max-lag-ms", Long.class, 1000L);
+            return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replicas(), maxLagMs));
+        }
+
+        private List<DataSource> replicas() {
+            String[] urls = environment.getRequiredProperty("bookexchange.replica.urls", String[].class);
+            String username = environment.getProperty("bookexchange.replica.username",
+                    environment.getProperty("spring.datasource.username"));
+            String password = environment.getProperty("bookexchange.replica.password",
+                    environment.getProperty("spring.datasource.password"));
+            int poolSize = environment.getProperty("bookexchange.replica.pool-size", Integer.class,
+                    environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10));
+
+            List<DataSource> replicas = new ArrayList<>(urls.length);
+            for (int i = 0; i < urls.length; i++) {
+                HikariDataSource replica = DataSourceBuilder.create()
+                        .type(HikariDataSource.class)
+                        .url(urls[i].trim())
+                        .username(username)
+                        .password(password)
+                        .driverClassName(environment.getProperty("spring.datasource.driver-class-name"))
+                        .build();
+                replica.setPoolName("replica-" + i);
+                replica.setMaximumPoolSize(poolSize);
+                replica.setReadOnly(true);
+                // Do not fail startup on a replica that is down; the lag monitor keeps it out of rotation
+                replica.setInitializationFailTimeout(-1);
+                replicas.add(replica);
+            }
+            return replicas;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+}
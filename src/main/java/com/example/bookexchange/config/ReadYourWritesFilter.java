@@ -0,0 +1,101 @@
+package com.example.bookexchange.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Keeps a user's reads on the primary for bookexchange.replica.sticky-ms after their own
+ * write, so they see it even while the replicas catch up, and keeps every statement of a
+ * write request on the primary. Writers are remembered by this instance and, for reads
+ * that land on another instance, by a cookie holding the time the pin runs out.
+ */
+@Component
+@ConditionalOnProperty(name = "bookexchange.replica.urls")
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+    static final String PRIMARY_UNTIL_COOKIE = "primary-until";
+
+    private final long stickyMs;
+    private final Cache<Long, Boolean> recentWriters;
+
+    public ReadYourWritesFilter(@Value("${bookexchange.replica.sticky-ms:5000}") long stickyMs) {
+        this.stickyMs = stickyMs;
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(stickyMs))
+                .maximumSize(100_000)
+                .build();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Long userId = currentUserId();
+        boolean write = !SAFE_METHODS.contains(request.getMethod());
+        if (write) {
+            // Set before the response can be committed; anonymous writers are pinned this way only
+            pinClient(response);
+        }
+        ReplicaRoutingDataSource.usePrimary(write
+                || (userId != null && recentWriters.getIfPresent(userId) != null)
+                || pinnedByCookie(request));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReplicaRoutingDataSource.usePrimary(false);
+            // Failed writes may still have committed part of their work, so they count too
+            if (write && userId != null) {
+                recentWriters.put(userId, Boolean.TRUE);
+            }
+        }
+    }
+
+    private void pinClient(HttpServletResponse response) {
+        Cookie cookie = new Cookie(PRIMARY_UNTIL_COOKIE, Long.toString(System.currentTimeMillis() + stickyMs));
+        cookie.setMaxAge((int) Math.max(1, (stickyMs + 999) / 1000));
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        response.addCookie(cookie);
+    }
+
+    private static boolean pinnedByCookie(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return false;
+        }
+        for (Cookie cookie : cookies) {
+            if (PRIMARY_UNTIL_COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue()) > System.currentTimeMillis();
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    private Long currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof Jwt jwt)) {
+            return null;
+        }
+        String userId = jwt.getClaimAsString("user_id");
+        return userId != null ? Long.parseLong(userId) : null;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.bookexchange.config;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+// Re-measures replica lag so that stale or unreachable replicas leave the read rotation
+@Component
+@ConditionalOnProperty(name = "bookexchange.replica.urls")
+public class ReplicaLagMonitor {
+    private final ReplicaRoutingDataSource router;
+
+    public ReplicaLagMonitor(DataSource dataSource) throws SQLException {
+        this.router = dataSource.unwrap(ReplicaRoutingDataSource.class);
+    }
+
+    @Scheduled(fixedDelayString = "${bookexchange.replica.lag-check-interval-ms:1000}")
+    public void checkReplicas() {
+        router.checkReplicas();
+    }
+
+    @PreDestroy
+    public void closeReplicas() {
+        router.close();
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.bookexchange.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sends read-only transactions to a replica whose last measured lag is within the
+ * tolerance, round-robin, and everything else to the primary. Reads fall back to the
+ * primary when no replica qualifies, when the current request is pinned to it (see
+ * {@link ReadYourWritesFilter}) or when the chosen replica refuses a connection.
+ *
+ * The read-only flag is only known once the transaction has started, so this must sit
+ * behind a LazyConnectionDataSourceProxy that defers fetching the physical connection
+ * until the first statement.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+    private static final String PRIMARY = "primary";
+    private static final long UNREACHABLE = Long.MAX_VALUE;
+
+    private static final String PRIMARY_LSN_QUERY = "SELECT pg_current_wal_lsn()";
+    // Replay lag in ms against the primary's WAL position read just before: zero once the
+    // replica has replayed up to it, so an idle primary does not make its replicas look
+    // stale, and -1 when it is behind with no streaming WAL receiver, since a cut-off
+    // replica never catches up. Reading pg_stat_wal_receiver needs pg_read_all_stats.
+    private static final String LAG_QUERY = """
+            SELECT CASE
+                WHEN NOT pg_is_in_recovery() THEN 0
+                WHEN pg_last_wal_replay_lsn() >= CAST(? AS pg_lsn) THEN 0
+                WHEN NOT EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming') THEN -1
+                ELSE COALESCE(CAST(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 AS BIGINT), -1)
+            END""";
+    private static final int LAG_QUERY_TIMEOUT_SECONDS = 2;
+
+    private static final ThreadLocal<Boolean> PRIMARY_ONLY = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final long maxLagMs;
+    private final AtomicLongArray lagMs;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, long maxLagMs) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.maxLagMs = maxLagMs;
+        // Replicas take no reads until the first lag check has seen them
+        this.lagMs = new AtomicLongArray(replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            lagMs.set(i, UNREACHABLE);
+        }
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < this.replicas.size(); i++) {
+            targets.put(i, this.replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    // Pins reads on the current thread to the primary until called again with false
+    public static void usePrimary(boolean primaryOnly) {
+        if (primaryOnly) {
+            PRIMARY_ONLY.set(Boolean.TRUE);
+        } else {
+            PRIMARY_ONLY.remove();
+        }
+    }
+
+    /**
+     * Pins reads on the current thread to the primary until the returned pin is closed,
+     * leaving any pin already in place (such as a request's) untouched. For readers that
+     * must not miss a recent commit, like the in-memory index rebuilds.
+     */
+    public static PrimaryPin pinToPrimary() {
+        Boolean previous = PRIMARY_ONLY.get();
+        PRIMARY_ONLY.set(Boolean.TRUE);
+        return () -> {
+            if (previous == null) {
+                PRIMARY_ONLY.remove();
+            }
+        };
+    }
+
+    public interface PrimaryPin extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || PRIMARY_ONLY.get() != null) {
+            return PRIMARY;
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(nextReplica.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            int candidate = (start + i) % size;
+            if (lagMs.get(candidate) <= maxLagMs) {
+                return candidate;
+            }
+        }
+        return PRIMARY;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Object key = determineCurrentLookupKey();
+        if (PRIMARY.equals(key)) {
+            return primary.getConnection();
+        }
+        int replica = (Integer) key;
+        try {
+            return replicas.get(replica).getConnection();
+        } catch (SQLException e) {
+            markUnreachable(replica, e);
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        // Replica pools carry their own credentials, so explicit ones only apply to the primary
+        return primary.getConnection(username, password);
+    }
+
+    // Measures every replica's lag; called periodically by ReplicaLagMonitor
+    public void checkReplicas() {
+        String primaryLsn;
+        try (Connection connection = primary.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(LAG_QUERY_TIMEOUT_SECONDS);
+            try (ResultSet rs = statement.executeQuery(PRIMARY_LSN_QUERY)) {
+                rs.next();
+                primaryLsn = rs.getString(1);
+            }
+        } catch (SQLException e) {
+            // Nothing to measure against; the last readings stand until the primary answers
+            log.warn("Could not read the primary's WAL position to check replica lag: {}", e.getMessage());
+            return;
+        }
+        for (int i = 0; i < replicas.size(); i++) {
+            try (Connection connection = replicas.get(i).getConnection();
+                 PreparedStatement statement = connection.prepareStatement(LAG_QUERY)) {
+                statement.setQueryTimeout(LAG_QUERY_TIMEOUT_SECONDS);
+                statement.setString(1, primaryLsn);
+                try (ResultSet rs = statement.executeQuery()) {
+                    rs.next();
+                    long lag = rs.getLong(1);
+                    if (lag < 0) {
+                        markUnhealthy(i);
+                        continue;
+                    }
+                    long previous = lagMs.getAndSet(i, lag);
+                    if (previous > maxLagMs && lag <= maxLagMs) {
+                        log.info("Replica {} is serving reads again ({} ms behind)", i, lag);
+                    } else if (previous <= maxLagMs && lag > maxLagMs) {
+                        log.warn("Replica {} is {} ms behind, over the {} ms tolerance; reads go elsewhere", i, lag, maxLagMs);
+                    }
+                }
+            } catch (SQLException e) {
+                markUnreachable(i, e);
+            }
+        }
+    }
+
+    public int replicaCount() {
+        return replicas.size();
+    }
+
+    public DataSource replica(int replica) {
+        return replicas.get(replica);
+    }
+
+    // Last measured lag in ms, or -1 when the replica is unreachable or cut off from the primary
+    public long replicaLagMs(int replica) {
+        long lag = lagMs.get(replica);
+        return lag == UNREACHABLE ? -1 : lag;
+    }
+
+    @Override
+    public void close() {
+        for (DataSource replica : replicas) {
+            if (replica instanceof Closeable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.warn("Failed to close replica pool", e);
+                }
+            }
+        }
+    }
+
+    private void markUnhealthy(int replica) {
+        if (lagMs.getAndSet(replica, UNREACHABLE) != UNREACHABLE) {
+            log.warn("Replica {} is behind the primary and not streaming WAL; reads go elsewhere", replica);
+        }
+    }
+
+    private void markUnreachable(int replica, SQLException cause) {
+        if (lagMs.getAndSet(replica, UNREACHABLE) != UNREACHABLE) {
+            log.warn("Replica {} is unreachable; reads go elsewhere: {}", replica, cause.getMessage());
+        }
+    }
+}
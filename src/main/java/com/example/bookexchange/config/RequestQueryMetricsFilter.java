@@ -0,0 +1,82 @@
+package com.example.bookexchange.config;
+
+import com.example.bookexchange.util.QueryCounters;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Records how much JPA work each request did, tagged like http.server.requests
+ * (method and URI pattern), so N+1 regressions show up per endpoint. Requests that
+ * go over their {@link StatementBudget} are counted and, in dev, logged.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RequestQueryMetricsFilter extends OncePerRequestFilter {
+    private final MeterRegistry meterRegistry;
+
+    @Value("${bookexchange.statement-budget.warn:false}")
+    private boolean warnOverBudget;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        QueryCounters counters = QueryCounters.start();
+        request.setAttribute(QueryCounters.REQUEST_ATTRIBUTE, counters);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            QueryCounters.clear();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            if (pattern != null) {
+                String uri = pattern.toString();
+                summary("bookexchange.request.statements", "SQL statements issued by Hibernate per request",
+                        request.getMethod(), uri).record(counters.getStatements());
+                summary("bookexchange.request.entity.loads", "Entities loaded by Hibernate per request",
+                        request.getMethod(), uri).record(counters.getEntityLoads());
+                summary("bookexchange.request.collection.fetches", "Lazy collections initialized per request",
+                        request.getMethod(), uri).record(counters.getCollectionFetches());
+                checkBudget(request, uri, counters);
+            }
+        }
+    }
+
+    private void checkBudget(HttpServletRequest request, String uri, QueryCounters counters) {
+        Object handler = request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+        StatementBudget budget = handler instanceof HandlerMethod method
+                ? method.getMethodAnnotation(StatementBudget.class)
+                : null;
+        if (budget == null || counters.getStatements() <= budget.value()) {
+            return;
+        }
+        meterRegistry.counter("bookexchange.request.statement.budget.exceeded",
+                "method", request.getMethod(), "uri", uri).increment();
+        if (warnOverBudget) {
+            log.warn("{} {} issued {} SQL statements, over its budget of {} ({} entity loads, {} collection fetches)",
+                    request.getMethod(), uri, counters.getStatements(), budget.value(),
+                    counters.getEntityLoads(), counters.getCollectionFetches());
+        }
+    }
+
+    private DistributionSummary summary(String name, String description, String method, String uri) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .tag("method", method)
+                .tag("uri", uri)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.bookexchange.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Maximum number of SQL statements Hibernate may issue while serving the annotated
+ * handler, independent of how many rows it returns. Exceeding it is logged when
+ * {@code bookexchange.statement-budget.warn} is on, and counted in
+ * {@code bookexchange.request.statement.budget.exceeded}.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface StatementBudget {
+    int value();
+}
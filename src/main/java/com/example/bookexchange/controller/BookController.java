@@ -1,18 +1,37 @@
 package com.example.bookexchange.controller;
 
+import com.example.bookexchange.config.StatementBudget;
 import com.example.bookexchange.model.dto.request.BookRequest;
+import com.example.bookexchange.model.dto.response.BookImportResponse;
 import com.example.bookexchange.model.dto.response.BookResponse;
+import com.example.bookexchange.model.dto.response.CursorPageResponse;
+import com.example.bookexchange.service.BookImportService;
 import com.example.bookexchange.service.BookService;
+import com.example.bookexchange.service.EntityTagService;
+import com.example.bookexchange.service.LikeService;
+import com.example.bookexchange.service.RecommendationService;
+import com.example.bookexchange.service.TrendingBooks;
+import com.example.bookexchange.util.ConditionalRequests;
+import com.example.bookexchange.util.JsonLinesWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -21,7 +40,13 @@ import java.util.List;
 @Tag(name = "Book Controller", description = "Endpoints for managing books")
 public class BookController {
     private final BookService bookService;
+    private final BookImportService bookImportService;
+    private final EntityTagService entityTagService;
+    private final RecommendationService recommendationService;
+    private final LikeService likeService;
+    private final ObjectMapper objectMapper;
 
+    @StatementBudget(1)
     @GetMapping
     @Operation(summary = "Get all available books")
     public ResponseEntity<List<BookResponse>> getAvailableBooks(Authentication authentication) {
@@ -29,6 +54,31 @@ public class BookController {
         return ResponseEntity.ok(bookService.getAvailableBooks(userId));
     }
 
+    @StatementBudget(1)
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream all available books as newline-delimited JSON (Accept: application/x-ndjson)")
+    public void streamAvailableBooks(
+            Authentication authentication,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        Long userId = getUserIdFromToken(authentication);
+        // Hashing the body for an ETag would buffer all of it, which is what streaming avoids
+        ShallowEtagHeaderFilter.disableContentCaching(request);
+        JsonLinesWriter.<BookResponse>stream(objectMapper, response, sink -> bookService.streamAvailableBooks(userId, sink));
+    }
+
+    @PostMapping(value = "/import", consumes = {BookImportService.CSV, BookImportService.NDJSON})
+    @Operation(summary = "Bulk import books from a CSV (title,author,description,pictureUrl) or NDJSON body")
+    public ResponseEntity<BookImportResponse> importBooks(
+            Authentication authentication,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body
+    ) {
+        Long userId = getUserIdFromToken(authentication);
+        return ResponseEntity.ok(bookImportService.importBooks(userId, contentType, body));
+    }
+
     @GetMapping("/search")
     @Operation(summary = "Search books by title or author")
     public ResponseEntity<List<BookResponse>> searchBooks(
@@ -39,10 +89,97 @@ public class BookController {
         return ResponseEntity.ok(bookService.searchBooks(userId, term));
     }
 
+    @StatementBudget(1)
+    @GetMapping("/page")
+    @Operation(summary = "Get available books one page at a time using an opaque cursor")
+    public ResponseEntity<CursorPageResponse<BookResponse>> getAvailableBooksPage(
+            Authentication authentication,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        Long userId = getUserIdFromToken(authentication);
+        return ResponseEntity.ok(bookService.getAvailableBooksPage(userId, cursor, size));
+    }
+
+    @GetMapping("/search/page")
+    @Operation(summary = "Search books by title or author one page at a time using an opaque cursor")
+    public ResponseEntity<CursorPageResponse<BookResponse>> searchBooksPage(
+            Authentication authentication,
+            @RequestParam String term,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        Long userId = getUserIdFromToken(authentication);
+        return ResponseEntity.ok(bookService.searchBooksPage(userId, term, cursor, size));
+    }
+
+    @StatementBudget(2)
+    @GetMapping("/nearby")
+    @Operation(summary = "Get available books in the caller's city first, then in the rest of their country")
+    public ResponseEntity<CursorPageResponse<BookResponse>> getNearbyBooksPage(
+            Authentication authentication,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        Long userId = getUserIdFromToken(authentication);
+        return ResponseEntity.ok(bookService.getNearbyBooksPage(userId, cursor, size));
+    }
+
+    @GetMapping("/search/nearby")
+    @Operation(summary = "Search books by title or author, ranking matches near the caller first")
+    public ResponseEntity<List<BookResponse>> searchBooksNearby(
+            Authentication authentication,
+            @RequestParam String term
+    ) {
+        Long userId = getUserIdFromToken(authentication);
+        return ResponseEntity.ok(bookService.searchBooksNearby(userId, term));
+    }
+
+    @StatementBudget(1)
+    @GetMapping("/recommended")
+    @Operation(summary = "Get available books wanted by users who wanted the same books as the caller")
+    public ResponseEntity<List<BookResponse>> getRecommendedBooks(
+            Authentication authentication,
+            @RequestParam(defaultValue = "10") int size
+    ) {
+        Long userId = getUserIdFromToken(authentication);
+        return ResponseEntity.ok(recommendationService.getRecommendedBooks(userId, size));
+    }
+
+    @StatementBudget(1)
+    @GetMapping("/trending")
+    @Operation(summary = "Get the books most liked, matched and exchanged in the last HOUR or DAY, optionally by owner country")
+    public ResponseEntity<List<BookResponse>> getTrendingBooks(
+            Authentication authentication,
+            @RequestParam(defaultValue = "DAY") TrendingBooks.Window window,
+            @RequestParam(required = false) String country,
+            @RequestParam(defaultValue = "10") int size
+    ) {
+        Long userId = getUserIdFromToken(authentication);
+        return ResponseEntity.ok(recommendationService.getTrendingBooks(userId, window, country, size));
+    }
+
+    @StatementBudget(2)
+    @GetMapping("/{id}/similar")
+    @Operation(summary = "Get available books most often wanted by users who also wanted this book")
+    public ResponseEntity<List<BookResponse>> getSimilarBooks(
+            Authentication authentication,
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "10") int size
+    ) {
+        Long userId = getUserIdFromToken(authentication);
+        return ResponseEntity.ok(recommendationService.getSimilarBooks(userId, id, size));
+    }
+
     @GetMapping("/{id}")
-    @Operation(summary = "Get book by ID")
-    public ResponseEntity<BookResponse> getBookById(@PathVariable Long id) {
-        return ResponseEntity.ok(bookService.getBookById(id));
+    @Operation(summary = "Get book by ID; answers 304 when If-None-Match carries the current ETag")
+    public ResponseEntity<BookResponse> getBookById(@PathVariable Long id, WebRequest request) {
+        // The tag is read before the body so it can only be older than what is sent, never newer
+        String etag = entityTagService.currentBookTag(id);
+        if (ConditionalRequests.ifNoneMatch(request, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(bookService.getBookById(id));
     }
 
     @PostMapping
@@ -65,6 +202,32 @@ public class BookController {
         return ResponseEntity.ok(bookService.updateBook(id, request));
     }
 
+    @PutMapping("/{id}/like")
+    @Operation(summary = "Like a book; liking it again has no effect")
+    public ResponseEntity<Void> likeBook(Authentication authentication, @PathVariable Long id) {
+        Long userId = getUserIdFromToken(authentication);
+        likeService.likeBook(userId, id);
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/{id}/like")
+    @Operation(summary = "Remove a like from a book")
+    public ResponseEntity<Void> unlikeBook(Authentication authentication, @PathVariable Long id) {
+        Long userId = getUserIdFromToken(authentication);
+        likeService.unlikeBook(userId, id);
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/liked")
+    @Operation(summary = "Get which of the given book ids (at most 100) the caller has liked")
+    public ResponseEntity<List<Long>> getLikedBookIds(
+            Authentication authentication,
+            @RequestParam List<Long> ids
+    ) {
+        Long userId = getUserIdFromToken(authentication);
+        return ResponseEntity.ok(likeService.getLikedBookIds(userId, ids));
+    }
+
     @PatchMapping("/{id}/toggle-availability")
     @Operation(summary = "Toggle book availability")
     public ResponseEntity<Void> toggleBookAvailability(@PathVariable Long id) {
@@ -0,0 +1,83 @@
+package com.example.bookexchange.controller;
+
+import com.example.bookexchange.config.StatementBudget;
+import com.example.bookexchange.model.dto.request.MessageRequest;
+import com.example.bookexchange.model.dto.response.ChatInboxResponse;
+import com.example.bookexchange.model.dto.response.CursorPageResponse;
+import com.example.bookexchange.model.dto.response.MessageResponse;
+import com.example.bookexchange.service.ChatService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/chats")
+@RequiredArgsConstructor
+@Tag(name = "Chat Controller", description = "Endpoints for exchange chats")
+public class ChatController {
+    private final ChatService chatService;
+
+    @StatementBudget(1)
+    @GetMapping
+    @Operation(summary = "Get the current user's chat inbox, most recently active first")
+    public ResponseEntity<CursorPageResponse<ChatInboxResponse>> getInbox(
+            Authentication authentication,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        Long userId = getUserIdFromToken(authentication);
+        return ResponseEntity.ok(chatService.getInbox(userId, cursor, size));
+    }
+
+    @PostMapping("/{chatId}/read")
+    @Operation(summary = "Mark all messages in a chat as read")
+    public ResponseEntity<Void> markRead(Authentication authentication, @PathVariable Long chatId) {
+        Long userId = getUserIdFromToken(authentication);
+        chatService.markRead(userId, chatId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/{chatId}/messages")
+    @Operation(summary = "Send a message to a chat")
+    public ResponseEntity<MessageResponse> sendMessage(
+            Authentication authentication,
+            @PathVariable Long chatId,
+            @Valid @RequestBody MessageRequest request
+    ) {
+        Long userId = getUserIdFromToken(authentication);
+        return new ResponseEntity<>(chatService.sendMessage(userId, chatId, request), HttpStatus.ACCEPTED);
+    }
+
+    @StatementBudget(2)
+    @GetMapping("/{chatId}/messages")
+    @Operation(summary = "Get a chat's message history, newest first")
+    public ResponseEntity<CursorPageResponse<MessageResponse>> getMessages(
+            Authentication authentication,
+            @PathVariable Long chatId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size
+    ) {
+        Long userId = getUserIdFromToken(authentication);
+        return ResponseEntity.ok(chatService.getMessages(userId, chatId, cursor, size));
+    }
+
+    @GetMapping(value = "/{chatId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream new chat messages as Server-Sent Events")
+    public SseEmitter streamMessages(Authentication authentication, @PathVariable Long chatId) {
+        Long userId = getUserIdFromToken(authentication);
+        return chatService.subscribe(userId, chatId);
+    }
+
+    private Long getUserIdFromToken(Authentication authentication) {
+        Jwt jwt = (Jwt) authentication.getPrincipal();
+        return Long.parseLong(jwt.getClaimAsString("user_id"));
+    }
+}
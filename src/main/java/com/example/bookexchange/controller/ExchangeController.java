@@ -0,0 +1,111 @@
+package com.example.bookexchange.controller;
+
+import com.example.bookexchange.config.StatementBudget;
+import com.example.bookexchange.model.dto.request.ExchangeMeetupRequest;
+import com.example.bookexchange.model.dto.request.ExchangeRequest;
+import com.example.bookexchange.model.dto.response.ExchangeResponse;
+import com.example.bookexchange.service.ExchangeService;
+import com.example.bookexchange.util.JsonLinesWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/exchanges")
+@RequiredArgsConstructor
+@Tag(name = "Exchange Controller", description = "Endpoints for proposing, arranging and completing exchanges")
+public class ExchangeController {
+    private final ExchangeService exchangeService;
+    private final ObjectMapper objectMapper;
+
+    @PostMapping
+    @Operation(summary = "Propose an exchange from a match that has a reciprocal match")
+    public ResponseEntity<ExchangeResponse> createExchange(
+            Authentication authentication,
+            @Valid @RequestBody ExchangeRequest request
+    ) {
+        Long userId = getUserIdFromToken(authentication);
+        ExchangeResponse exchange = exchangeService.createExchange(userId, request.getMatchId());
+        return new ResponseEntity<>(exchange, HttpStatus.CREATED);
+    }
+
+    @StatementBudget(3)
+    @GetMapping("/active")
+    @Operation(summary = "Get the current user's exchanges that are still in progress")
+    public ResponseEntity<List<ExchangeResponse>> getActiveExchanges(Authentication authentication) {
+        Long userId = getUserIdFromToken(authentication);
+        return ResponseEntity.ok(exchangeService.getUserActiveExchanges(userId));
+    }
+
+    @StatementBudget(3)
+    @GetMapping("/history")
+    @Operation(summary = "Get the current user's completed exchanges")
+    public ResponseEntity<List<ExchangeResponse>> getExchangeHistory(Authentication authentication) {
+        Long userId = getUserIdFromToken(authentication);
+        return ResponseEntity.ok(exchangeService.getUserExchangeHistory(userId));
+    }
+
+    @GetMapping(value = "/history", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream the current user's completed exchanges as newline-delimited JSON (Accept: application/x-ndjson)")
+    public void streamExchangeHistory(Authentication authentication, HttpServletResponse response) throws IOException {
+        Long userId = getUserIdFromToken(authentication);
+        JsonLinesWriter.<ExchangeResponse>stream(objectMapper, response, sink -> exchangeService.streamUserExchangeHistory(userId, sink));
+    }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "Get exchange details")
+    public ResponseEntity<ExchangeResponse> getExchange(
+            Authentication authentication,
+            @PathVariable Long id
+    ) {
+        Long userId = getUserIdFromToken(authentication);
+        return ResponseEntity.ok(exchangeService.getExchangeDetails(userId, id));
+    }
+
+    @PutMapping("/meetup")
+    @Operation(summary = "Set the meetup date, time and location of a proposed exchange")
+    public ResponseEntity<ExchangeResponse> setMeetupDetails(
+            Authentication authentication,
+            @Valid @RequestBody ExchangeMeetupRequest request
+    ) {
+        Long userId = getUserIdFromToken(authentication);
+        return ResponseEntity.ok(exchangeService.setMeetupDetails(userId, request));
+    }
+
+    @PostMapping("/{id}/confirm")
+    @Operation(summary = "Confirm that the exchange took place")
+    public ResponseEntity<ExchangeResponse> confirmExchange(
+            Authentication authentication,
+            @PathVariable Long id
+    ) {
+        Long userId = getUserIdFromToken(authentication);
+        return ResponseEntity.ok(exchangeService.confirmExchange(userId, id));
+    }
+
+    @PostMapping("/{id}/cancel")
+    @Operation(summary = "Cancel an exchange")
+    public ResponseEntity<ExchangeResponse> cancelExchange(
+            Authentication authentication,
+            @PathVariable Long id
+    ) {
+        Long userId = getUserIdFromToken(authentication);
+        return ResponseEntity.ok(exchangeService.cancelExchange(userId, id));
+    }
+
+    private Long getUserIdFromToken(Authentication authentication) {
+        Jwt jwt = (Jwt) authentication.getPrincipal();
+        return Long.parseLong(jwt.getClaimAsString("user_id"));
+    }
+}
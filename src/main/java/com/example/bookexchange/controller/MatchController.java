@@ -1,18 +1,25 @@
 package com.example.bookexchange.controller;
 
+import com.example.bookexchange.config.StatementBudget;
 import com.example.bookexchange.model.dto.request.MatchRequest;
 import com.example.bookexchange.model.dto.response.MatchResponse;
+import com.example.bookexchange.model.dto.response.TradeCycleResponse;
 import com.example.bookexchange.service.MatchService;
+import com.example.bookexchange.util.JsonLinesWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
 
 @RestController
@@ -21,6 +28,7 @@ import java.util.List;
 @Tag(name = "Match Controller", description = "Endpoints for managing book matches")
 public class MatchController {
     private final MatchService matchService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     @Operation(summary = "Create a new match with a book")
@@ -33,6 +41,7 @@ public class MatchController {
         return new ResponseEntity<>(match, HttpStatus.CREATED);
     }
 
+    @StatementBudget(3)
     @GetMapping
     @Operation(summary = "Get all active matches for the current user")
     public ResponseEntity<List<MatchResponse>> getUserMatches(Authentication authentication) {
@@ -40,6 +49,21 @@ public class MatchController {
         return ResponseEntity.ok(matchService.getUserMatches(userId));
     }
 
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream all active matches for the current user as newline-delimited JSON (Accept: application/x-ndjson)")
+    public void streamUserMatches(Authentication authentication, HttpServletResponse response) throws IOException {
+        Long userId = getUserIdFromToken(authentication);
+        JsonLinesWriter.<MatchResponse>stream(objectMapper, response, sink -> matchService.streamUserMatches(userId, sink));
+    }
+
+    @StatementBudget(2)
+    @GetMapping("/cycles")
+    @Operation(summary = "Get multi-party trade cycles the current user can take part in")
+    public ResponseEntity<List<TradeCycleResponse>> getTradeCycles(Authentication authentication) {
+        Long userId = getUserIdFromToken(authentication);
+        return ResponseEntity.ok(matchService.getTradeCycles(userId));
+    }
+
     @DeleteMapping("/{id}")
     @Operation(summary = "Cancel a match")
     public ResponseEntity<Void> cancelMatch(
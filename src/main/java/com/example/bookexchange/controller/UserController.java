@@ -0,0 +1,76 @@
+package com.example.bookexchange.controller;
+
+import com.example.bookexchange.model.dto.request.UserRequest;
+import com.example.bookexchange.model.dto.response.UserResponse;
+import com.example.bookexchange.service.EntityTagService;
+import com.example.bookexchange.service.UserService;
+import com.example.bookexchange.util.ConditionalRequests;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+@RestController
+@RequestMapping("/api/users")
+@RequiredArgsConstructor
+@Tag(name = "User Controller", description = "Endpoints for managing user profiles")
+public class UserController {
+    private final UserService userService;
+    private final EntityTagService entityTagService;
+
+    @PostMapping("/provision")
+    @Operation(summary = "Create the local account for the authenticated Keycloak user if needed")
+    public ResponseEntity<UserResponse> provisionUser(Authentication authentication) {
+        return ResponseEntity.ok(userService.provisionUser(authentication));
+    }
+
+    @GetMapping("/me")
+    @Operation(summary = "Get the current user's profile; answers 304 when If-None-Match carries the current ETag")
+    public ResponseEntity<UserResponse> getCurrentUserProfile(Authentication authentication, WebRequest request) {
+        String userId = ((Jwt) authentication.getPrincipal()).getClaimAsString("user_id");
+        Long currentVersion = null;
+        if (userId != null) {
+            currentVersion = entityTagService.currentUserVersion(Long.parseLong(userId));
+            String etag = currentVersion == null ? null : entityTagService.userTag(currentVersion);
+            if (ConditionalRequests.ifNoneMatch(request, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+        }
+        // A cached profile behind the current version is reloaded, and the tag always follows
+        // the version of the body actually returned
+        UserResponse profile = userService.getCurrentUserProfile(authentication, currentVersion);
+        return ResponseEntity.ok().eTag(entityTagService.userTag(profile)).body(profile);
+    }
+
+    @PutMapping("/me")
+    @Operation(summary = "Update the current user's profile")
+    public ResponseEntity<UserResponse> updateProfile(
+            Authentication authentication,
+            @Valid @RequestBody UserRequest request
+    ) {
+        Long userId = getUserIdFromToken(authentication);
+        return ResponseEntity.ok(userService.updateProfile(userId, request));
+    }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "Get a user's profile by ID; answers 304 when If-None-Match carries the current ETag")
+    public ResponseEntity<UserResponse> getUserProfile(@PathVariable Long id, WebRequest request) {
+        String etag = entityTagService.currentUserTag(id);
+        if (ConditionalRequests.ifNoneMatch(request, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        UserResponse profile = userService.getUserProfile(id);
+        return ResponseEntity.ok().eTag(entityTagService.userTag(profile)).body(profile);
+    }
+
+    private Long getUserIdFromToken(Authentication authentication) {
+        Jwt jwt = (Jwt) authentication.getPrincipal();
+        return Long.parseLong(jwt.getClaimAsString("user_id"));
+    }
+}
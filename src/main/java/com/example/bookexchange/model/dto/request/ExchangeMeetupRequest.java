@@ -0,0 +1,20 @@
+package com.example.bookexchange.model.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+public class ExchangeMeetupRequest {
+    @NotNull(message = "Exchange ID is required")
+    private Long exchangeId;
+
+    @NotNull(message = "Meetup date and time is required")
+    private LocalDateTime meetupDateTime;
+
+    @NotBlank(message = "Meetup location is required")
+    @Size(max = 255, message = "Meetup location cannot exceed 255 characters")
+    private String meetupLocation;
+}
@@ -0,0 +1,14 @@
+package com.example.bookexchange.model.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+@Data
+public class MessageRequest {
+    public static final int MAX_CONTENT_LENGTH = 2000;
+
+    @NotBlank(message = "Message content is required")
+    @Size(max = MAX_CONTENT_LENGTH, message = "Message cannot exceed 2000 characters")
+    private String content;
+}
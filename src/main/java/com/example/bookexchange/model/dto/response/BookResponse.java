@@ -1,9 +1,11 @@
 package com.example.bookexchange.model.dto.response;
 
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Data
+@NoArgsConstructor
 public class BookResponse {
     private Long id;
     private String title;
@@ -17,4 +19,21 @@ public class BookResponse {
     private int exchangeCount;
     private boolean available;
     private LocalDateTime createdAt;
+
+    // Used by JPQL constructor projections in BookRepository
+    public BookResponse(Long id, String title, String author, String description, String pictureUrl,
+                        Long ownerId, String ownerUsername, int likeCount, int matchCount,
+                        int exchangeCount, boolean available) {
+        this.id = id;
+        this.title = title;
+        this.author = author;
+        this.description = description;
+        this.pictureUrl = pictureUrl;
+        this.ownerId = ownerId;
+        this.ownerUsername = ownerUsername;
+        this.likeCount = likeCount;
+        this.matchCount = matchCount;
+        this.exchangeCount = exchangeCount;
+        this.available = available;
+    }
 }
\ No newline at end of file
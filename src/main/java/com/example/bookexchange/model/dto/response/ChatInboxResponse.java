@@ -0,0 +1,14 @@
+package com.example.bookexchange.model.dto.response;
+
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+public class ChatInboxResponse {
+    private Long chatId;
+    private Long otherUserId;
+    private String otherUsername;
+    private int unreadCount;
+    private String lastMessageSnippet;
+    private LocalDateTime lastMessageAt;
+}
@@ -7,6 +7,8 @@ import java.time.LocalDateTime;
 @Data
 public class ExchangeResponse {
     private Long id;
+    private Long user1Id;
+    private Long user2Id;
     private UserResponse user1;
     private UserResponse user2;
     private BookResponse book1;
@@ -17,4 +19,5 @@ public class ExchangeResponse {
     private String meetupLocation;
     private boolean user1Confirmed;
     private boolean user2Confirmed;
+    private Long chatId;
 }
\ No newline at end of file
@@ -12,4 +12,5 @@ public class MatchResponse {
     private LocalDateTime createdAt;
     private boolean active;
     private boolean hasReciprocal; // indicates if there's a matching interest from the other user
+    private boolean hasTradeCycle; // set on creation when the new match closes a 3+ party cycle
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.example.bookexchange.model.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageResponse {
+    private Long id; // null for live messages that have not been written to the database yet
+    private Long chatId;
+    private Long senderId;
+    private String content;
+    private boolean read;
+    private LocalDateTime sentAt;
+}
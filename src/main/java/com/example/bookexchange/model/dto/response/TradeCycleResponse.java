@@ -0,0 +1,10 @@
+package com.example.bookexchange.model.dto.response;
+
+import lombok.Data;
+import java.util.List;
+
+@Data
+public class TradeCycleResponse {
+    private List<Long> participantIds; // in trade order; each user receives from the next
+    private List<MatchResponse> legs;  // the active match backing each hop of the cycle
+}
@@ -17,4 +17,6 @@ public class UserResponse {
     private Double averageRating;
     private List<BookResponse> books;
     private List<ReviewResponse> recentReviews;
+    // Row version the profile was read at; its ETag is derived from it
+    private long version;
 }
\ No newline at end of file
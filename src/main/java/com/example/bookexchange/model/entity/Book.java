@@ -5,11 +5,20 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
 import java.util.HashSet;
 import java.util.Set;
 
+// Only write changed columns so entity saves never overwrite the counters,
+// which are incremented in SQL by BookCounterService
 @Entity
-@Table(name = "books")
+@DynamicUpdate
+@Table(name = "books", indexes = {
+        // Backs the keyset catalog scan: available = true AND id > :afterId ORDER BY id
+        @Index(name = "idx_books_available_id", columnList = "available, id"),
+        @Index(name = "idx_books_owner_id", columnList = "owner_id")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -36,6 +45,12 @@ public class Book {
     private int exchangeCount = 0;
     private boolean available = true;
 
+    // Bumped by every entity update. The counters above are written in SQL and do not
+    // bump it, so they never conflict with edits; ETags combine both (see EntityTagService)
+    @Version
+    @ColumnDefault("0")
+    private long version;
+
     @ManyToOne
     @JoinColumn(name = "owner_id", nullable = false)
     private User owner;
@@ -0,0 +1,40 @@
+package com.example.bookexchange.model.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+// Book counter increment not yet folded into books; written and folded through BookCounterService's SQL
+@Entity
+@Table(name = "book_counter_deltas", indexes = {
+        @Index(name = "idx_book_counter_deltas_node", columnList = "node_id, id"),
+        @Index(name = "idx_book_counter_deltas_created_at", columnList = "created_at")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookCounterDelta {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // The process that accepted the increment and will fold it
+    @Column(name = "node_id", nullable = false, length = 36)
+    private String nodeId;
+
+    @Column(name = "book_id", nullable = false)
+    private Long bookId;
+
+    @Column(name = "counter_name", nullable = false, length = 16)
+    private String counterName;
+
+    @Column(nullable = false)
+    private long delta;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
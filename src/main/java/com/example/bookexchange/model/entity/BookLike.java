@@ -0,0 +1,37 @@
+package com.example.bookexchange.model.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+// One row per user and liked book; inserts and deletes go through BookLikeRepository's SQL
+@Entity
+@Table(name = "book_likes", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_book_likes_book_user", columnNames = {"book_id", "user_id"})
+}, indexes = {
+        @Index(name = "idx_book_likes_user", columnList = "user_id"),
+        @Index(name = "idx_book_likes_created_at", columnList = "created_at")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookLike {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "book_id", nullable = false)
+    private Book book;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
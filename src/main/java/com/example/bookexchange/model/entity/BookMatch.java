@@ -8,7 +8,11 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "book_matches")
+@Table(name = "book_matches", indexes = {
+        @Index(name = "idx_book_matches_user_active", columnList = "user_id, active"),
+        @Index(name = "idx_book_matches_book_active", columnList = "book_id, active"),
+        @Index(name = "idx_book_matches_created_at", columnList = "created_at")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -0,0 +1,49 @@
+package com.example.bookexchange.model.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+// Inbox read model: one row per (user, chat), maintained as messages are written and read
+@Entity
+@Table(name = "chat_inbox",
+        uniqueConstraints = @UniqueConstraint(name = "uk_chat_inbox_user_chat", columnNames = {"user_id", "chat_id"}),
+        indexes = {
+                @Index(name = "idx_chat_inbox_user_last_message", columnList = "user_id, last_message_at, chat_id"),
+                // Message writes update and lock both participants' rows of a chat
+                @Index(name = "idx_chat_inbox_chat", columnList = "chat_id")
+        })
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatInboxEntry {
+    public static final int SNIPPET_LENGTH = 100;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "chat_id", nullable = false)
+    private Long chatId;
+
+    @Column(nullable = false)
+    private Long otherUserId;
+
+    @Column(nullable = false)
+    private String otherUsername;
+
+    private int unreadCount = 0;
+
+    @Column(length = SNIPPET_LENGTH)
+    private String lastMessageSnippet;
+
+    @Column(name = "last_message_at", nullable = false)
+    private LocalDateTime lastMessageAt;
+}
@@ -9,7 +9,11 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "exchanges")
+@Table(name = "exchanges", indexes = {
+        // One index per direction so pair lookups and per-user listings are index probes
+        @Index(name = "idx_exchanges_user1_user2_status", columnList = "user1_id, user2_id, status"),
+        @Index(name = "idx_exchanges_user2_user1_status", columnList = "user2_id, user1_id, status")
+})
 @Data
 @Builder
 @NoArgsConstructor
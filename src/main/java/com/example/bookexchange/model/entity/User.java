@@ -6,17 +6,25 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.util.HashSet;
 import java.util.Set;
 
+// Only write changed columns so entity saves never overwrite the rating aggregates,
+// which are incremented in SQL by UserRepository.applyRatingDelta
 @Entity
+@DynamicUpdate
 @Table(name = "users")
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class User {
+    public static final int SILVER_RANK_EXCHANGES = 20;
+    public static final int GOLD_RANK_EXCHANGES = 50;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -53,6 +61,40 @@ public class User {
 
     private Double averageRating = 0.0;
 
+    // Running rating aggregates, maintained by UserRepository.applyRatingDelta
+    @ColumnDefault("0")
+    private long ratingSum = 0;
+
+    @ColumnDefault("0")
+    private int ratingCount = 0;
+
+    // Histogram of received ratings, one counter per star value
+    @ColumnDefault("0")
+    @Column(name = "rating_1_count")
+    private int rating1Count = 0;
+
+    @ColumnDefault("0")
+    @Column(name = "rating_2_count")
+    private int rating2Count = 0;
+
+    @ColumnDefault("0")
+    @Column(name = "rating_3_count")
+    private int rating3Count = 0;
+
+    @ColumnDefault("0")
+    @Column(name = "rating_4_count")
+    private int rating4Count = 0;
+
+    @ColumnDefault("0")
+    @Column(name = "rating_5_count")
+    private int rating5Count = 0;
+
+    // Bumped by every entity update and by the aggregate UPDATEs in UserRepository;
+    // backs the profile ETags
+    @Version
+    @ColumnDefault("0")
+    private long version;
+
     // Relationships
     @OneToMany(mappedBy = "owner", cascade = CascadeType.ALL)
     private Set<Book> books = new HashSet<>();
@@ -94,9 +136,9 @@ public class User {
     }
 
     public void updateRank() {
-        if (exchangeCount >= 50) {
+        if (exchangeCount >= GOLD_RANK_EXCHANGES) {
             this.rank = UserRank.GOLD;
-        } else if (exchangeCount >= 20) {
+        } else if (exchangeCount >= SILVER_RANK_EXCHANGES) {
             this.rank = UserRank.SILVER;
         } else {
             this.rank = UserRank.BRONZE;
@@ -104,15 +146,7 @@ public class User {
     }
 
     public void updateAverageRating() {
-        if (reviewsReceived.isEmpty()) {
-            this.averageRating = 0.0;
-            return;
-        }
-
-        double sum = reviewsReceived.stream()
-                .mapToDouble(Review::getRating)
-                .sum();
-        this.averageRating = sum / reviewsReceived.size();
+        this.averageRating = ratingCount == 0 ? 0.0 : (double) ratingSum / ratingCount;
     }
 
     public void incrementExchangeCount() {
@@ -1,8 +1,35 @@
 package com.example.bookexchange.model.enums;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 public enum ExchangeStatus {
     PROPOSED,
     MEETUP_ARRANGED,
     COMPLETED,
-    CANCELLED
-}
\ No newline at end of file
+    CANCELLED;
+
+    // Allowed transitions; COMPLETED and CANCELLED are terminal
+    public Set<ExchangeStatus> nextStates() {
+        return switch (this) {
+            case PROPOSED -> EnumSet.of(MEETUP_ARRANGED, CANCELLED);
+            case MEETUP_ARRANGED -> EnumSet.of(COMPLETED, CANCELLED);
+            case COMPLETED, CANCELLED -> EnumSet.noneOf(ExchangeStatus.class);
+        };
+    }
+
+    public boolean canTransitionTo(ExchangeStatus target) {
+        return nextStates().contains(target);
+    }
+
+    // States from which the given target can be reached
+    public static Set<ExchangeStatus> sourcesOf(ExchangeStatus target) {
+        Set<ExchangeStatus> sources = EnumSet.noneOf(ExchangeStatus.class);
+        for (ExchangeStatus status : values()) {
+            if (status.canTransitionTo(target)) {
+                sources.add(status);
+            }
+        }
+        return sources;
+    }
+}
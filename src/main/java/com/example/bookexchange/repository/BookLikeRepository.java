@@ -0,0 +1,38 @@
+package com.example.bookexchange.repository;
+
+import com.example.bookexchange.model.entity.BookLike;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+@Repository
+public interface BookLikeRepository extends JpaRepository<BookLike, Long> {
+    // 1 when the like was added, 0 when it already existed; the unique key settles races
+    @Modifying
+    @Query(value = "INSERT INTO book_likes (book_id, user_id, created_at) " +
+            "VALUES (:bookId, :userId, CURRENT_TIMESTAMP) ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(Long bookId, Long userId);
+
+    @Modifying
+    @Query("DELETE FROM BookLike l WHERE l.book.id = :bookId AND l.user.id = :userId")
+    int deleteByBookIdAndUserId(Long bookId, Long userId);
+
+    // (bookId, userId) of every like, used to rebuild the like index
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = BookRepository.STREAM_FETCH_SIZE))
+    @Query("SELECT l.book.id, l.user.id FROM BookLike l")
+    Stream<Object[]> streamAllPairs();
+
+    // (bookId, userId, createdAt) of the likes made since the given time, for the like index catch-up
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = BookRepository.STREAM_FETCH_SIZE))
+    @Query("SELECT l.book.id, l.user.id, l.createdAt FROM BookLike l WHERE l.createdAt >= :since")
+    Stream<Object[]> streamPairsSince(LocalDateTime since);
+
+    @Query("SELECT MAX(l.createdAt) FROM BookLike l")
+    LocalDateTime findLatestCreatedAt();
+}
@@ -3,12 +3,18 @@ package com.example.bookexchange.repository;
 import com.example.bookexchange.model.entity.Book;
 import com.example.bookexchange.model.entity.BookMatch;
 import com.example.bookexchange.model.entity.User;
+import com.example.bookexchange.repository.projection.MatchView;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
+import java.util.stream.Stream;
 
 @Repository
 public interface BookMatchRepository extends JpaRepository<BookMatch, Long> {
@@ -17,13 +23,45 @@ public interface BookMatchRepository extends JpaRepository<BookMatch, Long> {
     // Find active match between user and book
     Optional<BookMatch> findByUserAndInterestedInBookAndActiveTrue(User user, Book book);
 
-    // Find reciprocal match (if user B matched with user A's book)
-    @Query("SELECT m FROM BookMatch m " +
-            "WHERE m.active = true " +
-            "AND m.user = :bookOwner " +
-            "AND m.interestedInBook IN :userBooks")
-    Optional<BookMatch> findReciprocalMatch(User bookOwner, Set<Book> userBooks);
+    // Find an active match held by the book owner on one of the user's books
+    Optional<BookMatch> findFirstByUserIdAndInterestedInBookOwnerIdAndActiveTrueOrderByCreatedAtAsc(
+            Long bookOwnerId, Long userId);
+
+    // (matchId, userId, ownerId) of every active match, used to rebuild the reciprocal index
+    @Query("SELECT m.id, m.user.id, m.interestedInBook.owner.id FROM BookMatch m WHERE m.active = true")
+    List<Object[]> findActiveMatchEdges();
+
+    // (matchId, userId, bookId, createdAt) of every match, active or not, for the co-occurrence index
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = BookRepository.STREAM_FETCH_SIZE))
+    @Query("SELECT m.id, m.user.id, m.interestedInBook.id, m.createdAt FROM BookMatch m ORDER BY m.createdAt, m.id")
+    Stream<Object[]> streamAllMatchSignals();
+
+    // As streamAllMatchSignals, for the matches created at or after since
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = BookRepository.STREAM_FETCH_SIZE))
+    @Query("SELECT m.id, m.user.id, m.interestedInBook.id, m.createdAt FROM BookMatch m "
+            + "WHERE m.createdAt >= :since ORDER BY m.createdAt, m.id")
+    Stream<Object[]> streamMatchSignalsSince(LocalDateTime since);
 
     // Find all active matches for a book
     List<BookMatch> findByInterestedInBookAndActiveTrue(Book book);
+
+    String MATCH_VIEW = "new com.example.bookexchange.repository.projection.MatchView(" +
+            "m.id, u.id, u.username, b.id, b.owner.id, m.createdAt, m.active) ";
+
+    // Read-model variant of findByUserAndActiveTrue that never hydrates users or books
+    @Query("SELECT " + MATCH_VIEW + "FROM BookMatch m JOIN m.user u JOIN m.interestedInBook b " +
+            "WHERE u.id = :userId AND m.active = true")
+    List<MatchView> findActiveMatchViewsByUserId(Long userId);
+
+    // Active matches held by any of the users on a book owned by any of them, oldest first:
+    // every possible leg of the trade cycles among those users in one query
+    @Query("SELECT " + MATCH_VIEW + "FROM BookMatch m JOIN m.user u JOIN m.interestedInBook b " +
+            "WHERE m.active = true AND u.id IN :userIds AND b.owner.id IN :userIds " +
+            "ORDER BY m.createdAt, m.id")
+    List<MatchView> findActiveMatchViewsAmong(Collection<Long> userIds);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = BookRepository.STREAM_FETCH_SIZE))
+    @Query("SELECT " + MATCH_VIEW + "FROM BookMatch m JOIN m.user u JOIN m.interestedInBook b " +
+            "WHERE u.id = :userId AND m.active = true")
+    Stream<MatchView> streamActiveMatchViewsByUserId(Long userId);
 }
\ No newline at end of file
@@ -1,26 +1,94 @@
 package com.example.bookexchange.repository;
 
+import com.example.bookexchange.model.dto.response.BookResponse;
 import com.example.bookexchange.model.entity.Book;
 import com.example.bookexchange.model.entity.User;
+import com.example.bookexchange.repository.projection.BookVersion;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface BookRepository extends JpaRepository<Book, Long> {
+    // Builds BookResponse rows straight from a books/users join, without hydrating entities
+    String BOOK_RESPONSE = "new com.example.bookexchange.model.dto.response.BookResponse(" +
+            "b.id, b.title, b.author, b.description, b.pictureUrl, o.id, o.username, " +
+            "b.likeCount, b.matchCount, b.exchangeCount, b.available) ";
+
+    String SEARCH_PREDICATE = "(" +
+            "lower(b.title) LIKE '%' || lower(:searchTerm) || '%' OR " +
+            "lower(b.author) LIKE '%' || lower(:searchTerm) || '%' OR " +
+            "lower(:searchTerm) <% lower(b.title) OR " +
+            "lower(:searchTerm) <% lower(b.author) OR " +
+            "to_tsvector('simple', coalesce(b.description, '')) @@ plainto_tsquery('simple', :searchTerm)) ";
+
+    String SEARCH_RANK = "(greatest(" +
+            "word_similarity(lower(:searchTerm), lower(b.title)), " +
+            "word_similarity(lower(:searchTerm), lower(b.author))) + " +
+            "0.5 * ts_rank(to_tsvector('simple', coalesce(b.description, '')), plainto_tsquery('simple', :searchTerm)))";
+
     List<Book> findByOwner(User owner);
 
     List<Book> findByAvailableTrue();
 
+    // Rows per round trip when a query is consumed as a Stream (a server-side cursor on PostgreSQL)
+    String STREAM_FETCH_SIZE = "500";
+
     // Find available books not owned by the user
-    @Query("SELECT b FROM Book b WHERE b.available = true AND b.owner.id != :userId")
-    List<Book> findAvailableBooksForUser(Long userId);
-
-    // Find books by title or author containing the search term
-    @Query("SELECT b FROM Book b WHERE " +
-            "b.available = true AND b.owner.id != :userId AND " +
-            "(LOWER(b.title) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
-            "LOWER(b.author) LIKE LOWER(CONCAT('%', :searchTerm, '%')))")
-    List<Book> searchAvailableBooks(Long userId, String searchTerm);
+    @Query("SELECT " + BOOK_RESPONSE + "FROM Book b JOIN b.owner o WHERE b.available = true AND o.id != :userId")
+    List<BookResponse> findAvailableBooksForUser(Long userId);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query("SELECT " + BOOK_RESPONSE + "FROM Book b JOIN b.owner o WHERE b.available = true AND o.id != :userId")
+    Stream<BookResponse> streamAvailableBooksForUser(Long userId);
+
+    // Owner id and region of every available book, for the locality index
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query("SELECT b.id, o.id, o.country, o.city FROM Book b JOIN b.owner o WHERE b.available = true")
+    Stream<Object[]> streamAvailableBookPlacements();
+
+    @Query("SELECT b.id, o.id, o.country, o.city FROM Book b JOIN b.owner o " +
+            "WHERE b.available = true AND o.id = :ownerId")
+    List<Object[]> findAvailableBookPlacementsByOwnerId(Long ownerId);
+
+    // Ranked search over title, author and description. Matches substrings and
+    // misspelled words via the pg_trgm indexes and descriptions via full-text search.
+    @Query(value = "SELECT b.id FROM books b WHERE " +
+            "b.available = true AND b.owner_id <> :userId AND " + SEARCH_PREDICATE +
+            "ORDER BY " + SEARCH_RANK + " DESC, b.id " +
+            "LIMIT :limit", nativeQuery = true)
+    List<Long> searchAvailableBookIds(Long userId, String searchTerm, int limit);
+
+    // Keyset page of available books not owned by the user, ordered by id
+    @Query("SELECT " + BOOK_RESPONSE + "FROM Book b JOIN b.owner o WHERE " +
+            "b.available = true AND o.id != :userId AND b.id > :afterId " +
+            "ORDER BY b.id")
+    List<BookResponse> findAvailableBooksForUserAfter(Long userId, Long afterId, Pageable pageable);
+
+    // Keyset page of search results, ordered by id
+    @Query(value = "SELECT b.id FROM books b WHERE " +
+            "b.available = true AND b.owner_id <> :userId AND b.id > :afterId AND " + SEARCH_PREDICATE +
+            "ORDER BY b.id " +
+            "LIMIT :limit", nativeQuery = true)
+    List<Long> searchAvailableBookIdsAfter(Long userId, String searchTerm, Long afterId, int limit);
+
+    // Everything a BookResponse shows that can change, without hydrating the entity
+    @Query("SELECT new com.example.bookexchange.repository.projection.BookVersion(" +
+            "b.version, o.version, b.likeCount, b.matchCount, b.exchangeCount) " +
+            "FROM Book b JOIN b.owner o WHERE b.id = :id")
+    Optional<BookVersion> findVersionById(Long id);
+
+    @Query("SELECT " + BOOK_RESPONSE + "FROM Book b JOIN b.owner o WHERE b.id = :id")
+    Optional<BookResponse> findBookResponseById(Long id);
+
+    @Query("SELECT " + BOOK_RESPONSE + "FROM Book b JOIN b.owner o WHERE b.id IN :ids")
+    List<BookResponse> findBookResponsesByIdIn(Collection<Long> ids);
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+package com.example.bookexchange.repository;
+
+import com.example.bookexchange.model.entity.BookUnlike;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+@Repository
+public interface BookUnlikeRepository extends JpaRepository<BookUnlike, Long> {
+    // Same clock as book_likes.created_at, so the two order together
+    @Modifying
+    @Query(value = "INSERT INTO book_unlikes (book_id, user_id, created_at) " +
+            "VALUES (:bookId, :userId, CURRENT_TIMESTAMP)", nativeQuery = true)
+    void recordUnlike(Long bookId, Long userId);
+
+    // (bookId, userId, createdAt, whether the pair is liked again now) of the unlikes since the given time
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = BookRepository.STREAM_FETCH_SIZE))
+    @Query("SELECT u.bookId, u.userId, u.createdAt, " +
+            "(SELECT COUNT(l) FROM BookLike l WHERE l.book.id = u.bookId AND l.user.id = u.userId) " +
+            "FROM BookUnlike u WHERE u.createdAt >= :since")
+    Stream<Object[]> streamUnlikesSince(LocalDateTime since);
+
+    @Query("SELECT MAX(u.createdAt) FROM BookUnlike u")
+    LocalDateTime findLatestCreatedAt();
+
+    @Modifying
+    @Query("DELETE FROM BookUnlike u WHERE u.createdAt < :cutoff")
+    int deleteCreatedBefore(LocalDateTime cutoff);
+}
@@ -0,0 +1,28 @@
+package com.example.bookexchange.repository;
+
+import com.example.bookexchange.model.entity.ChatInboxEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ChatInboxRepository extends JpaRepository<ChatInboxEntry, Long> {
+    // First inbox page, most recently active chats first
+    @Query("SELECT e FROM ChatInboxEntry e WHERE e.userId = :userId " +
+            "ORDER BY e.lastMessageAt DESC, e.chatId DESC")
+    List<ChatInboxEntry> findInbox(Long userId, Pageable pageable);
+
+    // Following pages, seeking past the (lastMessageAt, chatId) of the previous page's last row
+    @Query("SELECT e FROM ChatInboxEntry e WHERE e.userId = :userId AND " +
+            "(e.lastMessageAt < :lastMessageAt OR (e.lastMessageAt = :lastMessageAt AND e.chatId < :chatId)) " +
+            "ORDER BY e.lastMessageAt DESC, e.chatId DESC")
+    List<ChatInboxEntry> findInboxAfter(Long userId, LocalDateTime lastMessageAt, Long chatId, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE ChatInboxEntry e SET e.unreadCount = 0 WHERE e.userId = :userId AND e.chatId = :chatId")
+    int resetUnread(Long userId, Long chatId);
+}
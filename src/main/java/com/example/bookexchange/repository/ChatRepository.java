@@ -0,0 +1,14 @@
+package com.example.bookexchange.repository;
+
+import com.example.bookexchange.model.entity.Chat;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+
+@Repository
+public interface ChatRepository extends JpaRepository<Chat, Long> {
+    // (user1Id, user2Id) of a chat, without hydrating the chat or its users
+    @Query("SELECT c.user1.id, c.user2.id FROM Chat c WHERE c.id = :chatId")
+    List<Object[]> findParticipantIds(Long chatId);
+}
@@ -3,13 +3,27 @@ package com.example.bookexchange.repository;
 import com.example.bookexchange.model.entity.Exchange;
 import com.example.bookexchange.model.entity.User;
 import com.example.bookexchange.model.enums.ExchangeStatus;
+import com.example.bookexchange.repository.projection.ExchangeView;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface ExchangeRepository extends JpaRepository<Exchange, Long> {
+    String EXCHANGE_VIEW = "new com.example.bookexchange.repository.projection.ExchangeView(" +
+            "e.id, e.user1.id, e.user2.id, e.book1.id, e.book2.id, e.status, e.proposedAt, " +
+            "e.meetupDateTime, e.meetupLocation, e.user1Confirmed, e.user2Confirmed, c.id) ";
+    // The chat row holds the link; the outer join keeps exchanges that have no chat
+    String EXCHANGE_VIEW_FROM = "FROM Exchange e LEFT JOIN e.chat c ";
+
     // Find all exchanges for a user (as either user1 or user2)
     @Query("SELECT e FROM Exchange e WHERE e.user1 = :user OR e.user2 = :user")
     List<Exchange> findAllByUser(User user);
@@ -25,4 +39,58 @@ public interface ExchangeRepository extends JpaRepository<Exchange, Long> {
             "(e.user1 = :user OR e.user2 = :user) AND " +
             "e.status = :status")
     List<Exchange> findByUserAndStatus(User user, ExchangeStatus status);
+
+    // Whether the two users completed an exchange together, in either direction
+    @Query("SELECT COUNT(e) > 0 FROM Exchange e WHERE e.status = 'COMPLETED' AND (" +
+            "(e.user1.id = :userA AND e.user2.id = :userB) OR " +
+            "(e.user1.id = :userB AND e.user2.id = :userA))")
+    boolean existsCompletedExchangeBetween(Long userA, Long userB);
+
+    // Read-model variants of the queries above; they never hydrate users or books
+    @Query("SELECT " + EXCHANGE_VIEW + EXCHANGE_VIEW_FROM + "WHERE " +
+            "(e.user1.id = :userId OR e.user2.id = :userId) AND " +
+            "e.status IN ('PROPOSED', 'MEETUP_ARRANGED')")
+    List<ExchangeView> findActiveExchangeViewsByUserId(Long userId);
+
+    @Query("SELECT " + EXCHANGE_VIEW + EXCHANGE_VIEW_FROM + "WHERE " +
+            "(e.user1.id = :userId OR e.user2.id = :userId) AND " +
+            "e.status = :status")
+    List<ExchangeView> findExchangeViewsByUserIdAndStatus(Long userId, ExchangeStatus status);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = BookRepository.STREAM_FETCH_SIZE))
+    @Query("SELECT " + EXCHANGE_VIEW + EXCHANGE_VIEW_FROM + "WHERE " +
+            "(e.user1.id = :userId OR e.user2.id = :userId) AND " +
+            "e.status = :status")
+    Stream<ExchangeView> streamExchangeViewsByUserIdAndStatus(Long userId, ExchangeStatus status);
+
+    // Conditional state transitions: each returns the number of rows changed, so 0 means the
+    // exchange was not in the expected state (or was changed concurrently) and nothing happened
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Exchange e SET e.status = :target, " +
+            "e.meetupDateTime = :meetupDateTime, e.meetupLocation = :meetupLocation " +
+            "WHERE e.id = :id AND e.status IN :expected")
+    int arrangeMeetup(Long id, Collection<ExchangeStatus> expected, ExchangeStatus target,
+                      LocalDateTime meetupDateTime, String meetupLocation);
+
+    // Each user only ever writes their own flag, so concurrent confirmations cannot overwrite each other
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Exchange e SET e.user1Confirmed = true WHERE e.id = :id AND e.status = :expected")
+    int confirmByUser1(Long id, ExchangeStatus expected);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Exchange e SET e.user2Confirmed = true WHERE e.id = :id AND e.status = :expected")
+    int confirmByUser2(Long id, ExchangeStatus expected);
+
+    // Succeeds for exactly one caller once both flags are set
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Exchange e SET e.status = :target " +
+            "WHERE e.id = :id AND e.status IN :expected " +
+            "AND e.user1Confirmed = true AND e.user2Confirmed = true")
+    int completeIfConfirmed(Long id, Collection<ExchangeStatus> expected, ExchangeStatus target);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Exchange e SET e.status = :target, " +
+            "e.user1Confirmed = false, e.user2Confirmed = false " +
+            "WHERE e.id = :id AND e.status IN :expected")
+    int cancel(Long id, Collection<ExchangeStatus> expected, ExchangeStatus target);
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.example.bookexchange.repository;
+
+import com.example.bookexchange.model.dto.response.MessageResponse;
+import com.example.bookexchange.model.entity.Message;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+
+@Repository
+public interface MessageRepository extends JpaRepository<Message, Long> {
+    // Keyset page of a chat's history, newest first
+    @Query("SELECT new com.example.bookexchange.model.dto.response.MessageResponse(" +
+            "m.id, m.chat.id, m.sender.id, m.content, m.read, m.sentAt) " +
+            "FROM Message m WHERE m.chat.id = :chatId AND m.id < :beforeId " +
+            "ORDER BY m.id DESC")
+    List<MessageResponse> findHistoryBefore(Long chatId, Long beforeId, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Message m SET m.read = true " +
+            "WHERE m.chat.id = :chatId AND m.sender.id <> :readerId AND m.read = false")
+    int markRead(Long chatId, Long readerId);
+}
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.example.bookexchange.repository;
+
+import com.example.bookexchange.model.entity.Review;
+import com.example.bookexchange.model.entity.User;
+import com.example.bookexchange.repository.projection.RatingAggregate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+
+@Repository
+public interface ReviewRepository extends JpaRepository<Review, Long> {
+    boolean existsByReviewerAndReviewed(User reviewer, User reviewed);
+
+    List<Review> findByReviewed(User reviewed);
+
+    // Rating aggregates of the reviewed users in (fromId, toId]; users without reviews are absent
+    @Query("SELECT new com.example.bookexchange.repository.projection.RatingAggregate(" +
+            "r.reviewed.id, SUM(r.rating), COUNT(r), " +
+            "SUM(CASE WHEN r.rating = 1 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN r.rating = 2 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN r.rating = 3 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN r.rating = 4 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN r.rating = 5 THEN 1 ELSE 0 END)) " +
+            "FROM Review r WHERE r.reviewed.id > :fromId AND r.reviewed.id <= :toId " +
+            "GROUP BY r.reviewed.id")
+    List<RatingAggregate> aggregateRatings(Long fromId, Long toId);
+}
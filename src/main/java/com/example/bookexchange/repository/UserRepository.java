@@ -1,8 +1,13 @@
 package com.example.bookexchange.repository;
 
 import com.example.bookexchange.model.entity.User;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,4 +16,42 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
+
+    // Adds (delta = 1) or removes (delta = -1) one rating in a single atomic UPDATE
+    @Modifying
+    @Query(value = "UPDATE users SET " +
+            "rating_sum = rating_sum + :rating * :delta, " +
+            "rating_count = rating_count + :delta, " +
+            "rating_1_count = rating_1_count + CASE WHEN :rating = 1 THEN :delta ELSE 0 END, " +
+            "rating_2_count = rating_2_count + CASE WHEN :rating = 2 THEN :delta ELSE 0 END, " +
+            "rating_3_count = rating_3_count + CASE WHEN :rating = 3 THEN :delta ELSE 0 END, " +
+            "rating_4_count = rating_4_count + CASE WHEN :rating = 4 THEN :delta ELSE 0 END, " +
+            "rating_5_count = rating_5_count + CASE WHEN :rating = 5 THEN :delta ELSE 0 END, " +
+            "average_rating = CASE WHEN rating_count + :delta <= 0 THEN 0 " +
+            "ELSE CAST(rating_sum + :rating * :delta AS double precision) / (rating_count + :delta) END, " +
+            "version = version + 1 " +
+            "WHERE id = :userId", nativeQuery = true)
+    int applyRatingDelta(Long userId, int rating, int delta);
+
+    // Users in (fromId, toId], locked until the end of the transaction so that no rating
+    // delta can land between reading their reviews and writing the rebuilt aggregates
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM User u WHERE u.id > :fromId AND u.id <= :toId ORDER BY u.id")
+    List<User> lockRange(Long fromId, Long toId);
+
+    @Query("SELECT u.version FROM User u WHERE u.id = :id")
+    Optional<Long> findVersionById(Long id);
+
+    @Query("SELECT COALESCE(MAX(u.id), 0) FROM User u")
+    Long findMaxId();
+
+    // Atomic counterpart of User.incrementExchangeCount, including the rank update
+    @Modifying
+    @Query(value = "UPDATE users SET exchange_count = exchange_count + 1, rank = CASE " +
+            "WHEN exchange_count + 1 >= " + User.GOLD_RANK_EXCHANGES + " THEN 'GOLD' " +
+            "WHEN exchange_count + 1 >= " + User.SILVER_RANK_EXCHANGES + " THEN 'SILVER' " +
+            "ELSE 'BRONZE' END, " +
+            "version = version + 1 " +
+            "WHERE id = :userId", nativeQuery = true)
+    int incrementExchangeCount(Long userId);
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.example.bookexchange.repository.projection;
+
+import lombok.Value;
+
+// The columns of a book and its owner that a BookResponse can change with
+@Value
+public class BookVersion {
+    long version;
+    long ownerVersion;
+    int likeCount;
+    int matchCount;
+    int exchangeCount;
+}
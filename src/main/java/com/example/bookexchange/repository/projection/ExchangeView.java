@@ -0,0 +1,22 @@
+package com.example.bookexchange.repository.projection;
+
+import com.example.bookexchange.model.enums.ExchangeStatus;
+import lombok.Value;
+import java.time.LocalDateTime;
+
+// Flat exchange row read through a JPQL constructor projection; books are resolved by id
+@Value
+public class ExchangeView {
+    Long id;
+    Long user1Id;
+    Long user2Id;
+    Long book1Id;
+    Long book2Id;
+    ExchangeStatus status;
+    LocalDateTime proposedAt;
+    LocalDateTime meetupDateTime;
+    String meetupLocation;
+    boolean user1Confirmed;
+    boolean user2Confirmed;
+    Long chatId;
+}
@@ -0,0 +1,16 @@
+package com.example.bookexchange.repository.projection;
+
+import lombok.Value;
+import java.time.LocalDateTime;
+
+// Flat match row read through a JPQL constructor projection; the book is resolved by id
+@Value
+public class MatchView {
+    Long id;
+    Long userId;
+    String username;
+    Long bookId;
+    Long bookOwnerId;
+    LocalDateTime createdAt;
+    boolean active;
+}
@@ -0,0 +1,16 @@
+package com.example.bookexchange.repository.projection;
+
+import lombok.Value;
+
+// Rating aggregates of one user as recomputed from the reviews table
+@Value
+public class RatingAggregate {
+    long userId;
+    long ratingSum;
+    long ratingCount;
+    long rating1Count;
+    long rating2Count;
+    long rating3Count;
+    long rating4Count;
+    long rating5Count;
+}
@@ -0,0 +1,311 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.model.dto.response.BookResponse;
+import com.example.bookexchange.util.TransactionHooks;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Write-behind counters for the like/match/exchange totals on books, so hot books never
+ * serialize writers on their row lock. Every increment is appended to book_counter_deltas
+ * in the caller's transaction, so it is durable once acknowledged, and once that commits
+ * it also lands in a per-book in-memory accumulator that reads add to the stored totals.
+ * The flusher folds this node's delta rows into books with batched
+ * {@code UPDATE books SET x = x + ?} statements and deletes them in the same transaction;
+ * rows left by a node that died are folded by any node once they are older than
+ * bookexchange.counters.orphan-after-ms.
+ *
+ * <p>Increments do not lock: they look up the book's adder and add to it. A flush commits
+ * and takes what it folded out of memory under one write lock that reads validate against,
+ * so a read never counts a batch both in the database and in memory. Adders that have
+ * drained to zero are dropped by an occasional sweep, which moves writers to a fresh map
+ * and waits for the ones still in the old map before merging what is left.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BookCounterService {
+    private static final int FOLD_BATCH_SIZE = 5000;
+    // Flushes between sweeps of drained adders, about a minute at the default interval
+    private static final int SWEEP_EVERY = 60;
+    private static final int WRITER_STRIPES = 64;
+    private static final int STRIPE_SPACING = 8;
+
+    private static final String INSERT_DELTA = "INSERT INTO book_counter_deltas "
+            + "(node_id, book_id, counter_name, delta, created_at) VALUES (?, ?, ?, ?, ?)";
+    // Locked so an orphan sweep that wrongly takes this node for dead skips the rows instead of folding them twice
+    private static final String SELECT_OWN_DELTAS = "SELECT id, book_id, counter_name, delta "
+            + "FROM book_counter_deltas WHERE node_id = ? ORDER BY id LIMIT ? FOR UPDATE";
+    // Other nodes may sweep at the same time; each row is folded by whoever locks it first
+    private static final String SELECT_ORPHANED_DELTAS = "SELECT id, book_id, counter_name, delta "
+            + "FROM book_counter_deltas WHERE node_id <> ? AND created_at < ? ORDER BY id LIMIT ? "
+            + "FOR UPDATE SKIP LOCKED";
+
+    public enum Counter {
+        LIKES("like_count"),
+        MATCHES("match_count"),
+        EXCHANGES("exchange_count");
+
+        private final String column;
+
+        Counter(String column) {
+            this.column = column;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // Identifies this process's delta rows; a restarted node leaves its old rows to the orphan sweep
+    private final String nodeId = UUID.randomUUID().toString();
+    private volatile Generation current = new Generation();
+    private final StampedLock publishLock = new StampedLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private int flushesSinceSweep;
+
+    @Value("${bookexchange.counters.orphan-after-ms:600000}")
+    private long orphanAfterMs;
+
+    private record Delta(long id, long bookId, Counter counter, long delta) {
+    }
+
+    // The map writers add to, and how many of them are still inside it
+    private static final class Generation {
+        final Map<Counter, Map<Long, LongAdder>> adders = createPendingMaps();
+        // Striped by thread, one cache line apart, so a thread enters and leaves on the same slot
+        final AtomicLongArray writers = new AtomicLongArray(WRITER_STRIPES * STRIPE_SPACING);
+        volatile boolean sealed;
+
+        static int slot() {
+            return (int) (Thread.currentThread().threadId() & (WRITER_STRIPES - 1)) * STRIPE_SPACING;
+        }
+
+        boolean hasWriters() {
+            for (int i = 0; i < writers.length(); i += STRIPE_SPACING) {
+                if (writers.get(i) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void add(Counter counter, Long bookId, long delta) {
+            Map<Long, LongAdder> byBook = adders.get(counter);
+            LongAdder adder = byBook.get(bookId);
+            if (adder == null) {
+                adder = byBook.computeIfAbsent(bookId, id -> new LongAdder());
+            }
+            adder.add(delta);
+        }
+    }
+
+    public void increment(Counter counter, Long bookId) {
+        add(counter, bookId, 1);
+    }
+
+    public void add(Counter counter, Long bookId, long delta) {
+        jdbcTemplate.update(INSERT_DELTA, nodeId, bookId, counter.name(), delta, LocalDateTime.now());
+        TransactionHooks.afterCommit(() -> addPending(counter, bookId, delta));
+    }
+
+    // The in-memory half of add, for deltas whose row is already written
+    void addPending(Counter counter, Long bookId, long delta) {
+        int slot = Generation.slot();
+        while (true) {
+            Generation generation = current;
+            generation.writers.incrementAndGet(slot);
+            try {
+                // A sealed generation is being swept; its replacement is already in place
+                if (!generation.sealed) {
+                    generation.add(counter, bookId, delta);
+                    return;
+                }
+            } finally {
+                generation.writers.decrementAndGet(slot);
+            }
+        }
+    }
+
+    // Deltas accepted but not yet written to the books table
+    public long pending(Counter counter, Long bookId) {
+        long stamp = publishLock.tryOptimisticRead();
+        long sum = sum(counter, bookId);
+        if (publishLock.validate(stamp)) {
+            return sum;
+        }
+        stamp = publishLock.readLock();
+        try {
+            return sum(counter, bookId);
+        } finally {
+            publishLock.unlockRead(stamp);
+        }
+    }
+
+    private long sum(Counter counter, Long bookId) {
+        LongAdder adder = current.adders.get(counter).get(bookId);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    // Merges unflushed deltas into a response read from the database
+    public BookResponse applyPending(BookResponse response) {
+        response.setLikeCount(response.getLikeCount() + (int) pending(Counter.LIKES, response.getId()));
+        response.setMatchCount(response.getMatchCount() + (int) pending(Counter.MATCHES, response.getId()));
+        response.setExchangeCount(response.getExchangeCount() + (int) pending(Counter.EXCHANGES, response.getId()));
+        return response;
+    }
+
+    @Scheduled(fixedDelayString = "${bookexchange.counters.flush-interval-ms:1000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            int folded;
+            do {
+                folded = fold(SELECT_OWN_DELTAS, true, nodeId, FOLD_BATCH_SIZE);
+            } while (folded == FOLD_BATCH_SIZE);
+            if (++flushesSinceSweep >= SWEEP_EVERY) {
+                flushesSinceSweep = 0;
+                sweep();
+            }
+        } catch (RuntimeException e) {
+            // The rows stay where they are, so the next run picks them up
+            log.warn("Flushing book counters failed, will retry", e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    // Folds the deltas of nodes that stopped without flushing them
+    @Scheduled(initialDelayString = "${bookexchange.counters.orphan-after-ms:600000}",
+            fixedDelayString = "${bookexchange.counters.orphan-after-ms:600000}")
+    public void foldOrphans() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(Duration.ofMillis(orphanAfterMs));
+        try {
+            int total = 0;
+            int folded;
+            do {
+                folded = fold(SELECT_ORPHANED_DELTAS, false, nodeId, cutoff, FOLD_BATCH_SIZE);
+                total += folded;
+            } while (folded == FOLD_BATCH_SIZE);
+            if (total > 0) {
+                log.info("Folded {} book counter deltas left by stopped nodes", total);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Folding orphaned book counter deltas failed, will retry", e);
+        }
+    }
+
+    // Applies one batch of delta rows to books and deletes them in one transaction; returns the rows folded
+    private int fold(String select, boolean own, Object... args) {
+        Integer folded = transactionTemplate.execute(status -> {
+            List<Delta> deltas = jdbcTemplate.query(select, (rs, row) -> new Delta(rs.getLong("id"),
+                    rs.getLong("book_id"), Counter.valueOf(rs.getString("counter_name")), rs.getLong("delta")), args);
+            if (deltas.isEmpty()) {
+                return 0;
+            }
+            Map<Counter, Map<Long, Long>> sums = new EnumMap<>(Counter.class);
+            List<Object[]> ids = new ArrayList<>(deltas.size());
+            for (Delta delta : deltas) {
+                sums.computeIfAbsent(delta.counter(), c -> new HashMap<>()).merge(delta.bookId(), delta.delta(), Long::sum);
+                ids.add(new Object[]{delta.id()});
+            }
+            sums.forEach((counter, byBook) -> {
+                List<Object[]> batchArgs = new ArrayList<>(byBook.size());
+                byBook.forEach((bookId, delta) -> batchArgs.add(new Object[]{delta, bookId}));
+                jdbcTemplate.batchUpdate(
+                        "UPDATE books SET " + counter.column + " = " + counter.column + " + ? WHERE id = ?",
+                        batchArgs);
+            });
+            jdbcTemplate.batchUpdate("DELETE FROM book_counter_deltas WHERE id = ?", ids);
+            if (own) {
+                takeOutOfMemoryOnCommit(sums);
+            }
+            return deltas.size();
+        });
+        return folded == null ? 0 : folded;
+    }
+
+    // Holds the publish lock from just before the commit until the folded deltas are out of memory
+    private void takeOutOfMemoryOnCommit(Map<Counter, Map<Long, Long>> sums) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private long stamp;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                stamp = publishLock.writeLock();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (stamp == 0) {
+                    return;
+                }
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        sums.forEach((counter, byBook) ->
+                                byBook.forEach((bookId, delta) -> addPending(counter, bookId, -delta)));
+                    }
+                } finally {
+                    publishLock.unlockWrite(stamp);
+                }
+            }
+        });
+    }
+
+    // Drops adders that have drained to zero. Called under the flush lock.
+    private void sweep() {
+        long stamp = publishLock.writeLock();
+        try {
+            Generation old = current;
+            Generation next = new Generation();
+            // Installed before sealing, so a writer that finds the old one sealed retries on the new one
+            current = next;
+            old.sealed = true;
+            while (old.hasWriters()) {
+                Thread.onSpinWait();
+            }
+            old.adders.forEach((counter, byBook) -> byBook.forEach((bookId, adder) -> {
+                long sum = adder.sum();
+                if (sum != 0) {
+                    next.add(counter, bookId, sum);
+                }
+            }));
+        } finally {
+            publishLock.unlockWrite(stamp);
+        }
+    }
+
+    private static Map<Counter, Map<Long, LongAdder>> createPendingMaps() {
+        Map<Counter, Map<Long, LongAdder>> maps = new EnumMap<>(Counter.class);
+        for (Counter counter : Counter.values()) {
+            maps.put(counter, new ConcurrentHashMap<>());
+        }
+        return maps;
+    }
+}
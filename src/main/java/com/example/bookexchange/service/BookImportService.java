@@ -0,0 +1,208 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.exception.BadRequestException;
+import com.example.bookexchange.exception.ResourceNotFoundException;
+import com.example.bookexchange.model.dto.request.BookRequest;
+import com.example.bookexchange.model.dto.response.BookImportResponse;
+import com.example.bookexchange.repository.UserRepository;
+import com.example.bookexchange.util.CsvRecordReader;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Streams CSV or NDJSON book uploads into the books table. Rows are validated with
+ * the same constraints as {@link BookRequest} and written in chunks as JDBC batch
+ * inserts, each chunk in its own transaction, so memory stays constant. A row that
+ * fails validation only costs that row; a chunk the database rejects is reported row by row.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BookImportService {
+    public static final String CSV = "text/csv";
+    public static final String NDJSON = "application/x-ndjson";
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final String INSERT_BOOK = "INSERT INTO books " +
+            "(title, author, description, picture_url, owner_id, like_count, match_count, exchange_count, available) " +
+            "VALUES (?, ?, ?, ?, ?, 0, 0, 0, true)";
+
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final LocalityIndex localityIndex;
+
+    @Value("${bookexchange.import.chunk-size:1000}")
+    private int chunkSize = 1000;
+
+    public BookImportResponse importBooks(Long ownerId, String contentType, InputStream body) {
+        if (!userRepository.existsById(ownerId)) {
+            throw new ResourceNotFoundException("User not found with id: " + ownerId);
+        }
+
+        ImportRun run = new ImportRun(ownerId);
+        Reader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        try {
+            if (contentType != null && contentType.startsWith(CSV)) {
+                readCsv(reader, run);
+            } else if (contentType != null && contentType.startsWith(NDJSON)) {
+                readNdjson((BufferedReader) reader, run);
+            } else {
+                throw new BadRequestException("Unsupported content type, expected " + CSV + " or " + NDJSON);
+            }
+        } catch (IOException e) {
+            throw new BadRequestException("Could not read import body: " + e.getMessage());
+        } finally {
+            // Rows parsed before a fatal error are still written
+            run.flush();
+            if (run.response.getImported() > 0) {
+                localityIndex.reloadOwner(ownerId);
+            }
+        }
+        log.info("Imported {} of {} books for user {}", run.response.getImported(),
+                run.response.getReceived(), ownerId);
+        return run.response;
+    }
+
+    private void readCsv(Reader reader, ImportRun run) throws IOException {
+        CsvRecordReader csv = new CsvRecordReader(reader);
+        List<String> header = csv.next();
+        if (header == null) {
+            return;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.containsKey("title") || !columns.containsKey("author") || !columns.containsKey("pictureurl")) {
+            throw new BadRequestException("CSV header must contain title, author and pictureUrl");
+        }
+
+        List<String> record;
+        while ((record = csv.next()) != null) {
+            if (record.size() == 1 && record.get(0).isBlank()) {
+                continue;
+            }
+            BookRequest request = new BookRequest();
+            request.setTitle(column(record, columns, "title"));
+            request.setAuthor(column(record, columns, "author"));
+            request.setDescription(column(record, columns, "description"));
+            request.setPictureUrl(column(record, columns, "pictureurl"));
+            run.accept(csv.getRecordLine(), request);
+        }
+    }
+
+    private void readNdjson(BufferedReader reader, ImportRun run) throws IOException {
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            BookRequest request;
+            try {
+                request = objectMapper.readValue(line, BookRequest.class);
+            } catch (JsonProcessingException e) {
+                run.reject(lineNumber, "Malformed JSON: " + e.getOriginalMessage());
+                continue;
+            }
+            run.accept(lineNumber, request);
+        }
+    }
+
+    private static String column(List<String> record, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    // Per-request state: the pending chunk and the running report
+    private class ImportRun {
+        private final Long ownerId;
+        private final BookImportResponse response = new BookImportResponse();
+        private final List<Object[]> chunk = new ArrayList<>(chunkSize);
+        private final List<Long> chunkLines = new ArrayList<>(chunkSize);
+
+        ImportRun(Long ownerId) {
+            this.ownerId = ownerId;
+        }
+
+        void accept(long line, BookRequest request) {
+            response.setReceived(response.getReceived() + 1);
+            Set<ConstraintViolation<BookRequest>> violations = validator.validate(request);
+            if (!violations.isEmpty()) {
+                fail(line, violations.stream()
+                        .map(ConstraintViolation::getMessage)
+                        .sorted()
+                        .collect(Collectors.joining("; ")));
+                return;
+            }
+            chunk.add(new Object[]{request.getTitle(), request.getAuthor(), request.getDescription(),
+                    request.getPictureUrl(), ownerId});
+            chunkLines.add(line);
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        // A row that could not even be parsed
+        void reject(long line, String message) {
+            response.setReceived(response.getReceived() + 1);
+            fail(line, message);
+        }
+
+        private void fail(long line, String message) {
+            response.setFailed(response.getFailed() + 1);
+            if (response.getErrors().size() < MAX_REPORTED_ERRORS) {
+                response.getErrors().add(new BookImportResponse.RowError(line, message));
+            } else {
+                response.setErrorsTruncated(true);
+            }
+        }
+
+        void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_BOOK, chunk));
+                response.setImported(response.getImported() + chunk.size());
+            } catch (RuntimeException e) {
+                log.warn("Book import chunk of {} rows failed", chunk.size(), e);
+                for (Long line : chunkLines) {
+                    fail(line, "Database write failed for this chunk: " + e.getMessage());
+                }
+            }
+            chunk.clear();
+            chunkLines.clear();
+        }
+    }
+}
@@ -2,45 +2,140 @@ package com.example.bookexchange.service;
 
 import com.example.bookexchange.model.dto.request.BookRequest;
 import com.example.bookexchange.model.dto.response.BookResponse;
+import com.example.bookexchange.model.dto.response.CursorPageResponse;
 import com.example.bookexchange.model.entity.Book;
 import com.example.bookexchange.model.entity.User;
 import com.example.bookexchange.repository.BookRepository;
 import com.example.bookexchange.repository.UserRepository;
+import com.example.bookexchange.exception.BadRequestException;
 import com.example.bookexchange.exception.ResourceNotFoundException;
+import com.example.bookexchange.util.CursorCodec;
+import com.example.bookexchange.util.TransactionHooks;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+// Timed per entry point rather than per class: the mapping helpers are called once per book by other services
 @Service
 @RequiredArgsConstructor
 public class BookService {
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+    public static final int MAX_SEARCH_RESULTS = 100;
+
     private final BookRepository bookRepository;
     private final UserRepository userRepository;
+    private final BookCounterService bookCounterService;
+    private final EntityTagService entityTagService;
+    private final LocalityIndex localityIndex;
+    private final TrendingBooks trendingBooks;
 
     @Transactional(readOnly = true)
+    @Timed(value = "bookexchange.service", histogram = true)
     public List<BookResponse> getAvailableBooks(Long userId) {
-        return bookRepository.findAvailableBooksForUser(userId).stream()
-                .map(this::mapToBookResponse)
-                .collect(Collectors.toList());
+        return withPendingCounts(bookRepository.findAvailableBooksForUser(userId));
+    }
+
+    // Streams the catalog from a server-side cursor. Rows are DTO projections, so nothing
+    // accumulates in the persistence context however many there are.
+    @Transactional(readOnly = true)
+    @Timed(value = "bookexchange.service", histogram = true)
+    public void streamAvailableBooks(Long userId, Consumer<BookResponse> sink) {
+        try (Stream<BookResponse> books = bookRepository.streamAvailableBooksForUser(userId)) {
+            books.map(bookCounterService::applyPending).forEach(sink);
+        }
     }
 
     @Transactional(readOnly = true)
+    @Timed(value = "bookexchange.service", histogram = true)
     public List<BookResponse> searchBooks(Long userId, String searchTerm) {
-        return bookRepository.searchAvailableBooks(userId, searchTerm).stream()
-                .map(this::mapToBookResponse)
+        List<Long> rankedIds = bookRepository.searchAvailableBookIds(userId, searchTerm, MAX_SEARCH_RESULTS);
+        return getBookResponsesInOrder(rankedIds);
+    }
+
+    @Transactional(readOnly = true)
+    @Timed(value = "bookexchange.service", histogram = true)
+    public CursorPageResponse<BookResponse> getAvailableBooksPage(Long userId, String cursor, int size) {
+        int pageSize = resolvePageSize(size);
+        List<BookResponse> books = bookRepository.findAvailableBooksForUserAfter(
+                userId, decodeCursor(cursor), PageRequest.of(0, pageSize + 1));
+        return toPage(withPendingCounts(books), pageSize);
+    }
+
+    @Transactional(readOnly = true)
+    @Timed(value = "bookexchange.service", histogram = true)
+    public CursorPageResponse<BookResponse> searchBooksPage(Long userId, String searchTerm, String cursor, int size) {
+        int pageSize = resolvePageSize(size);
+        List<Long> ids = bookRepository.searchAvailableBookIdsAfter(
+                userId, searchTerm, decodeCursor(cursor), pageSize + 1);
+        return toPage(getBookResponsesInOrder(ids), pageSize);
+    }
+
+    // Books in the caller's city first, then the rest of their country. The cursor holds
+    // the tier and the last id read from it.
+    @Transactional(readOnly = true)
+    @Timed(value = "bookexchange.service", histogram = true)
+    public CursorPageResponse<BookResponse> getNearbyBooksPage(Long userId, String cursor, int size) {
+        int pageSize = resolvePageSize(size);
+        LocalityIndex.Region home = homeRegion(userId);
+        long[] position = cursor == null || cursor.isBlank()
+                ? new long[]{LocalityIndex.SAME_CITY, 0L}
+                : CursorCodec.decode(cursor, 2);
+
+        List<Long> ids = new ArrayList<>(pageSize + 1);
+        List<Integer> tiers = new ArrayList<>(pageSize + 1);
+        long afterId = position[1];
+        for (int tier = (int) position[0]; tier <= LocalityIndex.SAME_COUNTRY && ids.size() <= pageSize; tier++) {
+            for (Long id : localityIndex.nearby(home, tier, userId, afterId, pageSize + 1 - ids.size())) {
+                ids.add(id);
+                tiers.add(tier);
+            }
+            afterId = 0L;
+        }
+
+        boolean hasMore = ids.size() > pageSize;
+        List<Long> pageIds = ids.subList(0, Math.min(pageSize, ids.size()));
+        // The index may briefly lag changes made on other nodes
+        List<BookResponse> items = getBookResponsesInOrder(pageIds).stream()
+                .filter(BookResponse::isAvailable)
                 .collect(Collectors.toList());
+        String nextCursor = hasMore ? CursorCodec.encode(tiers.get(pageSize - 1), pageIds.get(pageSize - 1)) : null;
+        return new CursorPageResponse<>(items, nextCursor, hasMore);
     }
 
+    // Same matches as searchBooks, with those in the caller's city and then their country first
     @Transactional(readOnly = true)
+    @Timed(value = "bookexchange.service", histogram = true)
+    public List<BookResponse> searchBooksNearby(Long userId, String searchTerm) {
+        LocalityIndex.Region home = homeRegion(userId);
+        List<Long> rankedIds = new ArrayList<>(
+                bookRepository.searchAvailableBookIds(userId, searchTerm, MAX_SEARCH_RESULTS));
+        // Stable, so rank order is kept within each tier
+        rankedIds.sort(Comparator.comparingInt(id -> localityIndex.tierOf(id, home)));
+        return getBookResponsesInOrder(rankedIds);
+    }
+
+    @Transactional(readOnly = true)
+    @Timed(value = "bookexchange.service", histogram = true)
     public BookResponse getBookById(Long id) {
-        Book book = bookRepository.findById(id)
+        return bookRepository.findBookResponseById(id)
+                .map(bookCounterService::applyPending)
                 .orElseThrow(() -> new ResourceNotFoundException("Book not found with id: " + id));
-        return mapToBookResponse(book);
     }
 
     @Transactional
+    @Timed(value = "bookexchange.service", histogram = true)
     public BookResponse createBook(Long userId, BookRequest request) {
         User owner = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + userId));
@@ -53,10 +148,12 @@ public class BookService {
         book.setOwner(owner);
 
         book = bookRepository.save(book);
+        localityIndex.bookAvailable(book.getId(), userId, owner.getCountry(), owner.getCity());
         return mapToBookResponse(book);
     }
 
     @Transactional
+    @Timed(value = "bookexchange.service", histogram = true)
     public BookResponse updateBook(Long bookId, BookRequest request) {
         Book book = bookRepository.findById(bookId)
                 .orElseThrow(() -> new ResourceNotFoundException("Book not found with id: " + bookId));
@@ -67,19 +164,83 @@ public class BookService {
         book.setPictureUrl(request.getPictureUrl());
 
         book = bookRepository.save(book);
+        TransactionHooks.afterCommit(() -> entityTagService.evictBook(bookId));
         return mapToBookResponse(book);
     }
 
     @Transactional
+    @Timed(value = "bookexchange.service", histogram = true)
     public void toggleBookAvailability(Long bookId) {
         Book book = bookRepository.findById(bookId)
                 .orElseThrow(() -> new ResourceNotFoundException("Book not found with id: " + bookId));
 
         book.setAvailable(!book.isAvailable());
         bookRepository.save(book);
+        TransactionHooks.afterCommit(() -> entityTagService.evictBook(bookId));
+        if (book.isAvailable()) {
+            User owner = book.getOwner();
+            localityIndex.bookAvailable(bookId, owner.getId(), owner.getCountry(), owner.getCity());
+            trendingBooks.bookAvailable(bookId);
+        } else {
+            localityIndex.bookUnavailable(bookId);
+            trendingBooks.bookUnavailable(bookId);
+        }
+    }
+
+    // Projects the given books in one query, preserving the order of the ids
+    public List<BookResponse> getBookResponsesInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, BookResponse> booksById = bookRepository.findBookResponsesByIdIn(ids).stream()
+                .collect(Collectors.toMap(BookResponse::getId, Function.identity()));
+        return ids.stream()
+                .map(booksById::get)
+                .filter(Objects::nonNull)
+                .map(bookCounterService::applyPending)
+                .collect(Collectors.toList());
+    }
+
+    private List<BookResponse> withPendingCounts(List<BookResponse> books) {
+        books.forEach(bookCounterService::applyPending);
+        return books;
+    }
+
+    private LocalityIndex.Region homeRegion(Long userId) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + userId));
+        LocalityIndex.Region home = LocalityIndex.Region.of(user.getCountry(), user.getCity());
+        if (home == null) {
+            throw new BadRequestException("Set your country and city in your profile to discover books nearby");
+        }
+        return home;
+    }
+
+    private int resolvePageSize(int size) {
+        if (size < 1) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
+
+    private long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+        return CursorCodec.decode(cursor, 1)[0];
+    }
+
+    // Repositories fetch one row past the page size so we know whether another page exists
+    private CursorPageResponse<BookResponse> toPage(List<BookResponse> books, int pageSize) {
+        boolean hasMore = books.size() > pageSize;
+        List<BookResponse> items = books.stream()
+                .limit(pageSize)
+                .collect(Collectors.toList());
+        String nextCursor = hasMore ? CursorCodec.encode(items.get(items.size() - 1).getId()) : null;
+        return new CursorPageResponse<>(items, nextCursor, hasMore);
     }
 
-    private BookResponse mapToBookResponse(Book book) {
+    public BookResponse mapToBookResponse(Book book) {
         BookResponse response = new BookResponse();
         response.setId(book.getId());
         response.setTitle(book.getTitle());
@@ -92,6 +253,6 @@ public class BookService {
         response.setMatchCount(book.getMatchCount());
         response.setExchangeCount(book.getExchangeCount());
         response.setAvailable(book.isAvailable());
-        return response;
+        return bookCounterService.applyPending(response);
     }
 }
\ No newline at end of file
@@ -0,0 +1,110 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.model.dto.response.MessageResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-memory fan-out of chat messages to the Server-Sent Event streams open on this node.
+ * Each connection costs one {@link SseEmitter}; no thread is held while a client is idle.
+ */
+@Component
+@Slf4j
+public class ChatBroker {
+    private final Map<Long, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService fanOutExecutor;
+    private final long emitterTimeoutMs;
+
+    public ChatBroker(@Value("${bookexchange.chat.fan-out-threads:4}") int fanOutThreads,
+                      @Value("${bookexchange.chat.emitter-timeout-ms:1800000}") long emitterTimeoutMs) {
+        this.fanOutExecutor = Executors.newFixedThreadPool(fanOutThreads);
+        this.emitterTimeoutMs = emitterTimeoutMs;
+    }
+
+    public SseEmitter subscribe(Long chatId) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        subscribers.compute(chatId, (id, emitters) -> {
+            Set<SseEmitter> updated = emitters != null ? emitters : ConcurrentHashMap.newKeySet();
+            updated.add(emitter);
+            return updated;
+        });
+        emitter.onCompletion(() -> unsubscribe(chatId, emitter));
+        emitter.onTimeout(() -> unsubscribe(chatId, emitter));
+        emitter.onError(error -> unsubscribe(chatId, emitter));
+        return emitter;
+    }
+
+    // Delivery happens off the caller's thread so a slow client never delays the sender
+    public void publish(MessageResponse message) {
+        Set<SseEmitter> emitters = subscribers.get(message.getChatId());
+        if (emitters == null || emitters.isEmpty()) {
+            return;
+        }
+        fanOutExecutor.execute(() -> {
+            for (SseEmitter emitter : emitters) {
+                send(message.getChatId(), emitter, SseEmitter.event().name("message").data(message));
+            }
+        });
+    }
+
+    // Tells the chat's streams that a message delivered earlier could not be stored; the sender's
+    // client recognises its own message by sender id and sent time and offers to send it again
+    public void publishFailure(MessageResponse message) {
+        Set<SseEmitter> emitters = subscribers.get(message.getChatId());
+        if (emitters == null || emitters.isEmpty()) {
+            return;
+        }
+        fanOutExecutor.execute(() -> {
+            for (SseEmitter emitter : emitters) {
+                send(message.getChatId(), emitter, SseEmitter.event().name("message-failed").data(message));
+            }
+        });
+    }
+
+    public int openConnections() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    // Keeps idle connections alive through proxies and detects clients that went away
+    @Scheduled(fixedDelayString = "${bookexchange.chat.heartbeat-interval-ms:25000}")
+    public void heartbeat() {
+        subscribers.forEach((chatId, emitters) -> fanOutExecutor.execute(() -> {
+            for (SseEmitter emitter : emitters) {
+                send(chatId, emitter, SseEmitter.event().comment("heartbeat"));
+            }
+        }));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fanOutExecutor.shutdownNow();
+        subscribers.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+    }
+
+    private void send(Long chatId, SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping chat {} subscriber: {}", chatId, e.getMessage());
+            unsubscribe(chatId, emitter);
+        }
+    }
+
+    private void unsubscribe(Long chatId, SseEmitter emitter) {
+        subscribers.computeIfPresent(chatId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.exception.BadRequestException;
+import com.example.bookexchange.exception.ResourceNotFoundException;
+import com.example.bookexchange.model.dto.request.MessageRequest;
+import com.example.bookexchange.model.dto.response.ChatInboxResponse;
+import com.example.bookexchange.model.dto.response.CursorPageResponse;
+import com.example.bookexchange.model.dto.response.MessageResponse;
+import com.example.bookexchange.model.entity.Chat;
+import com.example.bookexchange.model.entity.ChatInboxEntry;
+import com.example.bookexchange.model.entity.Exchange;
+import com.example.bookexchange.model.entity.User;
+import com.example.bookexchange.repository.ChatInboxRepository;
+import com.example.bookexchange.repository.ChatRepository;
+import com.example.bookexchange.repository.MessageRepository;
+import com.example.bookexchange.util.CursorCodec;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+public class ChatService {
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int DEFAULT_INBOX_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 200;
+
+    private final ChatRepository chatRepository;
+    private final ChatInboxRepository chatInboxRepository;
+    private final MessageRepository messageRepository;
+    private final MessageWriteBuffer messageWriteBuffer;
+    private final ChatBroker chatBroker;
+
+    // Chat participants never change, so they are cached to keep the send path off the database
+    private final Cache<Long, long[]> participantsByChat = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .build();
+
+    @Transactional
+    public Chat openChat(Exchange exchange) {
+        Chat chat = new Chat();
+        chat.setUser1(exchange.getUser1());
+        chat.setUser2(exchange.getUser2());
+        chat.setExchange(exchange);
+        chat = chatRepository.save(chat);
+
+        chatInboxRepository.save(newInboxEntry(chat, exchange.getUser1(), exchange.getUser2()));
+        chatInboxRepository.save(newInboxEntry(chat, exchange.getUser2(), exchange.getUser1()));
+        return chat;
+    }
+
+    // Served entirely from the chat_inbox read model; never touches messages
+    @Transactional(readOnly = true)
+    public CursorPageResponse<ChatInboxResponse> getInbox(Long userId, String cursor, int size) {
+        int pageSize = size < 1 ? DEFAULT_INBOX_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+
+        List<ChatInboxEntry> entries;
+        if (cursor == null || cursor.isBlank()) {
+            entries = chatInboxRepository.findInbox(userId, limit);
+        } else {
+            long[] position = CursorCodec.decode(cursor, 2);
+            entries = chatInboxRepository.findInboxAfter(userId, fromEpochMicros(position[0]), position[1], limit);
+        }
+
+        boolean hasMore = entries.size() > pageSize;
+        List<ChatInboxResponse> items = entries.stream()
+                .limit(pageSize)
+                .map(this::mapToChatInboxResponse)
+                .collect(Collectors.toList());
+        String nextCursor = null;
+        if (hasMore) {
+            ChatInboxResponse last = items.get(items.size() - 1);
+            nextCursor = CursorCodec.encode(toEpochMicros(last.getLastMessageAt()), last.getChatId());
+        }
+        return new CursorPageResponse<>(items, nextCursor, hasMore);
+    }
+
+    @Transactional
+    public void markRead(Long userId, Long chatId) {
+        verifyParticipant(userId, chatId);
+
+        // Messages still in the write buffer are stored as read. The inbox row is locked
+        // first, so a batch being written for this chat commits before the stored messages are marked.
+        messageWriteBuffer.markRead(chatId, userId, LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+        chatInboxRepository.resetUnread(userId, chatId);
+        messageRepository.markRead(chatId, userId);
+    }
+
+    public MessageResponse sendMessage(Long userId, Long chatId, MessageRequest request) {
+        verifyParticipant(userId, chatId);
+        // Checked here as well as on the request: the write buffer stores messages after the
+        // sender has been answered, so one the database would refuse must not get that far
+        verifyContent(request.getContent());
+
+        // Microseconds, as stored, so a buffered copy can be matched with its row
+        MessageResponse message = new MessageResponse(
+                null, chatId, userId, request.getContent(), false,
+                LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+        messageWriteBuffer.enqueue(message);
+        chatBroker.publish(message);
+        return message;
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPageResponse<MessageResponse> getMessages(Long userId, Long chatId, String cursor, int size) {
+        verifyParticipant(userId, chatId);
+
+        int pageSize = size < 1 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        boolean firstPage = cursor == null || cursor.isBlank();
+        long beforeId = firstPage ? Long.MAX_VALUE : CursorCodec.decode(cursor, 1)[0];
+
+        // Read before the stored page: a buffered message is then either still pending or
+        // already stored, never neither; one committed in between is dropped from pending
+        List<MessageResponse> pending = firstPage ? messageWriteBuffer.pending(chatId) : List.of();
+        List<MessageResponse> stored = messageRepository.findHistoryBefore(
+                chatId, beforeId, PageRequest.of(0, pageSize + 1));
+        boolean hasMore = stored.size() > pageSize;
+
+        List<MessageResponse> items = new ArrayList<>();
+        if (!pending.isEmpty()) {
+            // Newest first: messages still waiting in the write buffer come before the stored ones
+            Set<List<Object>> storedKeys = stored.stream()
+                    .map(ChatService::messageKey)
+                    .collect(Collectors.toSet());
+            pending.stream()
+                    .filter(message -> !storedKeys.contains(messageKey(message)))
+                    .sorted(Comparator.comparing(MessageResponse::getSentAt).reversed())
+                    .forEach(items::add);
+        }
+        items.addAll(stored.stream().limit(pageSize).collect(Collectors.toList()));
+
+        String nextCursor = hasMore ? CursorCodec.encode(stored.get(pageSize - 1).getId()) : null;
+        return new CursorPageResponse<>(items, nextCursor, hasMore);
+    }
+
+    public SseEmitter subscribe(Long userId, Long chatId) {
+        verifyParticipant(userId, chatId);
+        return chatBroker.subscribe(chatId);
+    }
+
+    private ChatInboxEntry newInboxEntry(Chat chat, User owner, User other) {
+        ChatInboxEntry entry = new ChatInboxEntry();
+        entry.setUserId(owner.getId());
+        entry.setChatId(chat.getId());
+        entry.setOtherUserId(other.getId());
+        entry.setOtherUsername(other.getUsername());
+        entry.setLastMessageAt(chat.getCreatedAt());
+        return entry;
+    }
+
+    private ChatInboxResponse mapToChatInboxResponse(ChatInboxEntry entry) {
+        ChatInboxResponse response = new ChatInboxResponse();
+        response.setChatId(entry.getChatId());
+        response.setOtherUserId(entry.getOtherUserId());
+        response.setOtherUsername(entry.getOtherUsername());
+        response.setUnreadCount(entry.getUnreadCount());
+        response.setLastMessageSnippet(entry.getLastMessageSnippet());
+        response.setLastMessageAt(entry.getLastMessageAt());
+        return response;
+    }
+
+    // Buffered messages have no id yet; sender, time and content identify them
+    private static List<Object> messageKey(MessageResponse message) {
+        return List.of(message.getSenderId(), message.getSentAt(), message.getContent());
+    }
+
+    // Cursor timestamps keep microsecond precision so (lastMessageAt, chatId) stays an exact seek key
+    private static long toEpochMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + time.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromEpochMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+
+    private static void verifyContent(String content) {
+        if (content == null || content.isBlank()) {
+            throw new BadRequestException("Message content is required");
+        }
+        if (content.length() > MessageRequest.MAX_CONTENT_LENGTH) {
+            throw new BadRequestException("Message cannot exceed " + MessageRequest.MAX_CONTENT_LENGTH + " characters");
+        }
+        // PostgreSQL text cannot hold NUL characters
+        if (content.indexOf('\u0000') >= 0) {
+            throw new BadRequestException("Message contains characters that cannot be stored");
+        }
+    }
+
+    private void verifyParticipant(Long userId, Long chatId) {
+        // Loaded outside the cache's compute lock so the JDBC call never pins a virtual thread
+        long[] participants = participantsByChat.getIfPresent(chatId);
+        if (participants == null) {
+            participants = loadParticipants(chatId);
+            participantsByChat.put(chatId, participants);
+        }
+        if (participants[0] != userId && participants[1] != userId) {
+            throw new BadRequestException("Not authorized to access this chat");
+        }
+    }
+
+    private long[] loadParticipants(Long chatId) {
+        List<Object[]> rows = chatRepository.findParticipantIds(chatId);
+        if (rows.isEmpty()) {
+            throw new ResourceNotFoundException("Chat not found");
+        }
+        return new long[]{(Long) rows.get(0)[0], (Long) rows.get(0)[1]};
+    }
+}
@@ -0,0 +1,507 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.config.ReplicaRoutingDataSource;
+import com.example.bookexchange.repository.BookMatchRepository;
+import com.example.bookexchange.util.StreamChunks;
+import com.example.bookexchange.util.TransactionHooks;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
+import it.unimi.dsi.fastutil.longs.Long2DoubleMaps;
+import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntMaps;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMaps;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Item-to-item co-occurrence over book match history: two books co-occur once for every
+ * user who matched on both. Every match counts, including ones later cancelled or
+ * completed, since each was a signal of interest. Neighbour lists are scored by count
+ * damped by the neighbour's popularity and pruned to the best candidates, so memory
+ * stays linear in the number of books.
+ *
+ * <p>Everything lives in primitive hash maps behind a read/write lock. The index is
+ * saved to bookexchange.recommendations.snapshot-path periodically; on startup it is
+ * loaded from there and caught up from the matches created since.
+ *
+ * <p>Matches made on other nodes arrive with a periodic catch-up by creation time. Each
+ * scan starts bookexchange.recommendations.catch-up-overlap-ms before the newest match
+ * the last one saw, so matches committed late or stamped by a node whose clock lags are
+ * still picked up; the ids applied within that overlap are remembered so none counts twice.
+ */
+@Component
+@Slf4j
+public class CoOccurrenceIndex {
+    private static final int SNAPSHOT_MAGIC = 0x42584331;
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int CATCH_UP_CHUNK_SIZE = 1000;
+    private static final long[] NONE = new long[0];
+
+    private final BookMatchRepository matchRepository;
+    private final int topK;
+    private final int maxCandidates;
+    private final int maxUserHistory;
+    private final Path snapshotPath;
+    private final long overlapMs;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // userId -> books they matched on, oldest first, capped at maxUserHistory
+    private final Long2ObjectOpenHashMap<LongArrayList> wanted = new Long2ObjectOpenHashMap<>();
+    // bookId -> users who matched on it
+    private final Long2IntOpenHashMap popularity = new Long2IntOpenHashMap();
+    // bookId -> co-occurrence counts with other books
+    private final Long2ObjectOpenHashMap<Neighbours> neighbours = new Long2ObjectOpenHashMap<>();
+    // Creation time (UTC millis) of the newest match a catch-up has seen; the next one starts here less the overlap
+    private long caughtUpTo = Long.MIN_VALUE;
+    // matchId -> creation time of the matches applied within the overlap, which the next catch-up sees again
+    private final Long2LongOpenHashMap applied = new Long2LongOpenHashMap();
+    // Set once warmUp has run, so a scheduled catch-up never races the initial build
+    private volatile boolean ready;
+
+    public CoOccurrenceIndex(
+            BookMatchRepository matchRepository,
+            @Value("${bookexchange.recommendations.top-k:50}") int topK,
+            @Value("${bookexchange.recommendations.max-user-history:200}") int maxUserHistory,
+            @Value("${bookexchange.recommendations.snapshot-path:}") String snapshotPath,
+            @Value("${bookexchange.recommendations.catch-up-overlap-ms:300000}") long overlapMs
+    ) {
+        this.matchRepository = matchRepository;
+        this.topK = topK;
+        // Room for newcomers to build up counts before a prune decides whether they stay
+        this.maxCandidates = topK * 4;
+        this.maxUserHistory = maxUserHistory;
+        this.snapshotPath = snapshotPath == null || snapshotPath.isBlank() ? null : Path.of(snapshotPath);
+        this.overlapMs = overlapMs;
+    }
+
+    private static final class Neighbours {
+        Long2IntOpenHashMap counts = new Long2IntOpenHashMap(4);
+        // Best topK neighbour ids, best first; null after a change until the next read
+        volatile long[] top;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void warmUp() {
+        // Read on the primary: a lagging replica would miss recent matches
+        try (ReplicaRoutingDataSource.PrimaryPin ignored = ReplicaRoutingDataSource.pinToPrimary()) {
+            restoreAndCatchUp();
+        }
+    }
+
+    private void restoreAndCatchUp() {
+        boolean restored = loadSnapshot();
+        int caughtUp = applyNewMatches();
+        ready = true;
+        log.info("Co-occurrence index {} with {} matches",
+                restored ? "restored from snapshot and caught up" : "built", caughtUp);
+    }
+
+    @Scheduled(initialDelayString = "${bookexchange.recommendations.catch-up-interval-ms:60000}",
+            fixedDelayString = "${bookexchange.recommendations.catch-up-interval-ms:60000}")
+    @Transactional(readOnly = true)
+    public void catchUp() {
+        if (!ready) {
+            return;
+        }
+        // Another node's match may not have reached a replica yet, and would then be skipped for good
+        try (ReplicaRoutingDataSource.PrimaryPin ignored = ReplicaRoutingDataSource.pinToPrimary()) {
+            int caughtUp = applyNewMatches();
+            if (caughtUp > 0) {
+                log.debug("Co-occurrence index caught up with {} matches", caughtUp);
+            }
+        }
+    }
+
+    // Applies the matches created since the last scan, less the overlap, that are not applied yet
+    private synchronized int applyNewMatches() {
+        long since = caughtUpTo();
+        int[] caughtUp = new int[1];
+        try (Stream<Object[]> signals = since == Long.MIN_VALUE
+                ? matchRepository.streamAllMatchSignals()
+                : matchRepository.streamMatchSignalsSince(toDateTime(since - overlapMs))) {
+            StreamChunks.forEachChunk(signals, CATCH_UP_CHUNK_SIZE, chunk -> {
+                lock.writeLock().lock();
+                try {
+                    for (Object[] signal : chunk) {
+                        // Rows without a creation time only ever come up in the full scan
+                        long createdAt = signal[3] == null ? Long.MIN_VALUE : toMillis((LocalDateTime) signal[3]);
+                        if (record((Long) signal[0], (Long) signal[1], (Long) signal[2], createdAt)) {
+                            caughtUp[0]++;
+                        }
+                        caughtUpTo = Math.max(caughtUpTo, createdAt);
+                    }
+                    forgetApplied();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            });
+        }
+        return caughtUp[0];
+    }
+
+    public void matchCreated(Long matchId, Long userId, Long bookId) {
+        // BookMatch.createdAt was taken just before, so this is never earlier than the row's
+        long createdAt = toMillis(LocalDateTime.now());
+        TransactionHooks.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                record(matchId, userId, bookId, createdAt);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // Up to limit books most often wanted together with bookId, best first
+    public long[] similar(long bookId, int limit) {
+        lock.readLock().lock();
+        try {
+            long[] top = topOf(bookId);
+            return top.length <= limit ? top : Arrays.copyOf(top, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Up to limit books for userId: the neighbours of everything they matched on, each
+     * weighted by its rank in that neighbour list, without the books they already wanted.
+     */
+    public long[] recommendFor(long userId, int limit) {
+        lock.readLock().lock();
+        try {
+            LongArrayList history = wanted.get(userId);
+            if (history == null) {
+                return NONE;
+            }
+            Long2DoubleOpenHashMap scores = new Long2DoubleOpenHashMap();
+            for (int i = 0; i < history.size(); i++) {
+                long[] top = topOf(history.getLong(i));
+                for (int rank = 0; rank < top.length; rank++) {
+                    scores.addTo(top[rank], 1.0 / (rank + 1));
+                }
+            }
+            for (int i = 0; i < history.size(); i++) {
+                scores.remove(history.getLong(i));
+            }
+            long[] ids = new long[scores.size()];
+            double[] weights = new double[scores.size()];
+            int n = 0;
+            for (Long2DoubleMap.Entry entry : Long2DoubleMaps.fastIterable(scores)) {
+                ids[n] = entry.getLongKey();
+                weights[n++] = entry.getDoubleValue();
+            }
+            return best(ids, weights, n, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long caughtUpTo() {
+        lock.readLock().lock();
+        try {
+            return caughtUpTo;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Called with the write lock held; false when the match was applied before
+    private boolean record(long matchId, long userId, long bookId, long createdAt) {
+        if (applied.containsKey(matchId)) {
+            return false;
+        }
+        applied.put(matchId, createdAt);
+        LongArrayList history = wanted.get(userId);
+        if (history == null) {
+            history = new LongArrayList(4);
+            wanted.put(userId, history);
+        } else if (history.contains(bookId)) {
+            // Repeat matches on the same book add nothing
+            return true;
+        }
+        for (int i = 0; i < history.size(); i++) {
+            long other = history.getLong(i);
+            cooccur(bookId, other);
+            cooccur(other, bookId);
+        }
+        history.add(bookId);
+        popularity.addTo(bookId, 1);
+        // Counts already gathered stay; the oldest book just stops pairing with new ones
+        if (history.size() > maxUserHistory) {
+            history.removeLong(0);
+        }
+        return true;
+    }
+
+    // Called with the write lock held. Matches before the overlap are never scanned again.
+    private void forgetApplied() {
+        if (caughtUpTo == Long.MIN_VALUE) {
+            return;
+        }
+        long horizon = caughtUpTo - overlapMs;
+        applied.long2LongEntrySet().removeIf(entry -> entry.getLongValue() < horizon);
+    }
+
+    private void cooccur(long bookId, long other) {
+        Neighbours entry = neighbours.get(bookId);
+        if (entry == null) {
+            entry = new Neighbours();
+            neighbours.put(bookId, entry);
+        }
+        entry.counts.addTo(other, 1);
+        entry.top = null;
+        if (entry.counts.size() > maxCandidates) {
+            Long2IntOpenHashMap kept = new Long2IntOpenHashMap(topK * 2);
+            for (long id : best(entry.counts, topK * 2)) {
+                kept.put(id, entry.counts.get(id));
+            }
+            entry.counts = kept;
+        }
+    }
+
+    // Called with a lock held; concurrent readers may both compute top, with the same result
+    private long[] topOf(long bookId) {
+        Neighbours entry = neighbours.get(bookId);
+        if (entry == null) {
+            return NONE;
+        }
+        long[] top = entry.top;
+        if (top == null) {
+            top = best(entry.counts, topK);
+            entry.top = top;
+        }
+        return top;
+    }
+
+    // Co-occurrence count damped by the neighbour's popularity, so bestsellers do not top every list
+    private long[] best(Long2IntOpenHashMap counts, int limit) {
+        long[] ids = new long[counts.size()];
+        double[] scores = new double[counts.size()];
+        int n = 0;
+        for (Long2IntMap.Entry entry : Long2IntMaps.fastIterable(counts)) {
+            ids[n] = entry.getLongKey();
+            scores[n++] = entry.getIntValue() / Math.sqrt(Math.max(1, popularity.get(entry.getLongKey())));
+        }
+        return best(ids, scores, n, limit);
+    }
+
+    private static long[] best(long[] ids, double[] scores, int n, int limit) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        // Higher score first, lower id on ties so results are stable
+        IntArrays.quickSort(order, (a, b) -> {
+            int byScore = Double.compare(scores[b], scores[a]);
+            return byScore != 0 ? byScore : Long.compare(ids[a], ids[b]);
+        });
+        long[] result = new long[Math.min(limit, n)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids[order[i]];
+        }
+        return result;
+    }
+
+    @Scheduled(initialDelayString = "${bookexchange.recommendations.snapshot-interval-ms:900000}",
+            fixedDelayString = "${bookexchange.recommendations.snapshot-interval-ms:900000}")
+    public void saveSnapshot() {
+        if (snapshotPath == null) {
+            return;
+        }
+        // Copied under the lock, which writers then wait on only as long as the copy takes, not the disk
+        Snapshot snapshot;
+        lock.readLock().lock();
+        try {
+            snapshot = Snapshot.copyOf(this);
+        } finally {
+            lock.readLock().unlock();
+        }
+        Path temp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try {
+            if (snapshotPath.getParent() != null) {
+                Files.createDirectories(snapshotPath.getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                snapshot.writeTo(out);
+            }
+            // Readers of the snapshot only ever see a complete file
+            Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not save co-occurrence snapshot to {}", snapshotPath, e);
+        }
+    }
+
+    private record Snapshot(long caughtUpTo, Long2LongOpenHashMap applied, Long2ObjectOpenHashMap<long[]> wanted,
+                            Long2IntOpenHashMap popularity, Long2ObjectOpenHashMap<Long2IntOpenHashMap> neighbours) {
+
+        // Called with a lock held
+        static Snapshot copyOf(CoOccurrenceIndex index) {
+            Long2ObjectOpenHashMap<long[]> wanted = new Long2ObjectOpenHashMap<>(index.wanted.size());
+            for (Long2ObjectMap.Entry<LongArrayList> entry : Long2ObjectMaps.fastIterable(index.wanted)) {
+                wanted.put(entry.getLongKey(), entry.getValue().toLongArray());
+            }
+            Long2ObjectOpenHashMap<Long2IntOpenHashMap> neighbours = new Long2ObjectOpenHashMap<>(index.neighbours.size());
+            for (Long2ObjectMap.Entry<Neighbours> entry : Long2ObjectMaps.fastIterable(index.neighbours)) {
+                neighbours.put(entry.getLongKey(), entry.getValue().counts.clone());
+            }
+            return new Snapshot(index.caughtUpTo, index.applied.clone(), wanted, index.popularity.clone(), neighbours);
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(caughtUpTo);
+
+            out.writeInt(applied.size());
+            for (Long2LongMap.Entry entry : Long2LongMaps.fastIterable(applied)) {
+                out.writeLong(entry.getLongKey());
+                out.writeLong(entry.getLongValue());
+            }
+
+            out.writeInt(wanted.size());
+            for (Long2ObjectMap.Entry<long[]> entry : Long2ObjectMaps.fastIterable(wanted)) {
+                out.writeLong(entry.getLongKey());
+                writeIds(out, entry.getValue());
+            }
+
+            out.writeInt(popularity.size());
+            for (Long2IntMap.Entry entry : Long2IntMaps.fastIterable(popularity)) {
+                out.writeLong(entry.getLongKey());
+                out.writeInt(entry.getIntValue());
+            }
+
+            out.writeInt(neighbours.size());
+            for (Long2ObjectMap.Entry<Long2IntOpenHashMap> entry : Long2ObjectMaps.fastIterable(neighbours)) {
+                Long2IntOpenHashMap counts = entry.getValue();
+                out.writeLong(entry.getLongKey());
+                out.writeInt(counts.size());
+                for (Long2IntMap.Entry count : Long2IntMaps.fastIterable(counts)) {
+                    out.writeLong(count.getLongKey());
+                    out.writeInt(count.getIntValue());
+                }
+            }
+        }
+    }
+
+    // False when there is no usable snapshot, in which case the index is left empty
+    private boolean loadSnapshot() {
+        if (snapshotPath == null) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(snapshotPath), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                log.warn("Ignoring co-occurrence snapshot {} in an unknown format", snapshotPath);
+                return false;
+            }
+            readSnapshot(in);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable co-occurrence snapshot {}", snapshotPath, e);
+            clear();
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void readSnapshot(DataInputStream in) throws IOException {
+        clear();
+        caughtUpTo = in.readLong();
+
+        int recent = in.readInt();
+        for (int i = 0; i < recent; i++) {
+            applied.put(in.readLong(), in.readLong());
+        }
+
+        int users = in.readInt();
+        for (int i = 0; i < users; i++) {
+            long userId = in.readLong();
+            wanted.put(userId, LongArrayList.wrap(readIds(in)));
+        }
+
+        int books = in.readInt();
+        for (int i = 0; i < books; i++) {
+            popularity.put(in.readLong(), in.readInt());
+        }
+
+        int lists = in.readInt();
+        for (int i = 0; i < lists; i++) {
+            long bookId = in.readLong();
+            int size = in.readInt();
+            Neighbours entry = new Neighbours();
+            entry.counts = new Long2IntOpenHashMap(size);
+            for (int j = 0; j < size; j++) {
+                entry.counts.put(in.readLong(), in.readInt());
+            }
+            neighbours.put(bookId, entry);
+        }
+    }
+
+    private void clear() {
+        wanted.clear();
+        popularity.clear();
+        neighbours.clear();
+        applied.clear();
+        caughtUpTo = Long.MIN_VALUE;
+    }
+
+    // Creation times are local date-times; read as UTC they order the same and survive a restart
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime toDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    private static void writeIds(DataOutputStream out, long[] ids) throws IOException {
+        out.writeInt(ids.length);
+        for (long id : ids) {
+            out.writeLong(id);
+        }
+    }
+
+    private static long[] readIds(DataInputStream in) throws IOException {
+        long[] ids = new long[in.readInt()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = in.readLong();
+        }
+        return ids;
+    }
+}
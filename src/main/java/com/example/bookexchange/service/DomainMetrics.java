@@ -0,0 +1,52 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.util.TransactionHooks;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Business counters. Increments are applied after commit so rolled-back work is never counted.
+ */
+@Component
+public class DomainMetrics {
+    private final Counter matchesCreated;
+    private final Counter reciprocalHits;
+    private final Counter exchangesCompleted;
+
+    public DomainMetrics(MeterRegistry meterRegistry, ChatBroker chatBroker, MessageWriteBuffer messageWriteBuffer) {
+        this.matchesCreated = Counter.builder("bookexchange.matches.created")
+                .description("Book matches created")
+                .register(meterRegistry);
+        this.reciprocalHits = Counter.builder("bookexchange.matches.reciprocal")
+                .description("New matches that found an existing reciprocal match")
+                .register(meterRegistry);
+        this.exchangesCompleted = Counter.builder("bookexchange.exchanges.completed")
+                .description("Exchanges confirmed by both users")
+                .register(meterRegistry);
+        Gauge.builder("bookexchange.chat.connections", chatBroker, ChatBroker::openConnections)
+                .description("Open chat event streams on this node")
+                .register(meterRegistry);
+        Gauge.builder("bookexchange.chat.buffered", messageWriteBuffer, MessageWriteBuffer::depth)
+                .description("Chat messages on this node waiting to be written")
+                .register(meterRegistry);
+        FunctionCounter.builder("bookexchange.chat.dead_letters", messageWriteBuffer, MessageWriteBuffer::deadLetterCount)
+                .description("Chat messages the database refused, delivered live but never stored")
+                .register(meterRegistry);
+    }
+
+    public void matchCreated(boolean reciprocal) {
+        TransactionHooks.afterCommit(() -> {
+            matchesCreated.increment();
+            if (reciprocal) {
+                reciprocalHits.increment();
+            }
+        });
+    }
+
+    public void exchangeCompleted() {
+        TransactionHooks.afterCommit(exchangesCompleted::increment);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.model.dto.response.UserResponse;
+import com.example.bookexchange.repository.BookRepository;
+import com.example.bookexchange.repository.UserRepository;
+import com.example.bookexchange.repository.projection.BookVersion;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Strong ETags for single books and user profiles, built from version columns so that
+ * conditional GETs can be answered without loading or mapping the entity. Current
+ * versions are cached for bookexchange.etag.version-ttl-ms and evicted on local writes,
+ * SQL aggregate updates included; changes made by other nodes show up once an entry expires.
+ */
+@Service
+public class EntityTagService {
+    private final BookRepository bookRepository;
+    private final UserRepository userRepository;
+    private final BookCounterService bookCounterService;
+    private final Cache<Long, BookVersion> bookVersions;
+    private final Cache<Long, Long> userVersions;
+
+    public EntityTagService(
+            BookRepository bookRepository,
+            UserRepository userRepository,
+            BookCounterService bookCounterService,
+            @Value("${bookexchange.etag.version-ttl-ms:1000}") long versionTtlMs
+    ) {
+        this.bookRepository = bookRepository;
+        this.userRepository = userRepository;
+        this.bookCounterService = bookCounterService;
+        this.bookVersions = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(versionTtlMs))
+                .maximumSize(100_000)
+                .build();
+        this.userVersions = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(versionTtlMs))
+                .maximumSize(100_000)
+                .build();
+    }
+
+    // Current tag of a book, or null when it does not exist. Unflushed counter deltas are
+    // part of the response, so they are part of the tag.
+    public String currentBookTag(Long bookId) {
+        BookVersion version = bookVersions.getIfPresent(bookId);
+        if (version == null) {
+            // Looked up outside the cache's compute lock so the query never pins a carrier thread
+            version = bookRepository.findVersionById(bookId).orElse(null);
+            if (version == null) {
+                return null;
+            }
+            bookVersions.put(bookId, version);
+        }
+        return "b" + version.getVersion() + "." + version.getOwnerVersion() + "."
+                + (version.getLikeCount() + bookCounterService.pending(BookCounterService.Counter.LIKES, bookId)) + "."
+                + (version.getMatchCount() + bookCounterService.pending(BookCounterService.Counter.MATCHES, bookId)) + "."
+                + (version.getExchangeCount() + bookCounterService.pending(BookCounterService.Counter.EXCHANGES, bookId));
+    }
+
+    // Current tag of a user profile, or null when the user does not exist
+    public String currentUserTag(Long userId) {
+        Long version = currentUserVersion(userId);
+        return version == null ? null : userTag(version);
+    }
+
+    // Current version of a user profile, or null when the user does not exist
+    public Long currentUserVersion(Long userId) {
+        Long version = userVersions.getIfPresent(userId);
+        if (version == null) {
+            version = userRepository.findVersionById(userId).orElse(null);
+            if (version == null) {
+                return null;
+            }
+            userVersions.put(userId, version);
+        }
+        return version;
+    }
+
+    // Tag of the profile as it was read, which may be older than the current one
+    public String userTag(UserResponse profile) {
+        return userTag(profile.getVersion());
+    }
+
+    public void evictBook(Long bookId) {
+        bookVersions.invalidate(bookId);
+    }
+
+    public void evictUser(Long userId) {
+        userVersions.invalidate(userId);
+    }
+
+    public String userTag(long version) {
+        return "u" + version;
+    }
+}
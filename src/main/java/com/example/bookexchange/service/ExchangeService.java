@@ -3,46 +3,79 @@ package com.example.bookexchange.service;
 import com.example.bookexchange.exception.BadRequestException;
 import com.example.bookexchange.exception.ResourceNotFoundException;
 import com.example.bookexchange.model.dto.request.ExchangeMeetupRequest;
+import com.example.bookexchange.model.dto.response.BookResponse;
 import com.example.bookexchange.model.dto.response.ExchangeResponse;
 import com.example.bookexchange.model.entity.*;
 import com.example.bookexchange.model.enums.ExchangeStatus;
 import com.example.bookexchange.repository.BookMatchRepository;
 import com.example.bookexchange.repository.ExchangeRepository;
 import com.example.bookexchange.repository.UserRepository;
+import com.example.bookexchange.repository.projection.ExchangeView;
+import com.example.bookexchange.util.StreamChunks;
+import com.example.bookexchange.util.TransactionHooks;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
+@Timed(value = "bookexchange.service", histogram = true)
 public class ExchangeService {
+    private static final int STREAM_CHUNK_SIZE = 500;
+
     private final ExchangeRepository exchangeRepository;
     private final BookMatchRepository matchRepository;
     private final UserRepository userRepository;
+    private final ReciprocalMatchIndex reciprocalMatchIndex;
+    private final BookService bookService;
+    private final BookCounterService bookCounterService;
+    private final ChatService chatService;
+    private final DomainMetrics domainMetrics;
+    private final LocalityIndex localityIndex;
+    private final TrendingBooks trendingBooks;
+    private final UserService userService;
+    private final EntityTagService entityTagService;
 
     @Transactional(readOnly = true)
     public List<ExchangeResponse> getUserActiveExchanges(Long userId) {
-        User user = userRepository.findById(userId)
-            .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-            
-        return exchangeRepository.findActiveExchangesByUser(user).stream()
-            .map(this::mapToExchangeResponse)
-            .collect(Collectors.toList());
+        if (!userRepository.existsById(userId)) {
+            throw new ResourceNotFoundException("User not found");
+        }
+
+        return mapToExchangeResponses(exchangeRepository.findActiveExchangeViewsByUserId(userId));
     }
 
     @Transactional(readOnly = true)
     public List<ExchangeResponse> getUserExchangeHistory(Long userId) {
-        User user = userRepository.findById(userId)
-            .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-            
-        return exchangeRepository.findByUserAndStatus(user, ExchangeStatus.COMPLETED).stream()
-            .map(this::mapToExchangeResponse)
-            .collect(Collectors.toList());
+        if (!userRepository.existsById(userId)) {
+            throw new ResourceNotFoundException("User not found");
+        }
+
+        return mapToExchangeResponses(
+            exchangeRepository.findExchangeViewsByUserIdAndStatus(userId, ExchangeStatus.COMPLETED));
+    }
+
+    // Streaming variant of getUserExchangeHistory: books are resolved one chunk of exchanges at a time
+    @Transactional(readOnly = true)
+    public void streamUserExchangeHistory(Long userId, Consumer<ExchangeResponse> sink) {
+        if (!userRepository.existsById(userId)) {
+            throw new ResourceNotFoundException("User not found");
+        }
+
+        try (Stream<ExchangeView> exchanges =
+                     exchangeRepository.streamExchangeViewsByUserIdAndStatus(userId, ExchangeStatus.COMPLETED)) {
+            StreamChunks.forEachChunk(exchanges, STREAM_CHUNK_SIZE, chunk -> mapToExchangeResponses(chunk).forEach(sink));
+        }
     }
 
     @Transactional
@@ -55,11 +88,14 @@ public class ExchangeService {
             throw new BadRequestException("Not authorized to create exchange with this match");
         }
 
+        if (!initiatingMatch.isActive()) {
+            throw new BadRequestException("Match is no longer active");
+        }
+
         // Find reciprocal match
-        Optional<BookMatch> reciprocalMatch = matchRepository.findReciprocalMatch(
-            initiatingMatch.getInterestedInBook().getOwner(),
-            initiatingMatch.getUser().getBooks()
-        );
+        Long ownerId = initiatingMatch.getInterestedInBook().getOwner().getId();
+        Optional<BookMatch> reciprocalMatch = matchRepository
+            .findFirstByUserIdAndInterestedInBookOwnerIdAndActiveTrueOrderByCreatedAtAsc(ownerId, userId);
 
         if (reciprocalMatch.isEmpty()) {
             throw new BadRequestException("No reciprocal match found. Both users must match each other's books.");
@@ -78,8 +114,12 @@ public class ExchangeService {
         reciprocalMatch.get().setActive(false);
         matchRepository.save(initiatingMatch);
         matchRepository.save(reciprocalMatch.get());
+        reciprocalMatchIndex.matchDeactivated(initiatingMatch.getId(), userId, ownerId);
+        reciprocalMatchIndex.matchDeactivated(reciprocalMatch.get().getId(), ownerId, userId);
 
         exchange = exchangeRepository.save(exchange);
+        // Give both users a chat to arrange the meetup
+        exchange.setChat(chatService.openChat(exchange));
         return mapToExchangeResponse(exchange);
     }
 
@@ -93,22 +133,23 @@ public class ExchangeService {
             throw new BadRequestException("Not authorized to modify this exchange");
         }
 
-        // Verify exchange is in PROPOSED state
-        if (exchange.getStatus() != ExchangeStatus.PROPOSED) {
-            throw new BadRequestException("Exchange must be in PROPOSED state to set meetup details");
-        }
-
         // Validate meetup date is in the future
         if (request.getMeetupDateTime().isBefore(LocalDateTime.now())) {
             throw new BadRequestException("Meetup date must be in the future");
         }
 
-        exchange.setMeetupDateTime(request.getMeetupDateTime());
-        exchange.setMeetupLocation(request.getMeetupLocation());
-        exchange.setStatus(ExchangeStatus.MEETUP_ARRANGED);
+        int updated = exchangeRepository.arrangeMeetup(
+            exchange.getId(),
+            ExchangeStatus.sourcesOf(ExchangeStatus.MEETUP_ARRANGED),
+            ExchangeStatus.MEETUP_ARRANGED,
+            request.getMeetupDateTime(),
+            request.getMeetupLocation()
+        );
+        if (updated == 0) {
+            throw new BadRequestException("Exchange must be in PROPOSED state to set meetup details");
+        }
 
-        exchange = exchangeRepository.save(exchange);
-        return mapToExchangeResponse(exchange);
+        return mapToExchangeResponse(reload(exchange.getId()));
     }
 
     @Transactional
@@ -121,24 +162,23 @@ public class ExchangeService {
             throw new BadRequestException("Not authorized to confirm this exchange");
         }
 
-        // Verify exchange is in MEETUP_ARRANGED state
-        if (exchange.getStatus() != ExchangeStatus.MEETUP_ARRANGED) {
+        // Set confirmation based on which user is confirming; only valid in MEETUP_ARRANGED
+        int updated = exchange.getUser1().getId().equals(userId)
+            ? exchangeRepository.confirmByUser1(exchangeId, ExchangeStatus.MEETUP_ARRANGED)
+            : exchangeRepository.confirmByUser2(exchangeId, ExchangeStatus.MEETUP_ARRANGED);
+        if (updated == 0) {
             throw new BadRequestException("Exchange must be in MEETUP_ARRANGED state to confirm");
         }
 
-        // Set confirmation based on which user is confirming
-        if (exchange.getUser1().getId().equals(userId)) {
-            exchange.setUser1Confirmed(true);
-        } else {
-            exchange.setUser2Confirmed(true);
-        }
+        // If both users confirmed, complete the exchange. Only one caller can win this update,
+        // so the completion side effects run exactly once.
+        int completed = exchangeRepository.completeIfConfirmed(
+            exchangeId, ExchangeStatus.sourcesOf(ExchangeStatus.COMPLETED), ExchangeStatus.COMPLETED);
 
-        // If both users confirmed, complete the exchange
-        if (exchange.isUser1Confirmed() && exchange.isUser2Confirmed()) {
+        exchange = reload(exchangeId);
+        if (completed == 1) {
             completeExchange(exchange);
         }
-
-        exchange = exchangeRepository.save(exchange);
         return mapToExchangeResponse(exchange);
     }
 
@@ -152,17 +192,15 @@ public class ExchangeService {
             throw new BadRequestException("Not authorized to cancel this exchange");
         }
 
-        // Can only cancel if not already completed
-        if (exchange.getStatus() == ExchangeStatus.COMPLETED) {
+        // Cancelling also resets both confirmations
+        int updated = exchangeRepository.cancel(
+            exchangeId, ExchangeStatus.sourcesOf(ExchangeStatus.CANCELLED), ExchangeStatus.CANCELLED);
+
+        exchange = reload(exchangeId);
+        // Can only cancel if not already completed; cancelling twice is a no-op
+        if (updated == 0 && exchange.getStatus() == ExchangeStatus.COMPLETED) {
             throw new BadRequestException("Cannot cancel a completed exchange");
         }
-
-        exchange.setStatus(ExchangeStatus.CANCELLED);
-        // Reset confirmations
-        exchange.setUser1Confirmed(false);
-        exchange.setUser2Confirmed(false);
-
-        exchange = exchangeRepository.save(exchange);
         return mapToExchangeResponse(exchange);
     }
 
@@ -179,18 +217,40 @@ public class ExchangeService {
         return mapToExchangeResponse(exchange);
     }
 
+    // Side effects of the COMPLETED transition; callers guarantee this runs once per exchange
     private void completeExchange(Exchange exchange) {
-        exchange.setStatus(ExchangeStatus.COMPLETED);
-            
         // Update exchange counts and ranks
-        exchange.getUser1().incrementExchangeCount();
-        exchange.getUser2().incrementExchangeCount();
-        
+        userRepository.incrementExchangeCount(exchange.getUser1().getId());
+        userRepository.incrementExchangeCount(exchange.getUser2().getId());
+        userService.profileChanged(exchange.getUser1());
+        userService.profileChanged(exchange.getUser2());
+
         // Update book exchange counts and availability
-        exchange.getBook1().setExchangeCount(exchange.getBook1().getExchangeCount() + 1);
-        exchange.getBook2().setExchangeCount(exchange.getBook2().getExchangeCount() + 1);
+        bookCounterService.increment(BookCounterService.Counter.EXCHANGES, exchange.getBook1().getId());
+        bookCounterService.increment(BookCounterService.Counter.EXCHANGES, exchange.getBook2().getId());
         exchange.getBook1().setAvailable(false);
         exchange.getBook2().setAvailable(false);
+        Long book1Id = exchange.getBook1().getId();
+        Long book2Id = exchange.getBook2().getId();
+        TransactionHooks.afterCommit(() -> {
+            entityTagService.evictBook(book1Id);
+            entityTagService.evictBook(book2Id);
+        });
+        // Recorded first: both run after commit, in order, and the country comes from the locality index
+        trendingBooks.record(TrendingBooks.Event.EXCHANGE, exchange.getBook1().getId());
+        trendingBooks.record(TrendingBooks.Event.EXCHANGE, exchange.getBook2().getId());
+        localityIndex.bookUnavailable(exchange.getBook1().getId());
+        localityIndex.bookUnavailable(exchange.getBook2().getId());
+        // Keeps the leaderboards to books that can still be exchanged, so trending pages fill
+        trendingBooks.bookUnavailable(exchange.getBook1().getId());
+        trendingBooks.bookUnavailable(exchange.getBook2().getId());
+        domainMetrics.exchangeCompleted();
+    }
+
+    // The conditional updates clear the persistence context, so re-read the current row
+    private Exchange reload(Long exchangeId) {
+        return exchangeRepository.findById(exchangeId)
+            .orElseThrow(() -> new ResourceNotFoundException("Exchange not found"));
     }
 
     private boolean isUserPartOfExchange(Long userId, Exchange exchange) {
@@ -198,7 +258,7 @@ public class ExchangeService {
                exchange.getUser2().getId().equals(userId);
     }
 
-    private ExchangeResponse mapToExchangeResponse(Exchange exchange) {
+    ExchangeResponse mapToExchangeResponse(Exchange exchange) {
         ExchangeResponse response = new ExchangeResponse();
         response.setId(exchange.getId());
 
@@ -207,8 +267,8 @@ public class ExchangeService {
         response.setUser2Id(exchange.getUser2().getId());
 
         // Set complete book details (using mapToBookResponse method to convert to BookResponse)
-        response.setBook1(mapToBookResponse(exchange.getBook1()));
-        response.setBook2(mapToBookResponse(exchange.getBook2()));
+        response.setBook1(bookService.mapToBookResponse(exchange.getBook1()));
+        response.setBook2(bookService.mapToBookResponse(exchange.getBook2()));
 
         // Set exchange details
         response.setStatus(exchange.getStatus());
@@ -220,7 +280,39 @@ public class ExchangeService {
         response.setUser1Confirmed(exchange.isUser1Confirmed());
         response.setUser2Confirmed(exchange.isUser2Confirmed());
 
+        if (exchange.getChat() != null) {
+            response.setChatId(exchange.getChat().getId());
+        }
+
         return response;
     }
 
+    // Resolves all books referenced by the views with a single projection query
+    private List<ExchangeResponse> mapToExchangeResponses(List<ExchangeView> exchanges) {
+        List<Long> bookIds = exchanges.stream()
+            .flatMap(exchange -> Stream.of(exchange.getBook1Id(), exchange.getBook2Id()))
+            .distinct()
+            .collect(Collectors.toList());
+        Map<Long, BookResponse> booksById = bookService.getBookResponsesInOrder(bookIds).stream()
+            .collect(Collectors.toMap(BookResponse::getId, Function.identity()));
+
+        return exchanges.stream()
+            .map(exchange -> {
+                ExchangeResponse response = new ExchangeResponse();
+                response.setId(exchange.getId());
+                response.setUser1Id(exchange.getUser1Id());
+                response.setUser2Id(exchange.getUser2Id());
+                response.setBook1(booksById.get(exchange.getBook1Id()));
+                response.setBook2(booksById.get(exchange.getBook2Id()));
+                response.setStatus(exchange.getStatus());
+                response.setProposedAt(exchange.getProposedAt());
+                response.setMeetupDateTime(exchange.getMeetupDateTime());
+                response.setMeetupLocation(exchange.getMeetupLocation());
+                response.setUser1Confirmed(exchange.isUser1Confirmed());
+                response.setUser2Confirmed(exchange.isUser2Confirmed());
+                response.setChatId(exchange.getChatId());
+                return response;
+            })
+            .collect(Collectors.toList());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,231 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.config.ReplicaRoutingDataSource;
+import com.example.bookexchange.repository.BookLikeRepository;
+import com.example.bookexchange.repository.BookUnlikeRepository;
+import com.example.bookexchange.util.TransactionHooks;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Who liked which book, as one compressed bitmap of user ids per book, so heart state for
+ * a page of books is answered from memory. The bitmaps take the full 64-bit id range; ids
+ * that fit in 32 bits, as identity columns hand out for years, share a single bucket.
+ *
+ * <p>The book_likes table is the source of truth and settles duplicates. This index is
+ * updated after commit, and picks up likes and unlikes made on other nodes by creation time
+ * every bookexchange.likes.catch-up-interval-ms: new book_likes rows, and the book_unlikes
+ * rows that removals leave behind. Each scan reaches back bookexchange.likes.catch-up-overlap-ms
+ * for late commits, and takes every pair it finds to its state in book_likes at the time of
+ * the scan. A full rebuild, less often, repairs anything older than the overlap.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LikeIndex {
+    private final BookLikeRepository likeRepository;
+    private final BookUnlikeRepository unlikeRepository;
+
+    // bookId -> user ids; each bitmap is guarded by its own monitor
+    private volatile Map<Long, Roaring64NavigableMap> likers = new ConcurrentHashMap<>();
+    // Mutations seen while a rebuild runs, replayed onto the rebuilt index; all are idempotent
+    private List<Consumer<Map<Long, Roaring64NavigableMap>>> replay;
+    // Keeps rebuilds and catch-ups apart, so the watermark only moves forward
+    private final Object refreshLock = new Object();
+    // Creation time (UTC millis) of the newest like or unlike seen; catch-ups start here less the overlap
+    private long caughtUpTo;
+    private volatile boolean ready;
+
+    @Value("${bookexchange.likes.catch-up-overlap-ms:300000}")
+    private long overlapMs;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${bookexchange.likes.rebuild-interval-ms:3600000}",
+            fixedDelayString = "${bookexchange.likes.rebuild-interval-ms:3600000}")
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        // Likes committed just before the replay list opened may not have reached a replica yet
+        try (ReplicaRoutingDataSource.PrimaryPin ignored = ReplicaRoutingDataSource.pinToPrimary()) {
+            synchronized (refreshLock) {
+                loadAll();
+            }
+        }
+        ready = true;
+    }
+
+    @Scheduled(initialDelayString = "${bookexchange.likes.catch-up-interval-ms:30000}",
+            fixedDelayString = "${bookexchange.likes.catch-up-interval-ms:30000}")
+    @Transactional(readOnly = true)
+    public void catchUp() {
+        if (!ready) {
+            return;
+        }
+        // A change from another node may not have reached a replica yet, and would then wait for the rebuild
+        try (ReplicaRoutingDataSource.PrimaryPin ignored = ReplicaRoutingDataSource.pinToPrimary()) {
+            synchronized (refreshLock) {
+                int changes = applyChangesSince(toDateTime(caughtUpTo - overlapMs));
+                if (changes > 0) {
+                    log.debug("Like index caught up with {} likes and unlikes", changes);
+                }
+            }
+        }
+    }
+
+    // Likes are read first and unlikes second, so a pair unliked in between ends up unliked
+    private int applyChangesSince(LocalDateTime since) {
+        int[] changes = new int[1];
+        try (Stream<Object[]> likes = likeRepository.streamPairsSince(since)) {
+            likes.forEach(like -> {
+                Long bookId = (Long) like[0];
+                Long userId = (Long) like[1];
+                apply(index -> add(index, bookId, userId));
+                advance((LocalDateTime) like[2]);
+                changes[0]++;
+            });
+        }
+        try (Stream<Object[]> unlikes = unlikeRepository.streamUnlikesSince(since)) {
+            unlikes.forEach(unlike -> {
+                Long bookId = (Long) unlike[0];
+                Long userId = (Long) unlike[1];
+                // Liked again since, as of this read
+                boolean liked = ((Number) unlike[3]).longValue() > 0;
+                apply(index -> {
+                    if (liked) {
+                        add(index, bookId, userId);
+                    } else {
+                        remove(index, bookId, userId);
+                    }
+                });
+                advance((LocalDateTime) unlike[2]);
+                changes[0]++;
+            });
+        }
+        return changes[0];
+    }
+
+    private void advance(LocalDateTime createdAt) {
+        caughtUpTo = Math.max(caughtUpTo, toMillis(createdAt));
+    }
+
+    private void loadAll() {
+        synchronized (this) {
+            replay = new ArrayList<>();
+        }
+        // Read before the likes, so whatever commits during the load is within the next catch-up
+        LocalDateTime latestLike = likeRepository.findLatestCreatedAt();
+        LocalDateTime latestUnlike = unlikeRepository.findLatestCreatedAt();
+        Map<Long, Roaring64NavigableMap> rebuilt = new ConcurrentHashMap<>();
+        long[] likes = new long[1];
+        try (Stream<Object[]> pairs = likeRepository.streamAllPairs()) {
+            pairs.forEach(pair -> {
+                add(rebuilt, (Long) pair[0], (Long) pair[1]);
+                likes[0]++;
+            });
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                replay = null;
+            }
+            throw e;
+        }
+        rebuilt.values().forEach(Roaring64NavigableMap::runOptimize);
+        // Swapped under the lock so no mutation lands on the old index after its replay
+        synchronized (this) {
+            replay.forEach(mutation -> mutation.accept(rebuilt));
+            replay = null;
+            likers = rebuilt;
+        }
+        if (latestLike != null) {
+            advance(latestLike);
+        }
+        if (latestUnlike != null) {
+            advance(latestUnlike);
+        }
+        log.info("Like index rebuilt from {} likes on {} books", likes[0], rebuilt.size());
+    }
+
+    public boolean hasLiked(Long bookId, Long userId) {
+        Roaring64NavigableMap users = likers.get(bookId);
+        if (users == null) {
+            return false;
+        }
+        synchronized (users) {
+            return users.contains(userId);
+        }
+    }
+
+    // The subset of bookIds the user has liked, in the order given
+    public List<Long> likedAmong(Long userId, Collection<Long> bookIds) {
+        long user = userId;
+        Map<Long, Roaring64NavigableMap> current = likers;
+        List<Long> liked = new ArrayList<>();
+        for (Long bookId : bookIds) {
+            Roaring64NavigableMap users = current.get(bookId);
+            if (users != null) {
+                synchronized (users) {
+                    if (users.contains(user)) {
+                        liked.add(bookId);
+                    }
+                }
+            }
+        }
+        return liked;
+    }
+
+    public void liked(Long bookId, Long userId) {
+        TransactionHooks.afterCommit(() -> apply(index -> add(index, bookId, userId)));
+    }
+
+    public void unliked(Long bookId, Long userId) {
+        TransactionHooks.afterCommit(() -> apply(index -> remove(index, bookId, userId)));
+    }
+
+    private synchronized void apply(Consumer<Map<Long, Roaring64NavigableMap>> mutation) {
+        mutation.accept(likers);
+        if (replay != null) {
+            replay.add(mutation);
+        }
+    }
+
+    private static void add(Map<Long, Roaring64NavigableMap> index, Long bookId, Long userId) {
+        Roaring64NavigableMap users = index.computeIfAbsent(bookId, id -> new Roaring64NavigableMap());
+        synchronized (users) {
+            users.addLong(userId);
+        }
+    }
+
+    private static void remove(Map<Long, Roaring64NavigableMap> index, Long bookId, Long userId) {
+        Roaring64NavigableMap users = index.get(bookId);
+        if (users != null) {
+            synchronized (users) {
+                users.removeLong(userId);
+            }
+        }
+    }
+
+    // Creation times are local date-times; read as UTC they order the same
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime toDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+}
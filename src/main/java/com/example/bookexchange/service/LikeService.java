@@ -0,0 +1,74 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.exception.BadRequestException;
+import com.example.bookexchange.exception.ResourceNotFoundException;
+import com.example.bookexchange.repository.BookLikeRepository;
+import com.example.bookexchange.repository.BookRepository;
+import com.example.bookexchange.repository.BookUnlikeRepository;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Likes are written once to book_likes; like_count follows asynchronously through BookCounterService
+@Service
+@RequiredArgsConstructor
+@Timed(value = "bookexchange.service", histogram = true)
+public class LikeService {
+    private final BookLikeRepository likeRepository;
+    private final BookUnlikeRepository unlikeRepository;
+    private final BookRepository bookRepository;
+    private final LikeIndex likeIndex;
+    private final BookCounterService bookCounterService;
+    private final TrendingBooks trendingBooks;
+
+    @Value("${bookexchange.likes.unlike-retention-ms:86400000}")
+    private long unlikeRetentionMs;
+
+    // Idempotent: liking a book twice counts once
+    @Transactional
+    public void likeBook(Long userId, Long bookId) {
+        if (!bookRepository.existsById(bookId)) {
+            throw new ResourceNotFoundException("Book not found with id: " + bookId);
+        }
+        // Always goes to the database: the index may still hold a like another node has since removed
+        if (likeRepository.insertIfAbsent(bookId, userId) == 1) {
+            bookCounterService.increment(BookCounterService.Counter.LIKES, bookId);
+            trendingBooks.record(TrendingBooks.Event.LIKE, bookId);
+        }
+        // Either way the row is there now, so the index learns of likes it had missed too
+        likeIndex.liked(bookId, userId);
+    }
+
+    // Idempotent: unliking a book that is not liked changes nothing
+    @Transactional
+    public void unlikeBook(Long userId, Long bookId) {
+        // Always goes to the database, which also sees likes this node's index has not caught up with
+        if (likeRepository.deleteByBookIdAndUserId(bookId, userId) == 1) {
+            bookCounterService.add(BookCounterService.Counter.LIKES, bookId, -1);
+            // Lets the other nodes' like indexes see the removal before their next rebuild
+            unlikeRepository.recordUnlike(bookId, userId);
+        }
+        likeIndex.unliked(bookId, userId);
+    }
+
+    // Which of the given books the user has liked, answered from memory
+    public List<Long> getLikedBookIds(Long userId, List<Long> bookIds) {
+        if (bookIds.size() > BookService.MAX_PAGE_SIZE) {
+            throw new BadRequestException("At most " + BookService.MAX_PAGE_SIZE + " book ids per request");
+        }
+        return likeIndex.likedAmong(userId, bookIds);
+    }
+
+    // Unlikes only need to outlive every node's catch-up overlap; the rebuilds cover the rest
+    @Scheduled(fixedDelayString = "${bookexchange.likes.unlike-retention-ms:86400000}")
+    @Transactional
+    public void purgeUnlikes() {
+        unlikeRepository.deleteCreatedBefore(LocalDateTime.now().minus(Duration.ofMillis(unlikeRetentionMs)));
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.config.ReplicaRoutingDataSource;
+import com.example.bookexchange.repository.BookRepository;
+import com.example.bookexchange.util.TransactionHooks;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * In-memory partition of the available books by their owner's region, so "near me"
+ * discovery reads the caller's city bucket and then the rest of their country instead
+ * of scanning the catalog. Books whose owner has no usable country/city are kept out
+ * of the buckets. Mutations are applied after the surrounding transaction commits;
+ * changes made on other nodes arrive with the periodic rebuild.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LocalityIndex {
+    public static final int SAME_CITY = 0;
+    public static final int SAME_COUNTRY = 1;
+    public static final int ELSEWHERE = 2;
+
+    private static final String NOT_SPECIFIED = "not specified";
+
+    private final BookRepository bookRepository;
+
+    private volatile State state = new State();
+    // Mutations seen while a rebuild runs, replayed onto the rebuilt state; all are idempotent
+    private List<Consumer<State>> replay;
+
+    /**
+     * Bucket key: normalized country and city. Should users get coordinates, a geohash
+     * cell would be added here and neighbouring cells searched before the country.
+     */
+    public record Region(String country, String city) {
+
+        // Null when either part is missing or still the provisioning placeholder
+        public static Region of(String country, String city) {
+            String normalizedCountry = normalize(country);
+            String normalizedCity = normalize(city);
+            if (normalizedCountry == null || normalizedCity == null) {
+                return null;
+            }
+            return new Region(normalizedCountry, normalizedCity);
+        }
+
+        static String normalize(String value) {
+            if (value == null) {
+                return null;
+            }
+            String normalized = value.trim().toLowerCase(Locale.ROOT);
+            return normalized.isEmpty() || normalized.equals(NOT_SPECIFIED) ? null : normalized;
+        }
+    }
+
+    private record Placement(Long ownerId, Region region) {
+    }
+
+    private static final class State {
+        // bookId -> owner and region of every available book
+        final Map<Long, Placement> books = new ConcurrentHashMap<>();
+        // ownerId -> their available books, so a move relocates all of them
+        final Map<Long, Set<Long>> byOwner = new ConcurrentHashMap<>();
+        // country -> city -> books, so the rest of a country is read without the home city
+        final Map<String, Map<String, NavigableSet<Long>>> byCountry = new ConcurrentHashMap<>();
+
+        void place(Long bookId, Long ownerId, Region region) {
+            remove(bookId);
+            books.put(bookId, new Placement(ownerId, region));
+            byOwner.computeIfAbsent(ownerId, id -> ConcurrentHashMap.newKeySet()).add(bookId);
+            if (region != null) {
+                byCountry.computeIfAbsent(region.country(), c -> new ConcurrentHashMap<>())
+                        .computeIfAbsent(region.city(), c -> new ConcurrentSkipListSet<>())
+                        .add(bookId);
+            }
+        }
+
+        void remove(Long bookId) {
+            Placement placement = books.remove(bookId);
+            if (placement == null) {
+                return;
+            }
+            byOwner.computeIfPresent(placement.ownerId(), (id, ids) -> ids.remove(bookId) && ids.isEmpty() ? null : ids);
+            if (placement.region() != null) {
+                byCountry.computeIfPresent(placement.region().country(), (c, cities) -> {
+                    cities.computeIfPresent(placement.region().city(),
+                            (city, ids) -> ids.remove(bookId) && ids.isEmpty() ? null : ids);
+                    return cities.isEmpty() ? null : cities;
+                });
+            }
+        }
+
+        NavigableSet<Long> city(Region region) {
+            Map<String, NavigableSet<Long>> cities = byCountry.get(region.country());
+            return cities == null ? null : cities.get(region.city());
+        }
+
+        int cityCount() {
+            return byCountry.values().stream().mapToInt(Map::size).sum();
+        }
+
+        void move(Long ownerId, Region region) {
+            Set<Long> owned = byOwner.get(ownerId);
+            if (owned != null) {
+                for (Long bookId : List.copyOf(owned)) {
+                    place(bookId, ownerId, region);
+                }
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${bookexchange.locality.rebuild-interval-ms:600000}",
+            fixedDelayString = "${bookexchange.locality.rebuild-interval-ms:600000}")
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        // From the primary, so availability and moves not yet replayed on a replica are not lost
+        try (ReplicaRoutingDataSource.PrimaryPin ignored = ReplicaRoutingDataSource.pinToPrimary()) {
+            loadAll();
+        }
+    }
+
+    private void loadAll() {
+        synchronized (this) {
+            replay = new ArrayList<>();
+        }
+        State rebuilt = new State();
+        try (Stream<Object[]> placements = bookRepository.streamAvailableBookPlacements()) {
+            placements.forEach(row -> rebuilt.place((Long) row[0], (Long) row[1],
+                    Region.of((String) row[2], (String) row[3])));
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                replay = null;
+            }
+            throw e;
+        }
+        // Swapped under the lock so no mutation lands on the old state after its replay
+        synchronized (this) {
+            replay.forEach(mutation -> mutation.accept(rebuilt));
+            replay = null;
+            state = rebuilt;
+        }
+        log.info("Locality index rebuilt from {} available books in {} cities",
+                rebuilt.books.size(), rebuilt.cityCount());
+    }
+
+    public void bookAvailable(Long bookId, Long ownerId, String country, String city) {
+        Region region = Region.of(country, city);
+        TransactionHooks.afterCommit(() -> apply(s -> s.place(bookId, ownerId, region)));
+    }
+
+    public void bookUnavailable(Long bookId) {
+        TransactionHooks.afterCommit(() -> apply(s -> s.remove(bookId)));
+    }
+
+    public void ownerMoved(Long ownerId, String country, String city) {
+        Region region = Region.of(country, city);
+        TransactionHooks.afterCommit(() -> apply(s -> s.move(ownerId, region)));
+    }
+
+    // Re-reads an owner's available books, e.g. after a bulk import wrote them with JDBC
+    public void reloadOwner(Long ownerId) {
+        List<Object[]> placements = bookRepository.findAvailableBookPlacementsByOwnerId(ownerId);
+        apply(s -> placements.forEach(row -> s.place((Long) row[0], (Long) row[1],
+                Region.of((String) row[2], (String) row[3]))));
+    }
+
+    /**
+     * Up to limit available books in the given tier around home, not owned by userId,
+     * in ascending id order after afterId. SAME_COUNTRY merges the country's other
+     * cities, so the home city, which SAME_CITY already covered, is never walked.
+     */
+    public List<Long> nearby(Region home, int tier, Long userId, long afterId, int limit) {
+        State current = state;
+        return switch (tier) {
+            case SAME_CITY -> {
+                NavigableSet<Long> city = current.city(home);
+                yield city == null ? Collections.emptyList()
+                        : collect(current, city.tailSet(afterId, false).iterator(), userId, limit);
+            }
+            case SAME_COUNTRY -> {
+                Map<String, NavigableSet<Long>> cities = current.byCountry.get(home.country());
+                yield cities == null ? Collections.emptyList()
+                        : collect(current, otherCities(cities, home.city(), afterId), userId, limit);
+            }
+            default -> Collections.emptyList();
+        };
+    }
+
+    private static List<Long> collect(State current, Iterator<Long> bookIds, Long userId, int limit) {
+        List<Long> ids = new ArrayList<>(limit);
+        while (ids.size() < limit && bookIds.hasNext()) {
+            Long bookId = bookIds.next();
+            Placement placement = current.books.get(bookId);
+            if (placement != null && !placement.ownerId().equals(userId)) {
+                ids.add(bookId);
+            }
+        }
+        return ids;
+    }
+
+    // Ids after afterId across every city but homeCity, in ascending order: a merge of the city sets
+    private static Iterator<Long> otherCities(Map<String, NavigableSet<Long>> cities, String homeCity, long afterId) {
+        PriorityQueue<PeekingCursor> heads = new PriorityQueue<>(Comparator.comparingLong((PeekingCursor cursor) -> cursor.head));
+        cities.forEach((city, ids) -> {
+            if (!city.equals(homeCity)) {
+                Iterator<Long> it = ids.tailSet(afterId, false).iterator();
+                if (it.hasNext()) {
+                    heads.add(new PeekingCursor(it));
+                }
+            }
+        });
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public Long next() {
+                PeekingCursor cursor = heads.poll();
+                long bookId = cursor.head;
+                if (cursor.advance()) {
+                    heads.add(cursor);
+                }
+                return bookId;
+            }
+        };
+    }
+
+    private static final class PeekingCursor {
+        private final Iterator<Long> ids;
+        private long head;
+
+        PeekingCursor(Iterator<Long> ids) {
+            this.ids = ids;
+            this.head = ids.next();
+        }
+
+        boolean advance() {
+            if (!ids.hasNext()) {
+                return false;
+            }
+            head = ids.next();
+            return true;
+        }
+    }
+
+    public boolean isAvailable(Long bookId) {
+        return state.books.containsKey(bookId);
+    }
+
+    // Normalized owner country of an available book, or null when unknown or not indexed
+    public String countryOf(Long bookId) {
+        Placement placement = state.books.get(bookId);
+        return placement == null || placement.region() == null ? null : placement.region().country();
+    }
+
+    // SAME_CITY, SAME_COUNTRY or ELSEWHERE relative to home; unindexed books count as elsewhere
+    public int tierOf(Long bookId, Region home) {
+        Placement placement = state.books.get(bookId);
+        if (placement == null || placement.region() == null) {
+            return ELSEWHERE;
+        }
+        if (placement.region().equals(home)) {
+            return SAME_CITY;
+        }
+        return placement.region().country().equals(home.country()) ? SAME_COUNTRY : ELSEWHERE;
+    }
+
+    private synchronized void apply(Consumer<State> mutation) {
+        mutation.accept(state);
+        if (replay != null) {
+            replay.add(mutation);
+        }
+    }
+}
@@ -1,26 +1,49 @@
 package com.example.bookexchange.service;
 
+import com.example.bookexchange.model.dto.response.BookResponse;
 import com.example.bookexchange.model.dto.response.MatchResponse;
+import com.example.bookexchange.model.dto.response.TradeCycleResponse;
 import com.example.bookexchange.model.entity.Book;
 import com.example.bookexchange.model.entity.BookMatch;
 import com.example.bookexchange.model.entity.User;
 import com.example.bookexchange.repository.BookMatchRepository;
 import com.example.bookexchange.repository.BookRepository;
 import com.example.bookexchange.repository.UserRepository;
+import com.example.bookexchange.repository.projection.MatchView;
 import com.example.bookexchange.exception.ResourceNotFoundException;
+import com.example.bookexchange.util.StreamChunks;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
+@Timed(value = "bookexchange.service", histogram = true)
 public class MatchService {
+    private static final int MAX_TRADE_CYCLES = 20;
+    private static final int STREAM_CHUNK_SIZE = 500;
+
     private final BookMatchRepository matchRepository;
     private final BookRepository bookRepository;
     private final UserRepository userRepository;
+    private final ReciprocalMatchIndex reciprocalMatchIndex;
+    private final TradeCycleFinder tradeCycleFinder;
+    private final BookService bookService;
+    private final BookCounterService bookCounterService;
+    private final DomainMetrics domainMetrics;
+    private final CoOccurrenceIndex coOccurrenceIndex;
+    private final TrendingBooks trendingBooks;
 
     @Transactional
     public MatchResponse createMatch(Long userId, Long bookId) {
@@ -50,22 +73,119 @@ public class MatchService {
         match.setUser(user);
         match.setInterestedInBook(book);
 
-        book.setMatchCount(book.getMatchCount() + 1);
         match = matchRepository.save(match);
-
-        return mapToMatchResponse(match);
+        bookCounterService.increment(BookCounterService.Counter.MATCHES, book.getId());
+        reciprocalMatchIndex.matchActivated(match.getId(), user.getId(), book.getOwner().getId());
+        coOccurrenceIndex.matchCreated(match.getId(), user.getId(), book.getId());
+        trendingBooks.record(TrendingBooks.Event.MATCH, book.getId());
+
+        MatchResponse response = mapToMatchResponse(match);
+        // Only the neighbourhood of the new edge needs checking for freshly closed cycles
+        response.setHasTradeCycle(!tradeCycleFinder
+                .findCyclesThrough(user.getId(), book.getOwner().getId(), 1).isEmpty());
+        domainMetrics.matchCreated(response.isHasReciprocal());
+        return response;
     }
 
     @Transactional(readOnly = true)
     public List<MatchResponse> getUserMatches(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        if (!userRepository.existsById(userId)) {
+            throw new ResourceNotFoundException("User not found");
+        }
+
+        return mapToMatchResponses(matchRepository.findActiveMatchViewsByUserId(userId));
+    }
 
-        return matchRepository.findByUserAndActiveTrue(user).stream()
-                .map(this::mapToMatchResponse)
+    // Streaming variant of getUserMatches: books are resolved one chunk of matches at a time
+    @Transactional(readOnly = true)
+    public void streamUserMatches(Long userId, Consumer<MatchResponse> sink) {
+        if (!userRepository.existsById(userId)) {
+            throw new ResourceNotFoundException("User not found");
+        }
+
+        try (Stream<MatchView> matches = matchRepository.streamActiveMatchViewsByUserId(userId)) {
+            StreamChunks.forEachChunk(matches, STREAM_CHUNK_SIZE, chunk -> mapToMatchResponses(chunk).forEach(sink));
+        }
+    }
+
+    private List<MatchResponse> mapToMatchResponses(List<MatchView> matches) {
+        List<Long> bookIds = matches.stream()
+                .map(MatchView::getBookId)
+                .distinct()
+                .collect(Collectors.toList());
+        Map<Long, BookResponse> booksById = bookService.getBookResponsesInOrder(bookIds).stream()
+                .collect(Collectors.toMap(BookResponse::getId, Function.identity()));
+
+        return matches.stream()
+                .map(match -> {
+                    MatchResponse response = new MatchResponse();
+                    response.setId(match.getId());
+                    response.setUserId(match.getUserId());
+                    response.setUsername(match.getUsername());
+                    response.setInterestedInBook(booksById.get(match.getBookId()));
+                    response.setCreatedAt(match.getCreatedAt());
+                    response.setActive(match.isActive());
+                    response.setHasReciprocal(
+                            reciprocalMatchIndex.hasReciprocal(match.getUserId(), match.getBookOwnerId()));
+                    return response;
+                })
                 .collect(Collectors.toList());
     }
 
+    // Two queries however many cycles are found: one for every leg, one for their books
+    @Transactional(readOnly = true)
+    public List<TradeCycleResponse> getTradeCycles(Long userId) {
+        List<List<Long>> cycles = tradeCycleFinder.findCyclesFor(userId, MAX_TRADE_CYCLES);
+        if (cycles.isEmpty()) {
+            return List.of();
+        }
+        Set<Long> participants = cycles.stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toSet());
+
+        // Oldest active match per (receiver, giver), as the single-leg lookup used to pick
+        Map<List<Long>, MatchView> legsByHop = new HashMap<>();
+        for (MatchView leg : matchRepository.findActiveMatchViewsAmong(participants)) {
+            legsByHop.putIfAbsent(List.of(leg.getUserId(), leg.getBookOwnerId()), leg);
+        }
+
+        List<List<MatchView>> cycleLegs = new ArrayList<>(cycles.size());
+        List<MatchView> allLegs = new ArrayList<>();
+        for (List<Long> cycle : cycles) {
+            List<MatchView> legs = legsFor(cycle, legsByHop);
+            if (legs != null) {
+                cycleLegs.add(legs);
+                allLegs.addAll(legs);
+            }
+        }
+
+        Map<Long, MatchResponse> responsesById = mapToMatchResponses(allLegs).stream()
+                .collect(Collectors.toMap(MatchResponse::getId, Function.identity(), (a, b) -> a));
+        List<TradeCycleResponse> responses = new ArrayList<>(cycleLegs.size());
+        for (List<MatchView> legs : cycleLegs) {
+            TradeCycleResponse response = new TradeCycleResponse();
+            response.setParticipantIds(legs.stream().map(MatchView::getUserId).collect(Collectors.toList()));
+            response.setLegs(legs.stream().map(leg -> responsesById.get(leg.getId())).collect(Collectors.toList()));
+            responses.add(response);
+        }
+        return responses;
+    }
+
+    // The match behind each hop of the cycle, or null when one was deactivated after the cycle was found
+    private static List<MatchView> legsFor(List<Long> participantIds, Map<List<Long>, MatchView> legsByHop) {
+        List<MatchView> legs = new ArrayList<>(participantIds.size());
+        for (int i = 0; i < participantIds.size(); i++) {
+            Long receiverId = participantIds.get(i);
+            Long giverId = participantIds.get((i + 1) % participantIds.size());
+            MatchView leg = legsByHop.get(List.of(receiverId, giverId));
+            if (leg == null) {
+                return null;
+            }
+            legs.add(leg);
+        }
+        return legs;
+    }
+
     @Transactional
     public void cancelMatch(Long userId, Long matchId) {
         BookMatch match = matchRepository.findById(matchId)
@@ -75,25 +195,30 @@ public class MatchService {
             throw new IllegalStateException("Not authorized to cancel this match");
         }
 
+        if (!match.isActive()) {
+            return;
+        }
+
         match.setActive(false);
         matchRepository.save(match);
+        reciprocalMatchIndex.matchDeactivated(match.getId(), userId, match.getInterestedInBook().getOwner().getId());
     }
 
-    private MatchResponse mapToMatchResponse(BookMatch match) {
+    MatchResponse mapToMatchResponse(BookMatch match) {
         MatchResponse response = new MatchResponse();
         response.setId(match.getId());
         response.setUserId(match.getUser().getId());
         response.setUsername(match.getUser().getUsername());
-        // Use the BookService's mapToBookResponse method in a real application
+        response.setInterestedInBook(bookService.mapToBookResponse(match.getInterestedInBook()));
+        response.setCreatedAt(match.getCreatedAt());
         response.setActive(match.isActive());
 
         // Check for reciprocal match
-        Optional<BookMatch> reciprocalMatch = matchRepository.findReciprocalMatch(
-                match.getInterestedInBook().getOwner(),
-                match.getUser().getBooks()
-        );
-        response.setHasReciprocal(reciprocalMatch.isPresent());
+        response.setHasReciprocal(reciprocalMatchIndex.hasReciprocal(
+                match.getUser().getId(),
+                match.getInterestedInBook().getOwner().getId()
+        ));
 
         return response;
     }
-}
\ No newline at end of file
+}
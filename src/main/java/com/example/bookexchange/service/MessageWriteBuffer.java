@@ -0,0 +1,298 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.exception.ServiceUnavailableException;
+import com.example.bookexchange.model.dto.response.MessageResponse;
+import com.example.bookexchange.model.entity.ChatInboxEntry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Batches chat message inserts. Sent messages are queued in memory and written on a
+ * short interval as one JDBC batch per flush, together with the matching
+ * {@code chats.last_message_at} and {@code chat_inbox} updates, instead of one
+ * transaction per message.
+ *
+ * <p>Messages leave the queue only once the batch that carried them has committed, so
+ * {@link #pending} keeps showing them while they are in flight and a failed flush retries
+ * them in their original order. A batch rejected by the database for its content is split
+ * in halves until the offending messages are isolated; those are logged, counted, reported
+ * to the chat's event streams and moved to the dead letters, and the rest are written. Transient failures stop the flush until the next run.
+ *
+ * <p>The buffer holds at most bookexchange.chat.buffer-capacity messages; past that, sends
+ * are refused with a 503 until flushes catch up, rather than growing the heap without bound.
+ * Buffered messages are also indexed by chat, so {@link #pending} never scans other chats.
+ *
+ * <p>Marking a chat read never waits for a flush: the mark is recorded here, and buffered
+ * messages it covers are stored as read without counting towards the inbox unread count.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MessageWriteBuffer {
+    private static final int MAX_DEAD_LETTERS = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ChatBroker chatBroker;
+
+    // Only the flushing thread removes from the head, and only after a commit
+    private final Queue<MessageResponse> queue = new ConcurrentLinkedQueue<>();
+    // The same messages by chat id, each chat's oldest first; a chat is dropped once it has none
+    private final Map<Long, Queue<MessageResponse>> queuedByChat = new ConcurrentHashMap<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    // Most recent messages the database refused on their own, newest last
+    private final Deque<MessageResponse> deadLetters = new ConcurrentLinkedDeque<>();
+    private final LongAdder deadLettered = new LongAdder();
+    // chat id -> reader id -> read up to; immutable values, replaced on every mark
+    private final Map<Long, Map<Long, LocalDateTime>> readUpTo = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    @Value("${bookexchange.chat.flush-batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${bookexchange.chat.buffer-capacity:100000}")
+    private int capacity = 100_000;
+
+    public void enqueue(MessageResponse message) {
+        if (depth.incrementAndGet() > capacity) {
+            depth.decrementAndGet();
+            throw new ServiceUnavailableException("Too many messages are waiting to be stored, please retry shortly");
+        }
+        // Both queues are appended under the chat's lock, so a chat's messages keep one order in each
+        queuedByChat.compute(message.getChatId(), (id, messages) -> {
+            Queue<MessageResponse> updated = messages != null ? messages : new ConcurrentLinkedQueue<>();
+            updated.add(message);
+            queue.add(message);
+            return updated;
+        });
+    }
+
+    // Messages waiting to be written, across all chats
+    public int depth() {
+        return depth.get();
+    }
+
+    // Messages accepted for the chat that are not known to be in the database yet, oldest
+    // first, with their read flag as it will be stored. A batch that has just committed can
+    // show up here and in the messages table.
+    public List<MessageResponse> pending(Long chatId) {
+        Queue<MessageResponse> messages = queuedByChat.get(chatId);
+        if (messages == null) {
+            return List.of();
+        }
+        return messages.stream()
+                .map(message -> new MessageResponse(null, message.getChatId(), message.getSenderId(),
+                        message.getContent(), isRead(message), message.getSentAt()))
+                .collect(Collectors.toList());
+    }
+
+    // Buffered messages of the chat sent to readerId up to the given time are stored as read
+    public void markRead(Long chatId, Long readerId, LocalDateTime upTo) {
+        readUpTo.compute(chatId, (id, readers) -> {
+            Map<Long, LocalDateTime> updated = readers == null ? new HashMap<>() : new HashMap<>(readers);
+            updated.merge(readerId, upTo, (a, b) -> a.isAfter(b) ? a : b);
+            return Map.copyOf(updated);
+        });
+    }
+
+    // Messages the database rejected, kept for inspection; they were delivered live but not stored
+    public List<MessageResponse> deadLetters() {
+        return new ArrayList<>(deadLetters);
+    }
+
+    // Messages dead-lettered since startup, including those no longer kept in deadLetters()
+    public long deadLetterCount() {
+        return deadLettered.sum();
+    }
+
+    @Scheduled(fixedDelayString = "${bookexchange.chat.flush-interval-ms:200}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<MessageResponse> batch;
+            while (!(batch = peekBatch()).isEmpty()) {
+                int handled = writeInOrder(batch);
+                for (int i = 0; i < handled; i++) {
+                    dequeue();
+                }
+                if (handled < batch.size()) {
+                    break;
+                }
+            }
+            forgetAppliedReadMarks();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    // Drops the head of the queue once it is written or dead-lettered
+    private void dequeue() {
+        MessageResponse message = queue.poll();
+        queuedByChat.computeIfPresent(message.getChatId(), (id, messages) -> {
+            // The chat's oldest, so found at the head; matched by identity as two messages may be equal
+            Iterator<MessageResponse> queued = messages.iterator();
+            while (queued.hasNext()) {
+                if (queued.next() == message) {
+                    queued.remove();
+                    break;
+                }
+            }
+            return messages.isEmpty() ? null : messages;
+        });
+        depth.decrementAndGet();
+    }
+
+    // The oldest messages, left in the queue until they are written
+    private List<MessageResponse> peekBatch() {
+        List<MessageResponse> batch = new ArrayList<>(batchSize);
+        Iterator<MessageResponse> messages = queue.iterator();
+        while (batch.size() < batchSize && messages.hasNext()) {
+            batch.add(messages.next());
+        }
+        return batch;
+    }
+
+    // Writes the batch, or as much of its head as possible, and returns how many leading
+    // messages are done with: written, or dead-lettered after failing on their own
+    private int writeInOrder(List<MessageResponse> batch) {
+        try {
+            write(batch);
+            return batch.size();
+        } catch (NonTransientDataAccessException e) {
+            if (batch.size() == 1) {
+                deadLetter(batch.get(0), e);
+                return 1;
+            }
+            int mid = batch.size() / 2;
+            int head = writeInOrder(batch.subList(0, mid));
+            return head < mid ? head : mid + writeInOrder(batch.subList(mid, batch.size()));
+        } catch (RuntimeException e) {
+            // Keep the messages at the head of the queue for the next flush; they have already been delivered live
+            log.warn("Writing {} chat messages failed, will retry", batch.size(), e);
+            return 0;
+        }
+    }
+
+    private void deadLetter(MessageResponse message, RuntimeException e) {
+        log.error("Dropping chat message from user {} in chat {} sent at {}: the database rejected it",
+                message.getSenderId(), message.getChatId(), message.getSentAt(), e);
+        deadLettered.increment();
+        deadLetters.addLast(message);
+        while (deadLetters.size() > MAX_DEAD_LETTERS) {
+            deadLetters.pollFirst();
+        }
+        chatBroker.publishFailure(message);
+    }
+
+    private void write(List<MessageResponse> batch) {
+        List<Long> chatIds = batch.stream()
+                .map(MessageResponse::getChatId)
+                .distinct()
+                .sorted()
+                .collect(Collectors.toList());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // Lock the chats' inbox rows before deciding what is read: a concurrent markRead
+            // either committed first and its mark is seen below, or waits for this batch and
+            // then marks the new rows read itself
+            jdbcTemplate.queryForList("SELECT id FROM chat_inbox WHERE chat_id IN (" +
+                    String.join(", ", Collections.nCopies(chatIds.size(), "?")) + ") ORDER BY id FOR UPDATE",
+                    Long.class, chatIds.toArray());
+
+            List<Object[]> rows = new ArrayList<>(batch.size());
+            Map<Long, LocalDateTime> lastMessageAt = new HashMap<>();
+            // Inbox read model: unread counts for the recipients, then the newest message preview per chat
+            Map<List<Long>, Integer> unreadByChatAndSender = new HashMap<>();
+            Map<Long, MessageResponse> latestByChat = new HashMap<>();
+            for (MessageResponse message : batch) {
+                boolean read = isRead(message);
+                rows.add(new Object[]{message.getChatId(), message.getSenderId(), message.getContent(), read,
+                        Timestamp.valueOf(message.getSentAt())});
+                lastMessageAt.merge(message.getChatId(), message.getSentAt(),
+                        (a, b) -> a.isAfter(b) ? a : b);
+                if (!read) {
+                    unreadByChatAndSender.merge(List.of(message.getChatId(), message.getSenderId()), 1, Integer::sum);
+                }
+                latestByChat.merge(message.getChatId(), message,
+                        (a, b) -> a.getSentAt().isAfter(b.getSentAt()) ? a : b);
+            }
+            List<Object[]> chatUpdates = lastMessageAt.entrySet().stream()
+                    .map(entry -> new Object[]{Timestamp.valueOf(entry.getValue()), entry.getKey(),
+                            Timestamp.valueOf(entry.getValue())})
+                    .collect(Collectors.toList());
+            List<Object[]> unreadUpdates = unreadByChatAndSender.entrySet().stream()
+                    .map(entry -> new Object[]{entry.getValue(), entry.getKey().get(0), entry.getKey().get(1)})
+                    .collect(Collectors.toList());
+            List<Object[]> previewUpdates = latestByChat.values().stream()
+                    .map(message -> new Object[]{snippet(message.getContent()), Timestamp.valueOf(message.getSentAt()),
+                            message.getChatId(), Timestamp.valueOf(message.getSentAt())})
+                    .collect(Collectors.toList());
+
+            jdbcTemplate.batchUpdate("INSERT INTO messages (chat_id, sender_id, content, read, sent_at) " +
+                    "VALUES (?, ?, ?, ?, ?)", rows);
+            jdbcTemplate.batchUpdate("UPDATE chats SET last_message_at = ? " +
+                    "WHERE id = ? AND (last_message_at IS NULL OR last_message_at < ?)", chatUpdates);
+            jdbcTemplate.batchUpdate("UPDATE chat_inbox SET unread_count = unread_count + ? " +
+                    "WHERE chat_id = ? AND user_id <> ?", unreadUpdates);
+            jdbcTemplate.batchUpdate("UPDATE chat_inbox SET last_message_snippet = ?, last_message_at = ? " +
+                    "WHERE chat_id = ? AND last_message_at <= ?", previewUpdates);
+        });
+    }
+
+    // Whether the other participant has marked the chat read up to or past the message
+    private boolean isRead(MessageResponse message) {
+        Map<Long, LocalDateTime> readers = readUpTo.get(message.getChatId());
+        if (readers == null) {
+            return false;
+        }
+        for (Map.Entry<Long, LocalDateTime> reader : readers.entrySet()) {
+            if (!reader.getKey().equals(message.getSenderId()) && !reader.getValue().isBefore(message.getSentAt())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Read marks older than every buffered message have nothing left to apply to
+    private void forgetAppliedReadMarks() {
+        MessageResponse oldest = queue.peek();
+        readUpTo.entrySet().removeIf(entry -> oldest == null || entry.getValue().values().stream()
+                .allMatch(time -> time.isBefore(oldest.getSentAt())));
+    }
+
+    private static String snippet(String content) {
+        return content.length() <= ChatInboxEntry.SNIPPET_LENGTH
+                ? content
+                : content.substring(0, ChatInboxEntry.SNIPPET_LENGTH);
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.model.entity.User;
+import com.example.bookexchange.repository.ReviewRepository;
+import com.example.bookexchange.repository.UserRepository;
+import com.example.bookexchange.repository.projection.RatingAggregate;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Periodically rebuilds the users' rating aggregates from the reviews table, one
+ * id range per transaction, to repair any drift in the incremental counters.
+ *
+ * <p>The users of a range are locked before their reviews are read, so a rating delta
+ * either commits first and is counted in the rebuild, or waits and applies on top of it.
+ * Only users whose aggregates actually drifted are written, which keeps their versions
+ * (and profile ETags) stable otherwise.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RatingReconciliationJob {
+    private static final RatingAggregate NO_REVIEWS = new RatingAggregate(0, 0, 0, 0, 0, 0, 0, 0);
+
+    private final UserRepository userRepository;
+    private final ReviewRepository reviewRepository;
+    private final UserService userService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${bookexchange.ratings.reconcile-batch-size:1000}")
+    private long batchSize = 1000;
+
+    @Scheduled(cron = "${bookexchange.ratings.reconcile-cron:0 30 3 * * *}")
+    public void reconcile() {
+        long maxId = userRepository.findMaxId();
+        long repaired = 0;
+        for (long from = 0; from < maxId; from += batchSize) {
+            long fromId = from;
+            long toId = Math.min(from + batchSize, maxId);
+            repaired += transactionTemplate.execute(status -> reconcileRange(fromId, toId));
+        }
+        log.info("Reconciled rating aggregates, {} users had drifted", repaired);
+    }
+
+    // Rebuilds the aggregates of users in (fromId, toId]; returns how many were repaired
+    int reconcileRange(long fromId, long toId) {
+        List<User> users = userRepository.lockRange(fromId, toId);
+        Map<Long, RatingAggregate> expected = reviewRepository.aggregateRatings(fromId, toId).stream()
+                .collect(Collectors.toMap(RatingAggregate::getUserId, Function.identity()));
+
+        int repaired = 0;
+        for (User user : users) {
+            RatingAggregate aggregate = expected.getOrDefault(user.getId(), NO_REVIEWS);
+            if (matches(user, aggregate)) {
+                continue;
+            }
+            user.setRatingSum(aggregate.getRatingSum());
+            user.setRatingCount((int) aggregate.getRatingCount());
+            user.setRating1Count((int) aggregate.getRating1Count());
+            user.setRating2Count((int) aggregate.getRating2Count());
+            user.setRating3Count((int) aggregate.getRating3Count());
+            user.setRating4Count((int) aggregate.getRating4Count());
+            user.setRating5Count((int) aggregate.getRating5Count());
+            user.updateAverageRating();
+            userService.profileChanged(user);
+            repaired++;
+        }
+        return repaired;
+    }
+
+    private static boolean matches(User user, RatingAggregate aggregate) {
+        return user.getRatingSum() == aggregate.getRatingSum()
+                && user.getRatingCount() == aggregate.getRatingCount()
+                && user.getRating1Count() == aggregate.getRating1Count()
+                && user.getRating2Count() == aggregate.getRating2Count()
+                && user.getRating3Count() == aggregate.getRating3Count()
+                && user.getRating4Count() == aggregate.getRating4Count()
+                && user.getRating5Count() == aggregate.getRating5Count();
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.config.ReplicaRoutingDataSource;
+import com.example.bookexchange.repository.BookMatchRepository;
+import com.example.bookexchange.util.TransactionHooks;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * In-memory want-graph built from active book matches: for every user, the owners
+ * whose books they currently want, with the ids of the active matches per owner.
+ * Answers "does owner B have an active match on any of A's books?" without touching
+ * the database. Mutations are applied after the surrounding transaction commits;
+ * matches made on other nodes arrive with the periodic rebuild.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReciprocalMatchIndex {
+    private final BookMatchRepository matchRepository;
+
+    // userId -> (ownerId -> ids of the active matches userId holds on ownerId's books)
+    private volatile Map<Long, Map<Long, Set<Long>>> wants = new ConcurrentHashMap<>();
+    // Mutations seen while a rebuild runs, replayed onto the rebuilt graph before the swap.
+    // Adding or removing a match id is idempotent, so whether or not the scan already saw
+    // a replayed mutation the rebuilt graph ends up the same.
+    private List<Consumer<Map<Long, Map<Long, Set<Long>>>>> replay;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${bookexchange.reciprocal.rebuild-interval-ms:600000}",
+            fixedDelayString = "${bookexchange.reciprocal.rebuild-interval-ms:600000}")
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        // On the primary: a lagging replica would drop matches committed before the replay began
+        try (ReplicaRoutingDataSource.PrimaryPin ignored = ReplicaRoutingDataSource.pinToPrimary()) {
+            loadAll();
+        }
+    }
+
+    private void loadAll() {
+        synchronized (this) {
+            replay = new ArrayList<>();
+        }
+        Map<Long, Map<Long, Set<Long>>> rebuilt = new ConcurrentHashMap<>();
+        List<Object[]> edges;
+        try {
+            edges = matchRepository.findActiveMatchEdges();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                replay = null;
+            }
+            throw e;
+        }
+        for (Object[] edge : edges) {
+            add(rebuilt, (Long) edge[0], (Long) edge[1], (Long) edge[2]);
+        }
+        // Swapped under the lock so no mutation lands on the old graph after its replay
+        synchronized (this) {
+            replay.forEach(mutation -> mutation.accept(rebuilt));
+            replay = null;
+            wants = rebuilt;
+        }
+        log.info("Reciprocal match index rebuilt from {} active matches", edges.size());
+    }
+
+    public boolean wants(Long userId, Long ownerId) {
+        Map<Long, Set<Long>> owners = wants.get(userId);
+        return owners != null && owners.containsKey(ownerId);
+    }
+
+    // True when the book owner holds an active match on one of the user's books
+    public boolean hasReciprocal(Long userId, Long ownerId) {
+        return wants(ownerId, userId);
+    }
+
+    public Set<Long> wantedOwners(Long userId) {
+        Map<Long, Set<Long>> owners = wants.get(userId);
+        return owners == null ? Collections.emptySet() : Collections.unmodifiableSet(owners.keySet());
+    }
+
+    public void matchActivated(Long matchId, Long userId, Long ownerId) {
+        TransactionHooks.afterCommit(() -> apply(graph -> add(graph, matchId, userId, ownerId)));
+    }
+
+    public void matchDeactivated(Long matchId, Long userId, Long ownerId) {
+        TransactionHooks.afterCommit(() -> apply(graph -> remove(graph, matchId, userId, ownerId)));
+    }
+
+    private synchronized void apply(Consumer<Map<Long, Map<Long, Set<Long>>>> mutation) {
+        mutation.accept(wants);
+        if (replay != null) {
+            replay.add(mutation);
+        }
+    }
+
+    private static void add(Map<Long, Map<Long, Set<Long>>> graph, Long matchId, Long userId, Long ownerId) {
+        graph.compute(userId, (id, owners) -> {
+            Map<Long, Set<Long>> updated = owners != null ? owners : new ConcurrentHashMap<>();
+            updated.computeIfAbsent(ownerId, owner -> ConcurrentHashMap.newKeySet()).add(matchId);
+            return updated;
+        });
+    }
+
+    private static void remove(Map<Long, Map<Long, Set<Long>>> graph, Long matchId, Long userId, Long ownerId) {
+        graph.computeIfPresent(userId, (id, owners) -> {
+            owners.computeIfPresent(ownerId, (owner, matchIds) -> matchIds.remove(matchId) && matchIds.isEmpty()
+                    ? null : matchIds);
+            return owners.isEmpty() ? null : owners;
+        });
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.exception.ResourceNotFoundException;
+import com.example.bookexchange.model.dto.response.BookResponse;
+import com.example.bookexchange.repository.BookRepository;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// "Users who wanted this also wanted" and trending lists, ranked in memory and resolved in one query
+@Service
+@RequiredArgsConstructor
+@Timed(value = "bookexchange.service", histogram = true)
+public class RecommendationService {
+    public static final int DEFAULT_SIZE = 10;
+    // Ranked past the requested size so that books filtered out below leave no gap
+    private static final int OVERFETCH = 2;
+
+    private final CoOccurrenceIndex coOccurrenceIndex;
+    private final TrendingBooks trendingBooks;
+    private final BookService bookService;
+    private final BookRepository bookRepository;
+
+    @Transactional(readOnly = true)
+    public List<BookResponse> getSimilarBooks(Long userId, Long bookId, int size) {
+        int limit = resolveSize(size);
+        long[] ids = coOccurrenceIndex.similar(bookId, limit * OVERFETCH);
+        if (ids.length == 0 && !bookRepository.existsById(bookId)) {
+            throw new ResourceNotFoundException("Book not found with id: " + bookId);
+        }
+        return availableTo(userId, ids, limit);
+    }
+
+    // Books similar to everything the user has matched on, excluding those they already matched on
+    @Transactional(readOnly = true)
+    public List<BookResponse> getRecommendedBooks(Long userId, int size) {
+        int limit = resolveSize(size);
+        return availableTo(userId, coOccurrenceIndex.recommendFor(userId, limit * OVERFETCH), limit);
+    }
+
+    // Most liked, matched and exchanged books in the window, optionally only those owned in country
+    @Transactional(readOnly = true)
+    public List<BookResponse> getTrendingBooks(Long userId, TrendingBooks.Window window, String country, int size) {
+        int limit = resolveSize(size);
+        return availableTo(userId, trendingBooks.top(window, country, limit * OVERFETCH), limit);
+    }
+
+    private List<BookResponse> availableTo(Long userId, long[] ids, int limit) {
+        return availableTo(userId, Arrays.stream(ids).boxed().collect(Collectors.toList()), limit);
+    }
+
+    private List<BookResponse> availableTo(Long userId, List<Long> ids, int limit) {
+        return bookService.getBookResponsesInOrder(ids)
+                .stream()
+                .filter(book -> book.isAvailable() && !book.getOwnerId().equals(userId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private static int resolveSize(int size) {
+        if (size < 1) {
+            return DEFAULT_SIZE;
+        }
+        return Math.min(size, BookService.MAX_PAGE_SIZE);
+    }
+}
@@ -4,13 +4,12 @@ import com.example.bookexchange.exception.BadRequestException;
 import com.example.bookexchange.exception.ResourceNotFoundException;
 import com.example.bookexchange.model.dto.request.ReviewRequest;
 import com.example.bookexchange.model.dto.response.ReviewResponse;
-import com.example.bookexchange.model.entity.Exchange;
 import com.example.bookexchange.model.entity.Review;
 import com.example.bookexchange.model.entity.User;
-import com.example.bookexchange.model.enums.ExchangeStatus;
 import com.example.bookexchange.repository.ExchangeRepository;
 import com.example.bookexchange.repository.ReviewRepository;
 import com.example.bookexchange.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -20,10 +19,12 @@ import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
+@Timed(value = "bookexchange.service", histogram = true)
 public class ReviewService {
     private final ReviewRepository reviewRepository;
     private final UserRepository userRepository;
     private final ExchangeRepository exchangeRepository;
+    private final UserService userService;
 
     @Transactional
     public ReviewResponse createReview(Long reviewerId, ReviewRequest request) {
@@ -34,11 +35,8 @@ public class ReviewService {
             .orElseThrow(() -> new ResourceNotFoundException("Reviewed user not found"));
 
         // Check if these users have completed an exchange
-        boolean hasCompletedExchange = exchangeRepository.findAllByUser(reviewed).stream()
-            .anyMatch(exchange -> 
-                exchange.getStatus() == ExchangeStatus.COMPLETED &&
-                (exchange.getUser1().equals(reviewer) || exchange.getUser2().equals(reviewer))
-            );
+        boolean hasCompletedExchange = exchangeRepository
+            .existsCompletedExchangeBetween(reviewer.getId(), reviewed.getId());
 
         if (!hasCompletedExchange) {
             throw new BadRequestException("Can only review users after completing an exchange with them");
@@ -57,9 +55,9 @@ public class ReviewService {
 
         review = reviewRepository.save(review);
 
-        // Update user's average rating
-        reviewed.updateAverageRating();
-        userRepository.save(reviewed);
+        // Update user's rating aggregates without loading their reviews
+        userRepository.applyRatingDelta(reviewed.getId(), review.getRating(), 1);
+        userService.profileChanged(reviewed);
 
         return mapToReviewResponse(review);
     }
@@ -85,9 +83,9 @@ public class ReviewService {
 
         reviewRepository.delete(review);
 
-        // Update user's average rating after deletion
-        review.getReviewed().updateAverageRating();
-        userRepository.save(review.getReviewed());
+        // Update user's rating aggregates after deletion
+        userRepository.applyRatingDelta(review.getReviewed().getId(), review.getRating(), -1);
+        userService.profileChanged(review.getReviewed());
     }
 
     private ReviewResponse mapToReviewResponse(Review review) {
@@ -0,0 +1,87 @@
+package com.example.bookexchange.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds multi-party trade cycles in the want-graph held by {@link ReciprocalMatchIndex}.
+ * An edge A -> B means A has an active match on one of B's books, so a cycle
+ * A -> B -> C -> A lets every participant receive a book they want.
+ * Searches are bounded by cycle length, result count and the number of expanded
+ * edges, and only ever walk outwards from a single edge.
+ */
+@Component
+@RequiredArgsConstructor
+public class TradeCycleFinder {
+    // Two-party swaps are served by the regular reciprocal match flow
+    public static final int MIN_CYCLE_LENGTH = 3;
+
+    private final ReciprocalMatchIndex reciprocalMatchIndex;
+
+    @Value("${bookexchange.trade-cycles.max-length:4}")
+    private int maxLength = 4;
+
+    @Value("${bookexchange.trade-cycles.max-expansions:10000}")
+    private int maxExpansions = 10_000;
+
+    /**
+     * Returns cycles that contain the edge {@code from -> to}, each as the ordered list of
+     * participants starting with {@code from}. Every user in the list wants a book owned
+     * by the next one, and the last wants a book owned by {@code from}.
+     */
+    public List<List<Long>> findCyclesThrough(Long from, Long to, int limit) {
+        List<List<Long>> cycles = new ArrayList<>();
+        if (from.equals(to) || limit <= 0) {
+            return cycles;
+        }
+        List<Long> path = new ArrayList<>(maxLength);
+        Set<Long> onPath = new HashSet<>();
+        path.add(from);
+        path.add(to);
+        onPath.add(from);
+        onPath.add(to);
+        search(to, from, path, onPath, cycles, limit, new int[]{maxExpansions});
+        return cycles;
+    }
+
+    // Every cycle through the user, found by searching outwards from each of their wants
+    public List<List<Long>> findCyclesFor(Long userId, int limit) {
+        List<List<Long>> cycles = new ArrayList<>();
+        for (Long ownerId : reciprocalMatchIndex.wantedOwners(userId)) {
+            if (cycles.size() >= limit) {
+                break;
+            }
+            cycles.addAll(findCyclesThrough(userId, ownerId, limit - cycles.size()));
+        }
+        return cycles;
+    }
+
+    private void search(Long current, Long start, List<Long> path, Set<Long> onPath,
+                        List<List<Long>> cycles, int limit, int[] budget) {
+        for (Long next : reciprocalMatchIndex.wantedOwners(current)) {
+            if (cycles.size() >= limit || --budget[0] < 0) {
+                return;
+            }
+            if (next.equals(start)) {
+                if (path.size() >= MIN_CYCLE_LENGTH) {
+                    cycles.add(List.copyOf(path));
+                }
+                continue;
+            }
+            if (path.size() >= maxLength || onPath.contains(next)) {
+                continue;
+            }
+            path.add(next);
+            onPath.add(next);
+            search(next, start, path, onPath, cycles, limit, budget);
+            path.remove(path.size() - 1);
+            onPath.remove(next);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.util.TransactionHooks;
+import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
+import it.unimi.dsi.fastutil.longs.Long2DoubleMaps;
+import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * What is hot right now: likes, matches and exchanges counted per book over sliding
+ * windows, with older events decaying exponentially. Each window keeps a bounded
+ * leaderboard overall and one per owner country, updated as events arrive and as time
+ * buckets fall out of the window, so reads never sort the catalog.
+ *
+ * <p>Scores are kept relative to a landmark time: an event at t adds weight * e^(λ(t - landmark)).
+ * Decay then multiplies every score by the same factor, so rankings hold without touching
+ * the scores until an event's bucket leaves the window and its contribution is subtracted.
+ *
+ * <p>Leaderboards hold twice the served size, and only books that can be exchanged: a book
+ * that becomes unavailable (an exchange completing, say) keeps its score but leaves them
+ * until it is available again, so it does not take the place of one a reader could get.
+ * A book pushed off one can only come back with a new event, so after a burst of expiries
+ * the tail of a list may be approximate. Counts are per node; events are recorded after commit.
+ */
+@Component
+public class TrendingBooks {
+    // Rescale before e^(λ(t - landmark)) gets anywhere near the range of a double
+    private static final double MAX_EXPONENT = 300;
+
+    public enum Event {
+        LIKE(1), MATCH(3), EXCHANGE(5);
+
+        private final double weight;
+
+        Event(double weight) {
+            this.weight = weight;
+        }
+    }
+
+    public enum Window {
+        HOUR(Duration.ofMinutes(5), 12, Duration.ofMinutes(20)),
+        DAY(Duration.ofHours(1), 24, Duration.ofHours(6));
+
+        private final Duration bucket;
+        private final int buckets;
+        private final Duration halfLife;
+
+        Window(Duration bucket, int buckets, Duration halfLife) {
+            this.bucket = bucket;
+            this.buckets = buckets;
+            this.halfLife = halfLife;
+        }
+    }
+
+    private final LocalityIndex localityIndex;
+    private final int topK;
+    private final Map<Window, SlidingWindow> windows = new EnumMap<>(Window.class);
+
+    public TrendingBooks(LocalityIndex localityIndex, @Value("${bookexchange.trending.top-k:100}") int topK) {
+        this.localityIndex = localityIndex;
+        this.topK = topK;
+        for (Window window : Window.values()) {
+            windows.put(window, new SlidingWindow(window, topK * 2));
+        }
+    }
+
+    public void record(Event event, Long bookId) {
+        TransactionHooks.afterCommit(() -> {
+            long now = System.currentTimeMillis();
+            String country = localityIndex.countryOf(bookId);
+            boolean listed = localityIndex.isAvailable(bookId);
+            for (SlidingWindow window : windows.values()) {
+                window.add(bookId, country, listed, event.weight, now);
+            }
+        });
+    }
+
+    public void bookUnavailable(Long bookId) {
+        TransactionHooks.afterCommit(() -> setListed(bookId, false));
+    }
+
+    public void bookAvailable(Long bookId) {
+        TransactionHooks.afterCommit(() -> setListed(bookId, true));
+    }
+
+    private void setListed(Long bookId, boolean listed) {
+        long now = System.currentTimeMillis();
+        for (SlidingWindow window : windows.values()) {
+            window.setListed(bookId, listed, now);
+        }
+    }
+
+    // Up to limit of the highest scoring books, overall or among books owned in country
+    public List<Long> top(Window window, String country, int limit) {
+        return windows.get(window).top(country == null ? null : LocalityIndex.Region.normalize(country),
+                Math.min(limit, topK), System.currentTimeMillis());
+    }
+
+    private static final class Entry {
+        final long bookId;
+        double score;
+        String country;
+        // Whether the book can be exchanged; only listed entries are ranked
+        boolean listed;
+        // Buckets still holding a contribution; the entry goes when this reaches zero
+        int buckets;
+
+        Entry(long bookId) {
+            this.bookId = bookId;
+        }
+    }
+
+    // Highest score first, lower id on ties
+    private static final Comparator<Entry> RANKING = Comparator.<Entry>comparingDouble(e -> -e.score)
+            .thenComparingLong(e -> e.bookId);
+
+    private static final class Leaderboard {
+        private final TreeSet<Entry> entries = new TreeSet<>(RANKING);
+        private final int capacity;
+
+        Leaderboard(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void offer(Entry entry) {
+            entries.add(entry);
+            if (entries.size() > capacity) {
+                entries.pollLast();
+            }
+        }
+
+        void remove(Entry entry) {
+            entries.remove(entry);
+        }
+    }
+
+    private static final class SlidingWindow {
+        private final long bucketMillis;
+        private final double lambda;
+        private final int capacity;
+        // Per-bucket contributions, a ring indexed by bucket number modulo its length
+        private final Long2DoubleOpenHashMap[] contributions;
+        private final Long2ObjectOpenHashMap<Entry> books = new Long2ObjectOpenHashMap<>();
+        private final Leaderboard overall;
+        private final Map<String, Leaderboard> byCountry = new HashMap<>();
+        private long head = -1;
+        private long landmark;
+
+        SlidingWindow(Window window, int capacity) {
+            this.bucketMillis = window.bucket.toMillis();
+            this.lambda = Math.log(2) / window.halfLife.toMillis();
+            this.capacity = capacity;
+            this.contributions = new Long2DoubleOpenHashMap[window.buckets];
+            for (int i = 0; i < contributions.length; i++) {
+                contributions[i] = new Long2DoubleOpenHashMap();
+            }
+            this.overall = new Leaderboard(capacity);
+        }
+
+        synchronized void add(long bookId, String country, boolean listed, double weight, long now) {
+            advance(now);
+            if (lambda * (head * bucketMillis - landmark) > MAX_EXPONENT) {
+                rescale();
+            }
+            double contribution = weight * Math.exp(lambda * (head * bucketMillis - landmark));
+            Long2DoubleOpenHashMap bucket = contributions[slot(head)];
+
+            Entry entry = books.get(bookId);
+            if (entry == null) {
+                entry = new Entry(bookId);
+                books.put(bookId, entry);
+            }
+            unrank(entry);
+            if (!bucket.containsKey(bookId)) {
+                entry.buckets++;
+            }
+            bucket.addTo(bookId, contribution);
+            entry.score += contribution;
+            entry.country = country;
+            entry.listed = listed;
+            rank(entry);
+        }
+
+        synchronized void setListed(long bookId, boolean listed, long now) {
+            advance(now);
+            Entry entry = books.get(bookId);
+            if (entry == null || entry.listed == listed) {
+                return;
+            }
+            unrank(entry);
+            entry.listed = listed;
+            rank(entry);
+        }
+
+        synchronized List<Long> top(String country, int limit, long now) {
+            advance(now);
+            Leaderboard board = country == null ? overall : byCountry.get(country);
+            if (board == null) {
+                return List.of();
+            }
+            List<Long> ids = new ArrayList<>(Math.min(limit, board.entries.size()));
+            for (Entry entry : board.entries) {
+                if (ids.size() == limit) {
+                    break;
+                }
+                ids.add(entry.bookId);
+            }
+            return ids;
+        }
+
+        // Moves the head to the bucket containing now, expiring the buckets that leave the window
+        private void advance(long now) {
+            long current = now / bucketMillis;
+            if (head < 0) {
+                head = current;
+                landmark = current * bucketMillis;
+                return;
+            }
+            // After a long quiet spell every bucket is stale; expire each one once
+            long from = Math.max(head, current - contributions.length);
+            for (long bucket = from + 1; bucket <= current; bucket++) {
+                expire(contributions[slot(bucket)]);
+            }
+            head = Math.max(head, current);
+        }
+
+        private void expire(Long2DoubleOpenHashMap bucket) {
+            for (Long2DoubleMap.Entry expired : Long2DoubleMaps.fastIterable(bucket)) {
+                Entry entry = books.get(expired.getLongKey());
+                unrank(entry);
+                entry.score -= expired.getDoubleValue();
+                if (--entry.buckets == 0) {
+                    books.remove(entry.bookId);
+                } else {
+                    rank(entry);
+                }
+            }
+            bucket.clear();
+        }
+
+        // Moves the landmark to the head bucket, dividing every score by the same factor
+        private void rescale() {
+            long newLandmark = head * bucketMillis;
+            double factor = Math.exp(-lambda * (newLandmark - landmark));
+            overall.entries.clear();
+            byCountry.clear();
+            for (Long2DoubleOpenHashMap bucket : contributions) {
+                for (Long2DoubleMap.Entry contribution : Long2DoubleMaps.fastIterable(bucket)) {
+                    contribution.setValue(contribution.getDoubleValue() * factor);
+                }
+            }
+            for (Entry entry : books.values()) {
+                entry.score *= factor;
+                rank(entry);
+            }
+            landmark = newLandmark;
+        }
+
+        private void unrank(Entry entry) {
+            overall.remove(entry);
+            if (entry.country != null) {
+                Leaderboard board = byCountry.get(entry.country);
+                if (board != null) {
+                    board.remove(entry);
+                    if (board.entries.isEmpty()) {
+                        byCountry.remove(entry.country);
+                    }
+                }
+            }
+        }
+
+        private void rank(Entry entry) {
+            if (!entry.listed) {
+                return;
+            }
+            overall.offer(entry);
+            if (entry.country != null) {
+                byCountry.computeIfAbsent(entry.country, c -> new Leaderboard(capacity)).offer(entry);
+            }
+        }
+
+        private int slot(long bucket) {
+            return (int) (bucket % contributions.length);
+        }
+    }
+}
@@ -5,16 +5,30 @@ import com.example.bookexchange.model.dto.response.UserResponse;
 import com.example.bookexchange.model.entity.User;
 import com.example.bookexchange.repository.UserRepository;
 import com.example.bookexchange.exception.ResourceNotFoundException;
+import com.example.bookexchange.util.TransactionHooks;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 @Service
 @RequiredArgsConstructor
 public class UserService {
+    // Bounded, TTL-based username -> profile snapshot cache (see spring.cache.caffeine.spec)
+    public static final String USER_IDENTITY_CACHE = "userIdentities";
+
     private final UserRepository userRepository;
+    private final CacheManager cacheManager;
+    private final EntityTagService entityTagService;
+    private final LocalityIndex localityIndex;
+    // Bumped before every eviction; a profile read while it moved may predate the write
+    private final AtomicLong identityEvictions = new AtomicLong();
 
     @Transactional
     public UserResponse provisionUser(Authentication authentication) {
@@ -24,10 +38,18 @@ public class UserService {
         String username = jwt.getClaimAsString("preferred_username");
         String email = jwt.getClaimAsString("email");
 
+        UserResponse cached = identityCache().get(username, UserResponse.class);
+        if (cached != null) {
+            return cached;
+        }
+
+        long evictions = identityEvictions.get();
         // Check if user already exists in our database
-        return userRepository.findByUsername(username)
+        UserResponse response = userRepository.findByUsername(username)
                 .map(this::mapToUserResponse)
                 .orElseGet(() -> createNewUser(keycloakId, username, email));
+        TransactionHooks.afterCommit(() -> cacheIdentity(username, response, evictions));
+        return response;
     }
 
     private UserResponse createNewUser(String keycloakId, String username, String email) {
@@ -58,6 +80,8 @@ public class UserService {
         user.setDescription(request.getDescription());
 
         user = userRepository.save(user);
+        profileChanged(user);
+        localityIndex.ownerMoved(id, user.getCountry(), user.getCity());
         return mapToUserResponse(user);
     }
 
@@ -68,15 +92,59 @@ public class UserService {
         return mapToUserResponse(user);
     }
 
+    // A cached profile older than minVersion (when given) is read again from the database,
+    // so callers that know the current version never serve a body behind it
     @Transactional(readOnly = true)
-    public UserResponse getCurrentUserProfile(Authentication authentication) {
+    public UserResponse getCurrentUserProfile(Authentication authentication, Long minVersion) {
         Jwt jwt = (Jwt) authentication.getPrincipal();
         String username = jwt.getClaimAsString("preferred_username");
 
+        UserResponse cached = identityCache().get(username, UserResponse.class);
+        if (cached != null && (minVersion == null || cached.getVersion() >= minVersion)) {
+            return cached;
+        }
+
+        long evictions = identityEvictions.get();
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
-        return mapToUserResponse(user);
+        UserResponse response = mapToUserResponse(user);
+        cacheIdentity(username, response, evictions);
+        return response;
+    }
+
+    // Drops the cached profile and version of a user once the surrounding transaction
+    // commits; every write to a users row, including the SQL aggregates, goes through here
+    public void profileChanged(User user) {
+        String username = user.getUsername();
+        Long id = user.getId();
+        TransactionHooks.afterCommit(() -> {
+            identityEvictions.incrementAndGet();
+            identityCache().evict(username);
+            entityTagService.evictUser(id);
+        });
+    }
+
+    // Caches a profile read from the database unless an eviction happened since the read
+    // started (the row may have changed under it) or a newer version is already cached.
+    // The check runs inside the entry's compute, which an eviction of the same key waits for.
+    @SuppressWarnings("unchecked")
+    private void cacheIdentity(String username, UserResponse response, long evictionsBeforeRead) {
+        ConcurrentMap<Object, Object> entries =
+                ((com.github.benmanes.caffeine.cache.Cache<Object, Object>) identityCache().getNativeCache()).asMap();
+        entries.compute(username, (key, current) -> {
+            if (identityEvictions.get() != evictionsBeforeRead) {
+                return current;
+            }
+            if (current instanceof UserResponse cached && cached.getVersion() > response.getVersion()) {
+                return current;
+            }
+            return response;
+        });
+    }
+
+    private Cache identityCache() {
+        return cacheManager.getCache(USER_IDENTITY_CACHE);
     }
 
     private UserResponse mapToUserResponse(User user) {
@@ -90,6 +158,7 @@ public class UserService {
         response.setRank(user.getRank());
         response.setExchangeCount(user.getExchangeCount());
         response.setAverageRating(user.getAverageRating());
+        response.setVersion(user.getVersion());
         return response;
     }
-}
\ No newline at end of file
+}
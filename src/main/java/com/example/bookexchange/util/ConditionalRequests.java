@@ -0,0 +1,36 @@
+package com.example.bookexchange.util;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * If-None-Match evaluation for handlers that know an entity's tag before loading it.
+ * Unlike WebRequest.checkNotModified this leaves the response headers alone, so the
+ * tag sent with a 200 can be the one of the body actually returned.
+ */
+public final class ConditionalRequests {
+
+    private ConditionalRequests() {
+    }
+
+    // True when If-None-Match lists the tag or "*"; comparison is weak, as RFC 9110 requires
+    public static boolean ifNoneMatch(WebRequest request, String etag) {
+        String[] headers = request.getHeaderValues(HttpHeaders.IF_NONE_MATCH);
+        if (etag == null || headers == null) {
+            return false;
+        }
+        String quoted = "\"" + etag + "\"";
+        for (String header : headers) {
+            for (String candidate : header.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(quoted)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
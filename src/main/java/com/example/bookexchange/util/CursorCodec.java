@@ -0,0 +1,46 @@
+package com.example.bookexchange.util;
+
+import com.example.bookexchange.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes keyset positions into opaque, URL-safe cursor strings.
+ * Clients must treat the value as a token and hand it back unchanged.
+ */
+public final class CursorCodec {
+    private static final String SEPARATOR = ":";
+
+    private CursorCodec() {
+    }
+
+    public static String encode(long... parts) {
+        StringBuilder raw = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                raw.append(SEPARATOR);
+            }
+            raw.append(parts[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static long[] decode(String cursor, int expectedParts) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] tokens = raw.split(SEPARATOR);
+            if (tokens.length != expectedParts) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            long[] parts = new long[expectedParts];
+            for (int i = 0; i < expectedParts; i++) {
+                parts[i] = Long.parseLong(tokens[i]);
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+}
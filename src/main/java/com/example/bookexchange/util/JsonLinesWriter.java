@@ -0,0 +1,98 @@
+package com.example.bookexchange.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Writes a response body as newline-delimited JSON through one Jackson generator, so
+ * only the row being written is held in memory. Output is flushed every
+ * {@link #FLUSH_EVERY} rows, which lets the client start reading before the query ends.
+ *
+ * <p>Nothing touches the response until the first row, so a failure before it (an unknown
+ * user, say) propagates to the exception handlers with the status still open. Once rows
+ * have gone out the status cannot change; the body then ends with an
+ * {@code {"error": ...}} line so a client never takes the truncated list for a complete one.
+ */
+@Slf4j
+public class JsonLinesWriter {
+    private static final int FLUSH_EVERY = 100;
+
+    private final ObjectMapper mapper;
+    private final HttpServletResponse response;
+    private final ObjectWriter writer;
+    private JsonGenerator generator;
+    private int rows;
+
+    private JsonLinesWriter(ObjectMapper mapper, HttpServletResponse response) {
+        this.mapper = mapper;
+        this.response = response;
+        this.writer = mapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("\n");
+    }
+
+    // Writes every row the producer hands to its sink, then ends the body
+    public static <T> void stream(ObjectMapper mapper, HttpServletResponse response, Consumer<Consumer<T>> producer)
+            throws IOException {
+        JsonLinesWriter lines = new JsonLinesWriter(mapper, response);
+        try {
+            producer.accept(lines::write);
+        } catch (RuntimeException e) {
+            if (lines.generator == null) {
+                throw e;
+            }
+            log.error("Streaming failed after {} rows; ending the body with an error line", lines.rows, e);
+            lines.fail();
+            return;
+        }
+        lines.close();
+    }
+
+    private void write(Object value) {
+        try {
+            if (generator == null) {
+                open();
+            }
+            writer.writeValue(generator, value);
+            if (++rows % FLUSH_EVERY == 0) {
+                generator.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void open() throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        generator = mapper.getFactory().createGenerator(response.getOutputStream());
+    }
+
+    // Raw, as the failure may have left a row half written; that row is cut short, not completed
+    private void fail() throws IOException {
+        generator.writeRaw('\n' + mapper.writeValueAsString(Map.of(
+                "error", "Internal Server Error",
+                "message", "The list ended early after " + rows + " rows")) + '\n');
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        generator.close();
+    }
+
+    private void close() throws IOException {
+        if (generator == null) {
+            open();
+        } else {
+            generator.writeRaw('\n');
+        }
+        generator.close();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.bookexchange.util;
+
+/**
+ * Per-request JPA activity: SQL statements Hibernate issued, entities it loaded and lazy
+ * collections it initialized. Bound to the request thread by
+ * {@link com.example.bookexchange.config.RequestQueryMetricsFilter}; statements sent
+ * through JdbcTemplate are not counted.
+ */
+public final class QueryCounters {
+    // The request attribute under which the counters of the current request are exposed
+    public static final String REQUEST_ATTRIBUTE = QueryCounters.class.getName();
+
+    private static final ThreadLocal<QueryCounters> CURRENT = new ThreadLocal<>();
+
+    private long statements;
+    private long entityLoads;
+    private long collectionFetches;
+
+    private QueryCounters() {
+    }
+
+    public static QueryCounters start() {
+        QueryCounters counters = new QueryCounters();
+        CURRENT.set(counters);
+        return counters;
+    }
+
+    // Null when the current thread is not serving a request
+    public static QueryCounters current() {
+        return CURRENT.get();
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    public static void statementExecuted() {
+        QueryCounters counters = CURRENT.get();
+        if (counters != null) {
+            counters.statements++;
+        }
+    }
+
+    public static void entityLoaded() {
+        QueryCounters counters = CURRENT.get();
+        if (counters != null) {
+            counters.entityLoads++;
+        }
+    }
+
+    public static void collectionFetched() {
+        QueryCounters counters = CURRENT.get();
+        if (counters != null) {
+            counters.collectionFetches++;
+        }
+    }
+
+    public long getStatements() {
+        return statements;
+    }
+
+    public long getEntityLoads() {
+        return entityLoads;
+    }
+
+    public long getCollectionFetches() {
+        return collectionFetches;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.bookexchange.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+public final class StreamChunks {
+
+    private StreamChunks() {
+    }
+
+    // Hands the stream to the consumer in lists of at most size elements, e.g. to resolve
+    // the books of each chunk in one query instead of holding the whole result
+    public static <T> void forEachChunk(Stream<T> stream, int size, Consumer<List<T>> consumer) {
+        List<T> chunk = new ArrayList<>(size);
+        Iterator<T> iterator = stream.iterator();
+        while (iterator.hasNext()) {
+            chunk.add(iterator.next());
+            if (chunk.size() == size) {
+                consumer.accept(chunk);
+                chunk = new ArrayList<>(size);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            consumer.accept(chunk);
+        }
+    }
+}
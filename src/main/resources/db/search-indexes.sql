@@ -0,0 +1,12 @@
+-- Search indexes for books. Hibernate's ddl-auto cannot express expression or GIN
+-- indexes, so they are created here after the schema update has run.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Trigram indexes serve both substring matches (LIKE '%term%') and typo-tolerant
+-- word similarity (term <% title) on title and author
+CREATE INDEX IF NOT EXISTS idx_books_title_trgm ON books USING gin (lower(title) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_books_author_trgm ON books USING gin (lower(author) gin_trgm_ops);
+
+-- Full-text index over descriptions
+CREATE INDEX IF NOT EXISTS idx_books_description_fts ON books
+    USING gin (to_tsvector('simple', coalesce(description, '')));
@@ -0,0 +1,191 @@
+package com.example.bookexchange.bench;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+/**
+ * Closed-model HTTP load generator used to compare execution modes. A fixed number of
+ * clients issue requests back to back against a running instance; for each endpoint it
+ * reports throughput, latency percentiles and the status code distribution.
+ *
+ * <pre>
+ * java -cp target/test-classes com.example.bookexchange.bench.HttpLoadBenchmark \
+ *     -Dbench.baseUrl=http://localhost:8080/api -Dbench.token=... -Dbench.bookIds=1-5000 \
+ *     -Dbench.searchTerms=the,love,war
+ * </pre>
+ *
+ * See bench/execution-mode.sh for a full blocking-vs-virtual run.
+ */
+public class HttpLoadBenchmark {
+    private final HttpClient client;
+    private final String baseUrl;
+    private final String token;
+
+    public HttpLoadBenchmark(String baseUrl, String token) {
+        this.baseUrl = baseUrl;
+        this.token = token;
+        this.client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = System.getProperty("bench.baseUrl", "http://localhost:8080/api");
+        String token = System.getProperty("bench.token", "");
+        int clients = Integer.getInteger("bench.clients", 400);
+        Duration warmup = Duration.ofSeconds(Integer.getInteger("bench.warmupSeconds", 10));
+        Duration measure = Duration.ofSeconds(Integer.getInteger("bench.durationSeconds", 30));
+        long[] bookIds = parseIds(System.getProperty("bench.bookIds", "1-1000"));
+        String[] searchTerms = System.getProperty("bench.searchTerms", "the,love,war,history,garden").split(",");
+        String label = System.getProperty("bench.label", "run");
+
+        HttpLoadBenchmark benchmark = new HttpLoadBenchmark(baseUrl, token);
+        AtomicLong cursor = new AtomicLong();
+
+        LongFunction<HttpRequest> listBooks = i -> benchmark.get("/api/books");
+        // Cycles through the book pool; once every id has been matched the endpoint measures
+        // the duplicate-rejection path, which runs the same lookups
+        LongFunction<HttpRequest> createMatch = i -> benchmark.post("/api/matches",
+                "{\"bookId\":" + bookIds[(int) (cursor.getAndIncrement() % bookIds.length)] + "}");
+
+        // Trigram search, first page only; each client walks the terms from its own offset
+        LongFunction<HttpRequest> searchBooks = i -> benchmark.get("/api/books/search/page?size=20&term="
+                + URLEncoder.encode(searchTerms[(int) (i % searchTerms.length)].trim(), StandardCharsets.UTF_8));
+
+        Map<String, LongFunction<HttpRequest>> endpoints = new LinkedHashMap<>();
+        endpoints.put("GET /api/books", listBooks);
+        endpoints.put("GET /api/books/search/page", searchBooks);
+        endpoints.put("POST /api/matches", createMatch);
+        for (Map.Entry<String, LongFunction<HttpRequest>> endpoint : endpoints.entrySet()) {
+            benchmark.run(endpoint.getValue(), clients, warmup);
+            Result result = benchmark.run(endpoint.getValue(), clients, measure);
+            System.out.println(result.toJson(label, endpoint.getKey(), clients));
+        }
+    }
+
+    public HttpRequest get(String path) {
+        return authorized(HttpRequest.newBuilder(URI.create(baseUrl + path)).GET());
+    }
+
+    public HttpRequest post(String path, String json) {
+        return authorized(HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)));
+    }
+
+    private HttpRequest authorized(HttpRequest.Builder builder) {
+        if (!token.isEmpty()) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder.timeout(Duration.ofSeconds(30)).build();
+    }
+
+    public Result run(LongFunction<HttpRequest> requests, int clients, Duration duration) throws InterruptedException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Recorder> recorders = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                Recorder recorder = new Recorder();
+                recorders.add(recorder);
+                executor.execute(() -> {
+                    long i = 0;
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest request = requests.apply(i++);
+                        long start = System.nanoTime();
+                        int status;
+                        try {
+                            status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        } catch (Exception e) {
+                            status = -1;
+                        }
+                        recorder.record(System.nanoTime() - start, status);
+                    }
+                });
+            }
+        }
+        return Result.merge(recorders, duration);
+    }
+
+    private static long[] parseIds(String spec) {
+        if (spec.contains("-")) {
+            String[] range = spec.split("-");
+            long from = Long.parseLong(range[0].trim());
+            long to = Long.parseLong(range[1].trim());
+            long[] ids = new long[(int) (to - from + 1)];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = from + i;
+            }
+            return ids;
+        }
+        return Arrays.stream(spec.split(",")).map(String::trim).mapToLong(Long::parseLong).toArray();
+    }
+
+    // Per-client, so recording needs no synchronization
+    static class Recorder {
+        private long[] latencies = new long[4096];
+        private int count;
+        private final Map<Integer, Long> statuses = new TreeMap<>();
+
+        void record(long latencyNanos, int status) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+            statuses.merge(status, 1L, Long::sum);
+        }
+    }
+
+    public record Result(long requests, double throughput, double p50Ms, double p99Ms, double maxMs,
+                         Map<Integer, Long> statuses) {
+
+        static Result merge(List<Recorder> recorders, Duration duration) {
+            int total = recorders.stream().mapToInt(r -> r.count).sum();
+            long[] all = new long[total];
+            int offset = 0;
+            Map<Integer, Long> statuses = new TreeMap<>();
+            for (Recorder recorder : recorders) {
+                System.arraycopy(recorder.latencies, 0, all, offset, recorder.count);
+                offset += recorder.count;
+                recorder.statuses.forEach((status, n) -> statuses.merge(status, n, Long::sum));
+            }
+            Arrays.sort(all);
+            return new Result(total, total / (duration.toMillis() / 1000.0),
+                    percentileMs(all, 0.50), percentileMs(all, 0.99), percentileMs(all, 1.0), statuses);
+        }
+
+        private static double percentileMs(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1_000_000.0;
+        }
+
+        public String toJson(String label, String endpoint, int clients) {
+            StringBuilder codes = new StringBuilder();
+            statuses.forEach((status, n) -> codes.append(codes.length() == 0 ? "" : ",")
+                    .append('"').append(status).append("\":").append(n));
+            return String.format(Locale.ROOT,
+                    "{\"label\":\"%s\",\"endpoint\":\"%s\",\"clients\":%d,\"requests\":%d,"
+                            + "\"throughput\":%.1f,\"p50Ms\":%.2f,\"p99Ms\":%.2f,\"maxMs\":%.2f,\"statuses\":{%s}}",
+                    label, endpoint, clients, requests, throughput, p50Ms, p99Ms, maxMs, codes);
+        }
+    }
+}
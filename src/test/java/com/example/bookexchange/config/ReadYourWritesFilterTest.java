@@ -0,0 +1,141 @@
+package com.example.bookexchange.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReadYourWritesFilterTest {
+    private static final long STICKY_MS = 5000;
+
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection replicaConnection = mock(Connection.class);
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    void aWriterReadsFromThePrimaryOnThisInstance() throws Exception {
+        ReplicaRoutingDataSource router = freshReplica();
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(STICKY_MS);
+        authenticateAs(7L);
+
+        assertThat(request(filter, router, "GET", null).connection).isSameAs(replicaConnection);
+        request(filter, router, "POST", null);
+        assertThat(request(filter, router, "GET", null).connection).isSameAs(primaryConnection);
+
+        authenticateAs(8L);
+        assertThat(request(filter, router, "GET", null).connection).isSameAs(replicaConnection);
+    }
+
+    @Test
+    void aWriterReadsFromThePrimaryOnAnotherInstanceUntilTheCookieRunsOut() throws Exception {
+        ReplicaRoutingDataSource router = freshReplica();
+        authenticateAs(7L);
+
+        Cookie pin = request(new ReadYourWritesFilter(STICKY_MS), router, "POST", null).cookie;
+        assertThat(pin).isNotNull();
+        assertThat(pin.isHttpOnly()).isTrue();
+        assertThat(pin.getMaxAge()).isEqualTo(5);
+
+        ReadYourWritesFilter otherInstance = new ReadYourWritesFilter(STICKY_MS);
+        assertThat(request(otherInstance, router, "GET", pin).connection).isSameAs(primaryConnection);
+
+        Cookie expired = new Cookie(ReadYourWritesFilter.PRIMARY_UNTIL_COOKIE,
+                Long.toString(System.currentTimeMillis() - 1));
+        assertThat(request(otherInstance, router, "GET", expired).connection).isSameAs(replicaConnection);
+    }
+
+    @Test
+    void thePinIsReleasedAfterTheRequest() throws Exception {
+        ReplicaRoutingDataSource router = freshReplica();
+
+        request(new ReadYourWritesFilter(STICKY_MS), router, "POST", null);
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(router.getConnection()).isSameAs(replicaConnection);
+    }
+
+    private record Outcome(Connection connection, Cookie cookie) {
+    }
+
+    // Runs one request through the filter, noting where a read-only transaction inside it would go
+    private static Outcome request(ReadYourWritesFilter filter, ReplicaRoutingDataSource router,
+                                   String method, Cookie cookie) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/books");
+        if (cookie != null) {
+            request.setCookies(cookie);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        List<Connection> used = new ArrayList<>();
+        FilterChain chain = (req, res) -> {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+            try {
+                used.add(router.getConnection());
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+            }
+        };
+        filter.doFilter(request, response, chain);
+        return new Outcome(used.get(0), response.getCookie(ReadYourWritesFilter.PRIMARY_UNTIL_COOKIE));
+    }
+
+    private static void authenticateAs(Long userId) {
+        Jwt jwt = Jwt.withTokenValue("token")
+                .header("alg", "none")
+                .claim("user_id", userId.toString())
+                .build();
+        SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt));
+    }
+
+    // A router with one replica that has passed its lag check
+    private ReplicaRoutingDataSource freshReplica() throws Exception {
+        DataSource primary = mock(DataSource.class);
+        DataSource replica = mock(DataSource.class);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+
+        Statement primaryStatement = mock(Statement.class);
+        ResultSet primaryLsn = mock(ResultSet.class);
+        when(primaryConnection.createStatement()).thenReturn(primaryStatement);
+        when(primaryStatement.executeQuery(anyString())).thenReturn(primaryLsn);
+        when(primaryLsn.next()).thenReturn(true);
+        when(primaryLsn.getString(1)).thenReturn("0/16B3748");
+
+        PreparedStatement lagStatement = mock(PreparedStatement.class);
+        ResultSet lag = mock(ResultSet.class);
+        when(replicaConnection.prepareStatement(anyString())).thenReturn(lagStatement);
+        when(lagStatement.executeQuery()).thenReturn(lag);
+        when(lag.next()).thenReturn(true);
+        when(lag.getLong(1)).thenReturn(0L);
+
+        ReplicaRoutingDataSource router = new ReplicaRoutingDataSource(primary, List.of(replica), 1000);
+        router.checkReplicas();
+        return router;
+    }
+}
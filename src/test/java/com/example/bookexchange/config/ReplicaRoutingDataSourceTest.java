@@ -0,0 +1,136 @@
+package com.example.bookexchange.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReplicaRoutingDataSourceTest {
+    private static final long MAX_LAG_MS = 1000;
+
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection replicaConnection = mock(Connection.class);
+    private final DataSource primary = mock(DataSource.class);
+    private final DataSource replica = mock(DataSource.class);
+    private final ResultSet replicaLag = mock(ResultSet.class);
+    private ReplicaRoutingDataSource router;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+
+        Statement primaryStatement = mock(Statement.class);
+        ResultSet primaryLsn = mock(ResultSet.class);
+        when(primaryConnection.createStatement()).thenReturn(primaryStatement);
+        when(primaryStatement.executeQuery(anyString())).thenReturn(primaryLsn);
+        when(primaryLsn.next()).thenReturn(true);
+        when(primaryLsn.getString(1)).thenReturn("0/16B3748");
+
+        PreparedStatement lagStatement = mock(PreparedStatement.class);
+        when(replicaConnection.prepareStatement(anyString())).thenReturn(lagStatement);
+        when(lagStatement.executeQuery()).thenReturn(replicaLag);
+        when(replicaLag.next()).thenReturn(true);
+
+        router = new ReplicaRoutingDataSource(primary, List.of(replica), MAX_LAG_MS);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        ReplicaRoutingDataSource.usePrimary(false);
+    }
+
+    @Test
+    void readsStayOnThePrimaryUntilTheFirstLagCheck() throws SQLException {
+        assertThat(router.getConnection()).isSameAs(primaryConnection);
+        assertThat(router.replicaLagMs(0)).isEqualTo(-1);
+    }
+
+    @Test
+    void readOnlyTransactionsGoToAFreshReplica() throws SQLException {
+        replicaLagIs(0);
+
+        assertThat(router.getConnection()).isSameAs(replicaConnection);
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        assertThat(router.getConnection()).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void readsLeaveAReplicaOverTheTolerance() throws SQLException {
+        replicaLagIs(MAX_LAG_MS + 1);
+
+        assertThat(router.getConnection()).isSameAs(primaryConnection);
+        assertThat(router.replicaLagMs(0)).isEqualTo(MAX_LAG_MS + 1);
+    }
+
+    @Test
+    void aReplicaCutOffFromThePrimaryIsUnhealthy() throws SQLException {
+        replicaLagIs(0);
+        // Behind the primary with no streaming WAL receiver
+        replicaLagIs(-1);
+
+        assertThat(router.getConnection()).isSameAs(primaryConnection);
+        assertThat(router.replicaLagMs(0)).isEqualTo(-1);
+    }
+
+    @Test
+    void readsFallBackToThePrimaryWhenTheReplicaRefusesAConnection() throws SQLException {
+        replicaLagIs(0);
+        when(replica.getConnection()).thenThrow(new SQLException("connection refused"));
+
+        assertThat(router.getConnection()).isSameAs(primaryConnection);
+        assertThat(router.replicaLagMs(0)).isEqualTo(-1);
+    }
+
+    @Test
+    void aFailedLagCheckMarksTheReplicaUnreachable() throws SQLException {
+        replicaLagIs(0);
+        when(replica.getConnection()).thenThrow(new SQLException("connection refused"));
+
+        router.checkReplicas();
+
+        assertThat(router.replicaLagMs(0)).isEqualTo(-1);
+    }
+
+    @Test
+    void pinnedReadsUseThePrimaryUntilThePinCloses() throws SQLException {
+        replicaLagIs(0);
+
+        try (ReplicaRoutingDataSource.PrimaryPin ignored = ReplicaRoutingDataSource.pinToPrimary()) {
+            assertThat(router.getConnection()).isSameAs(primaryConnection);
+        }
+        assertThat(router.getConnection()).isSameAs(replicaConnection);
+    }
+
+    @Test
+    void closingANestedPinKeepsTheOuterOne() throws SQLException {
+        replicaLagIs(0);
+        ReplicaRoutingDataSource.usePrimary(true);
+
+        try (ReplicaRoutingDataSource.PrimaryPin ignored = ReplicaRoutingDataSource.pinToPrimary()) {
+            assertThat(router.getConnection()).isSameAs(primaryConnection);
+        }
+        assertThat(router.getConnection()).isSameAs(primaryConnection);
+    }
+
+    private void replicaLagIs(long lagMs) throws SQLException {
+        when(replicaLag.getLong(1)).thenReturn(lagMs);
+        router.checkReplicas();
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.bookexchange.controller;
+
+import com.example.bookexchange.model.entity.Book;
+import com.example.bookexchange.model.entity.BookMatch;
+import com.example.bookexchange.model.entity.Chat;
+import com.example.bookexchange.model.entity.Exchange;
+import com.example.bookexchange.model.entity.User;
+import com.example.bookexchange.model.enums.ExchangeStatus;
+import com.example.bookexchange.repository.BookMatchRepository;
+import com.example.bookexchange.repository.BookRepository;
+import com.example.bookexchange.repository.ChatRepository;
+import com.example.bookexchange.repository.ExchangeRepository;
+import com.example.bookexchange.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.util.UUID;
+
+import static com.example.bookexchange.support.QueryCountMatchers.statements;
+import static com.example.bookexchange.support.QueryCountMatchers.statementsAtMost;
+import static com.example.bookexchange.support.QueryCountMatchers.withinStatementBudget;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Guards the list endpoints against N+1 regressions: each one is called for a user with one
+ * row and for a user with many, and must issue the same number of statements, within the
+ * {@link com.example.bookexchange.config.StatementBudget} declared on its handler.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:statement-budget;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.sql.init.mode=never"
+})
+@AutoConfigureMockMvc
+class StatementBudgetTest {
+    private static final int FEW = 1;
+    private static final int MANY = 20;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookMatchRepository matchRepository;
+
+    @Autowired
+    private ExchangeRepository exchangeRepository;
+
+    @Autowired
+    private ChatRepository chatRepository;
+
+    @Test
+    void matchListIsIndependentOfMatchCount() throws Exception {
+        assertConstantStatements("/api/matches", this::userWithMatches);
+    }
+
+    @Test
+    void activeExchangeListIsIndependentOfExchangeCount() throws Exception {
+        assertConstantStatements("/api/exchanges/active", count -> userWithExchanges(count, ExchangeStatus.PROPOSED));
+    }
+
+    @Test
+    void exchangeHistoryIsIndependentOfExchangeCount() throws Exception {
+        assertConstantStatements("/api/exchanges/history", count -> userWithExchanges(count, ExchangeStatus.COMPLETED));
+    }
+
+    @Test
+    void exchangeListsCarryTheChatId() throws Exception {
+        User active = userWithExchanges(FEW, ExchangeStatus.PROPOSED);
+        User completed = userWithExchanges(FEW, ExchangeStatus.COMPLETED);
+
+        mockMvc.perform(get("/api/exchanges/active").with(as(active)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(FEW)))
+                .andExpect(jsonPath("$[*].chatId", everyItem(notNullValue())));
+        mockMvc.perform(get("/api/exchanges/history").with(as(completed)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(FEW)))
+                .andExpect(jsonPath("$[*].chatId", everyItem(notNullValue())));
+    }
+
+    @Test
+    void bookListIsIndependentOfCatalogSize() throws Exception {
+        User reader = userRepository.save(newUser());
+        for (int i = 0; i < MANY; i++) {
+            bookRepository.save(newBook(userRepository.save(newUser())));
+        }
+
+        mockMvc.perform(get("/api/books").with(as(reader)))
+                .andExpect(status().isOk())
+                .andExpect(statementsAtMost(1))
+                .andExpect(withinStatementBudget());
+    }
+
+    private void assertConstantStatements(String uri, Seeder seeder) throws Exception {
+        MvcResult few = mockMvc.perform(get(uri).with(as(seeder.seed(FEW))))
+                .andExpect(status().isOk())
+                .andExpect(withinStatementBudget())
+                .andReturn();
+        MvcResult many = mockMvc.perform(get(uri).with(as(seeder.seed(MANY))))
+                .andExpect(status().isOk())
+                .andExpect(withinStatementBudget())
+                .andReturn();
+
+        assertThat(statements(many))
+                .as("statements for %d rows vs %d rows", MANY, FEW)
+                .isEqualTo(statements(few));
+    }
+
+    private User userWithMatches(int count) {
+        User user = userRepository.save(newUser());
+        for (int i = 0; i < count; i++) {
+            BookMatch match = new BookMatch();
+            match.setUser(user);
+            match.setInterestedInBook(bookRepository.save(newBook(userRepository.save(newUser()))));
+            matchRepository.save(match);
+        }
+        return user;
+    }
+
+    private User userWithExchanges(int count, ExchangeStatus status) {
+        User user = userRepository.save(newUser());
+        for (int i = 0; i < count; i++) {
+            User partner = userRepository.save(newUser());
+            Exchange exchange = new Exchange();
+            exchange.setUser1(user);
+            exchange.setUser2(partner);
+            exchange.setBook1(bookRepository.save(newBook(partner)));
+            exchange.setBook2(bookRepository.save(newBook(user)));
+            exchange.setStatus(status);
+            exchange = exchangeRepository.save(exchange);
+            Chat chat = new Chat();
+            chat.setUser1(user);
+            chat.setUser2(partner);
+            chat.setExchange(exchange);
+            chatRepository.save(chat);
+        }
+        return user;
+    }
+
+    private static RequestPostProcessor as(User user) {
+        return jwt().jwt(token -> token
+                .claim("user_id", user.getId().toString())
+                .claim("preferred_username", user.getUsername()));
+    }
+
+    private static User newUser() {
+        String name = UUID.randomUUID().toString();
+        User user = new User();
+        user.setKeycloakId(name);
+        user.setUsername(name);
+        user.setEmail(name + "@example.com");
+        user.setPassword("n/a");
+        user.setCountry("Spain");
+        user.setCity("Madrid");
+        user.setProfilePicture("/default-avatar.png");
+        return user;
+    }
+
+    private static Book newBook(User owner) {
+        Book book = new Book();
+        book.setTitle("Title");
+        book.setAuthor("Author");
+        book.setPictureUrl("/cover.png");
+        book.setOwner(owner);
+        return book;
+    }
+
+    @FunctionalInterface
+    private interface Seeder {
+        User seed(int count);
+    }
+}
@@ -0,0 +1,430 @@
+package com.example.bookexchange.loadtest;
+
+import com.example.bookexchange.model.entity.Book;
+import com.example.bookexchange.model.entity.User;
+import com.example.bookexchange.repository.BookRepository;
+import com.example.bookexchange.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Boots the whole application against H2 in PostgreSQL mode, with {@link LocalJwtIssuer}
+ * replacing Keycloak, and drives the book, match, exchange and chat endpoints with a mixed
+ * open-model workload. Per-endpoint histograms are printed and written to
+ * target/loadtest-report.json; the run fails when an endpoint misses the thresholds in
+ * loadtest/thresholds.properties.
+ *
+ * Run with {@code mvn -Ploadtest test}. Tunables (system properties): loadtest.durationSeconds,
+ * loadtest.warmupSeconds, loadtest.arrivals (constant|poisson), loadtest.rateScale and
+ * loadtest.rate.&lt;scenario&gt; for books.list, books.page, books.create, matches.create,
+ * matches.list, exchanges.flow and chat.send.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:loadtest;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.sql.init.mode=never",
+        "logging.level.com.example.bookexchange=INFO"
+})
+@Import(EndpointLoadTest.LocalIssuerConfig.class)
+class EndpointLoadTest {
+    private static final LocalJwtIssuer ISSUER = new LocalJwtIssuer();
+    private static final int CATALOG_USERS = 200;
+    private static final int BOOKS_PER_USER = 10;
+    private static final int CHATS = 25;
+    private static final Pattern MESSAGE_CONTENT = Pattern.compile("\"content\":\"(lt-\\d+)\"");
+
+    @TestConfiguration
+    static class LocalIssuerConfig {
+        @Bean
+        JwtDecoder jwtDecoder() {
+            return ISSUER.decoder();
+        }
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+    private final Map<String, Double> expectedRates = new LinkedHashMap<>();
+    private final List<Stream<String>> subscriptions = new ArrayList<>();
+
+    // Seeded fixtures
+    private final List<Participant> catalogUsers = new ArrayList<>();
+    private final List<long[]> catalogBooks = new ArrayList<>();
+    private final List<Participant[]> flowPairs = new ArrayList<>();
+    private final List<long[]> flowBooks = new ArrayList<>();
+    private final AtomicInteger nextFlow = new AtomicInteger();
+    private final AtomicLong nextMatchPair = new AtomicLong();
+    private final List<long[]> chats = new ArrayList<>();
+    private final Map<String, Long> undelivered = new ConcurrentHashMap<>();
+    private final AtomicLong nextMessage = new AtomicLong();
+
+    private record Participant(Long id, String token) {
+    }
+
+    @AfterEach
+    void closeSubscriptions() {
+        subscriptions.forEach(Stream::close);
+    }
+
+    @Test
+    void endpointsMeetLatencyThresholds() throws Exception {
+        Properties thresholds = load("loadtest/thresholds.properties");
+        int warmupSeconds = Integer.getInteger("loadtest.warmupSeconds", 10);
+        int durationSeconds = Integer.getInteger("loadtest.durationSeconds", 30);
+        boolean poisson = "poisson".equals(System.getProperty("loadtest.arrivals", "constant"));
+
+        double flowRate = rate("exchanges.flow", 5);
+        List<OpenModelDriver.Scenario> scenarios = List.of(
+                scenario("books.list", rate("books.list", 50), this::listBooks),
+                scenario("books.page", rate("books.page", 50), this::pageBooks),
+                scenario("books.create", rate("books.create", 20), this::createBook),
+                scenario("matches.create", rate("matches.create", 30), this::createMatch),
+                scenario("matches.list", rate("matches.list", 30), this::listMatches),
+                new OpenModelDriver.Scenario("exchanges.flow", flowRate, this::exchangeFlow),
+                scenario("chat.send", rate("chat.send", 50), this::sendChatMessage));
+        endpoint("exchanges.match", flowRate * 2);
+        endpoint("exchanges.create", flowRate);
+        endpoint("exchanges.meetup", flowRate);
+        endpoint("exchanges.confirm", flowRate * 2);
+        endpoint("chat.delivery", rate("chat.send", 50));
+
+        seed((int) Math.ceil(flowRate * (warmupSeconds + durationSeconds) * 1.2) + CHATS);
+        openChats();
+
+        OpenModelDriver driver = new OpenModelDriver(poisson, 5_000);
+        driver.run(scenarios, Duration.ofSeconds(warmupSeconds).toNanos());
+        histograms.values().forEach(LatencyHistogram::reset);
+        undelivered.clear();
+
+        driver.run(scenarios, Duration.ofSeconds(durationSeconds).toNanos());
+        // Live delivery is asynchronous; give the last messages a moment to arrive
+        Thread.sleep(1_000);
+        undelivered.values().forEach(sent -> histograms.get("chat.delivery").record(System.nanoTime() - sent, false));
+
+        List<String> violations = report(durationSeconds, thresholds);
+        if (driver.dropped() > 0) {
+            violations.add(driver.dropped() + " arrivals dropped because too many requests were in flight");
+        }
+        assertThat(violations).as("load test thresholds").isEmpty();
+    }
+
+    // ---- scenarios -------------------------------------------------------------------------
+
+    private void listBooks(long scheduled) {
+        call("books.list", scheduled, get("/api/books", randomCatalogUser()), 200);
+    }
+
+    private void pageBooks(long scheduled) {
+        call("books.page", scheduled, get("/api/books/page?size=20", randomCatalogUser()), 200);
+    }
+
+    private void createBook(long scheduled) {
+        String body = "{\"title\":\"Load Test Edition\",\"author\":\"A. Writer\","
+                + "\"description\":\"Created by the load test\",\"pictureUrl\":\"https://cdn.example.com/lt.jpg\"}";
+        call("books.create", scheduled, post("/api/books", randomCatalogUser(), body), 201);
+    }
+
+    // Every arrival matches a (user, book) pair that has not been matched before
+    private void createMatch(long scheduled) {
+        long k = nextMatchPair.getAndIncrement();
+        int user = (int) (k % CATALOG_USERS);
+        int offset = 1 + (int) ((k / CATALOG_USERS) % (CATALOG_USERS - 1));
+        int owner = (user + offset) % CATALOG_USERS;
+        int book = (int) ((k / ((long) CATALOG_USERS * (CATALOG_USERS - 1))) % BOOKS_PER_USER);
+        String body = "{\"bookId\":" + catalogBooks.get(owner)[book] + "}";
+        call("matches.create", scheduled, post("/api/matches", catalogUsers.get(user), body), 201);
+    }
+
+    private void listMatches(long scheduled) {
+        call("matches.list", scheduled, get("/api/matches", randomCatalogUser()), 200);
+    }
+
+    // Two users match each other's books, then propose, arrange, and both confirm
+    private void exchangeFlow(long scheduled) {
+        int flow = nextFlow.getAndIncrement();
+        if (flow >= flowPairs.size() - CHATS) {
+            histograms.get("exchanges.match").record(0, false);
+            return;
+        }
+        runExchangeFlow(flow, scheduled, true);
+    }
+
+    private JsonNode runExchangeFlow(int flow, long scheduled, boolean complete) {
+        Participant a = flowPairs.get(flow)[0];
+        Participant b = flowPairs.get(flow)[1];
+        long bookOfA = flowBooks.get(flow)[0];
+        long bookOfB = flowBooks.get(flow)[1];
+
+        JsonNode match = call("exchanges.match", scheduled,
+                post("/api/matches", a, "{\"bookId\":" + bookOfB + "}"), 201);
+        if (match == null || call("exchanges.match", System.nanoTime(),
+                post("/api/matches", b, "{\"bookId\":" + bookOfA + "}"), 201) == null) {
+            return null;
+        }
+        JsonNode exchange = call("exchanges.create", System.nanoTime(),
+                post("/api/exchanges", a, "{\"matchId\":" + match.get("id").asLong() + "}"), 201);
+        if (exchange == null || !complete) {
+            return exchange;
+        }
+        long exchangeId = exchange.get("id").asLong();
+        String meetup = "{\"exchangeId\":" + exchangeId + ",\"meetupDateTime\":\""
+                + LocalDateTime.now().plusDays(1).withNano(0) + "\",\"meetupLocation\":\"Central Library\"}";
+        if (call("exchanges.meetup", System.nanoTime(), put("/api/exchanges/meetup", a, meetup), 200) == null
+                || call("exchanges.confirm", System.nanoTime(),
+                post("/api/exchanges/" + exchangeId + "/confirm", a, ""), 200) == null) {
+            return null;
+        }
+        return call("exchanges.confirm", System.nanoTime(),
+                post("/api/exchanges/" + exchangeId + "/confirm", b, ""), 200);
+    }
+
+    // Measures both the send call and the time until the message reaches the open SSE stream
+    private void sendChatMessage(long scheduled) {
+        long[] chat = chats.get(ThreadLocalRandom.current().nextInt(chats.size()));
+        Participant sender = flowPairs.get((int) chat[1])[ThreadLocalRandom.current().nextInt(2)];
+        String content = "lt-" + nextMessage.getAndIncrement();
+        undelivered.put(content, scheduled);
+        if (call("chat.send", scheduled, post("/api/chats/" + chat[0] + "/messages", sender,
+                "{\"content\":\"" + content + "\"}"), 202) == null) {
+            undelivered.remove(content);
+        }
+    }
+
+    // ---- fixtures --------------------------------------------------------------------------
+
+    private void seed(int flows) {
+        for (int u = 0; u < CATALOG_USERS; u++) {
+            User user = userRepository.save(newUser("catalog" + u));
+            catalogUsers.add(new Participant(user.getId(), token(user)));
+            List<Book> books = new ArrayList<>();
+            for (int i = 0; i < BOOKS_PER_USER; i++) {
+                books.add(newBook(user, "Catalog book " + u + "-" + i));
+            }
+            catalogBooks.add(bookRepository.saveAll(books).stream().mapToLong(Book::getId).toArray());
+        }
+        for (int f = 0; f < flows; f++) {
+            User a = userRepository.save(newUser("flow" + f + "a"));
+            User b = userRepository.save(newUser("flow" + f + "b"));
+            flowPairs.add(new Participant[]{new Participant(a.getId(), token(a)), new Participant(b.getId(), token(b))});
+            flowBooks.add(new long[]{bookRepository.save(newBook(a, "Flow book " + f + "a")).getId(),
+                    bookRepository.save(newBook(b, "Flow book " + f + "b")).getId()});
+        }
+    }
+
+    // The last CHATS flow pairs get an exchange with a chat and one live subscriber each
+    private void openChats() throws Exception {
+        for (int flow = flowPairs.size() - CHATS; flow < flowPairs.size(); flow++) {
+            JsonNode exchange = runExchangeFlow(flow, System.nanoTime(), false);
+            assertThat(exchange).as("setting up chat %d", flow).isNotNull();
+            long chatId = exchange.get("chatId").asLong();
+            chats.add(new long[]{chatId, flow});
+
+            HttpResponse<Stream<String>> response = client.send(
+                    request("/api/chats/" + chatId + "/events", flowPairs.get(flow)[0]).GET().build(),
+                    HttpResponse.BodyHandlers.ofLines());
+            assertThat(response.statusCode()).isEqualTo(200);
+            Stream<String> lines = response.body();
+            subscriptions.add(lines);
+            Thread.ofVirtual().start(() -> lines.forEach(this::onEventLine));
+        }
+        histograms.values().forEach(LatencyHistogram::reset);
+    }
+
+    private void onEventLine(String line) {
+        if (!line.startsWith("data:")) {
+            return;
+        }
+        Matcher matcher = MESSAGE_CONTENT.matcher(line);
+        if (matcher.find()) {
+            Long sent = undelivered.remove(matcher.group(1));
+            if (sent != null) {
+                histograms.get("chat.delivery").record(System.nanoTime() - sent, true);
+            }
+        }
+    }
+
+    private static User newUser(String username) {
+        User user = new User();
+        user.setKeycloakId(username + "-id");
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPassword("unused");
+        user.setCountry("Portugal");
+        user.setCity("Lisbon");
+        user.setProfilePicture("/default-avatar.png");
+        return user;
+    }
+
+    private static Book newBook(User owner, String title) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthor("Seed Author");
+        book.setDescription("Seeded for the load test");
+        book.setPictureUrl("https://cdn.example.com/seed.jpg");
+        book.setOwner(owner);
+        return book;
+    }
+
+    private static String token(User user) {
+        return ISSUER.mint(user.getId(), user.getUsername(), Duration.ofHours(2));
+    }
+
+    private Participant randomCatalogUser() {
+        return catalogUsers.get(ThreadLocalRandom.current().nextInt(catalogUsers.size()));
+    }
+
+    // ---- HTTP and reporting ----------------------------------------------------------------
+
+    private OpenModelDriver.Scenario scenario(String name, double rate, OpenModelDriver.Arrival arrival) {
+        endpoint(name, rate);
+        return new OpenModelDriver.Scenario(name, rate, arrival);
+    }
+
+    private void endpoint(String name, double expectedRate) {
+        histograms.put(name, new LatencyHistogram(name));
+        expectedRates.put(name, expectedRate);
+    }
+
+    private static double rate(String scenario, double defaultRate) {
+        double scale = Double.parseDouble(System.getProperty("loadtest.rateScale", "1.0"));
+        return Double.parseDouble(System.getProperty("loadtest.rate." + scenario, String.valueOf(defaultRate))) * scale;
+    }
+
+    private HttpRequest.Builder request(String path, Participant user) {
+        // The servlet context path is /api and controllers are mapped under /api as well
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api" + path))
+                .header("Authorization", "Bearer " + user.token())
+                .timeout(Duration.ofSeconds(30));
+    }
+
+    private HttpRequest get(String path, Participant user) {
+        return request(path, user).GET().build();
+    }
+
+    private HttpRequest post(String path, Participant user, String json) {
+        return request(path, user).header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)).build();
+    }
+
+    private HttpRequest put(String path, Participant user, String json) {
+        return request(path, user).header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(json)).build();
+    }
+
+    // Records the latency from the scheduled start; returns the parsed body, or null on failure
+    private JsonNode call(String endpoint, long scheduled, HttpRequest request, int expectedStatus) {
+        LatencyHistogram histogram = histograms.get(endpoint);
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            boolean success = response.statusCode() == expectedStatus;
+            histogram.record(System.nanoTime() - scheduled, success);
+            if (!success) {
+                return null;
+            }
+            return response.body().isEmpty() ? objectMapper.createObjectNode() : objectMapper.readTree(response.body());
+        } catch (IOException e) {
+            histogram.record(System.nanoTime() - scheduled, false);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private List<String> report(int seconds, Properties thresholds) throws IOException {
+        List<String> violations = new ArrayList<>();
+        StringBuilder console = new StringBuilder(System.lineSeparator());
+        for (LatencyHistogram histogram : histograms.values()) {
+            String name = histogram.getEndpoint();
+            console.append(histogram.render(seconds));
+
+            double p99Limit = threshold(thresholds, name, "p99Ms");
+            double errorLimit = threshold(thresholds, name, "maxErrorRate");
+            double minRatio = threshold(thresholds, name, "minThroughputRatio");
+            double throughput = histogram.count() / (double) seconds;
+            if (histogram.percentileMs(0.99) > p99Limit) {
+                violations.add(String.format("%s p99 %.2fms exceeds %.0fms", name, histogram.percentileMs(0.99), p99Limit));
+            }
+            if (histogram.errorRate() > errorLimit) {
+                violations.add(String.format("%s error rate %.4f exceeds %.4f", name, histogram.errorRate(), errorLimit));
+            }
+            if (throughput < expectedRates.get(name) * minRatio) {
+                violations.add(String.format("%s served %.1f req/s, below %.0f%% of the %.1f req/s target",
+                        name, throughput, minRatio * 100, expectedRates.get(name)));
+            }
+        }
+        System.out.println(console);
+
+        Path report = Path.of("target", "loadtest-report.json");
+        Files.createDirectories(report.getParent());
+        Files.writeString(report, histograms.values().stream()
+                .map(histogram -> histogram.toJson(seconds))
+                .collect(Collectors.joining(",\n  ", "[\n  ", "\n]\n")));
+        return violations;
+    }
+
+    private static double threshold(Properties thresholds, String endpoint, String key) {
+        return Double.parseDouble(thresholds.getProperty(endpoint + "." + key, thresholds.getProperty("default." + key)));
+    }
+
+    private static Properties load(String resource) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = EndpointLoadTest.class.getClassLoader().getResourceAsStream(resource)) {
+            properties.load(in);
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.bookexchange.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency distribution for one endpoint. Keeps every sample so percentiles are exact at
+ * load-test volumes, plus fixed buckets for a readable histogram.
+ */
+public class LatencyHistogram {
+    // Upper bucket bounds in microseconds; the last bucket is open-ended
+    private static final long[] BOUNDS_MICROS = {
+            500, 1_000, 2_000, 5_000, 10_000, 20_000, 50_000, 100_000, 200_000, 500_000, 1_000_000, 2_000_000};
+
+    private final String endpoint;
+    private final LongAdder[] buckets = new LongAdder[BOUNDS_MICROS.length + 1];
+    private final LongAdder errors = new LongAdder();
+    private long[] samples = new long[1024];
+    private int count;
+
+    public LatencyHistogram(String endpoint) {
+        this.endpoint = endpoint;
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public void record(long latencyNanos, boolean success) {
+        long micros = latencyNanos / 1_000;
+        int bucket = Arrays.binarySearch(BOUNDS_MICROS, micros);
+        buckets[bucket >= 0 ? bucket : -bucket - 1].increment();
+        if (!success) {
+            errors.increment();
+        }
+        synchronized (this) {
+            if (count == samples.length) {
+                samples = Arrays.copyOf(samples, count * 2);
+            }
+            samples[count++] = micros;
+        }
+    }
+
+    public synchronized void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        errors.reset();
+        count = 0;
+    }
+
+    public synchronized long count() {
+        return count;
+    }
+
+    public long errors() {
+        return errors.sum();
+    }
+
+    public double errorRate() {
+        long total = count();
+        return total == 0 ? 0 : (double) errors() / total;
+    }
+
+    public synchronized double percentileMs(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000.0;
+    }
+
+    public Map<String, Long> buckets() {
+        Map<String, Long> rendered = new LinkedHashMap<>();
+        for (int i = 0; i < buckets.length; i++) {
+            String label = i < BOUNDS_MICROS.length
+                    ? "<=" + formatMs(BOUNDS_MICROS[i]) + "ms"
+                    : ">" + formatMs(BOUNDS_MICROS[BOUNDS_MICROS.length - 1]) + "ms";
+            rendered.put(label, buckets[i].sum());
+        }
+        return rendered;
+    }
+
+    public String render(double seconds) {
+        StringBuilder out = new StringBuilder(String.format(Locale.ROOT,
+                "%-22s %8d req %8.1f req/s  p50 %8.2fms  p99 %8.2fms  max %8.2fms  errors %d%n",
+                endpoint, count(), count() / seconds, percentileMs(0.50), percentileMs(0.99),
+                percentileMs(1.0), errors()));
+        long total = Math.max(1, count());
+        buckets().forEach((label, n) -> {
+            if (n > 0) {
+                out.append(String.format(Locale.ROOT, "    %-10s %8d %s%n",
+                        label, n, "#".repeat((int) Math.ceil(40.0 * n / total))));
+            }
+        });
+        return out.toString();
+    }
+
+    public String toJson(double seconds) {
+        StringBuilder histogram = new StringBuilder();
+        buckets().forEach((label, n) -> histogram.append(histogram.length() == 0 ? "" : ",")
+                .append('"').append(label).append("\":").append(n));
+        return String.format(Locale.ROOT,
+                "{\"endpoint\":\"%s\",\"requests\":%d,\"throughput\":%.1f,\"p50Ms\":%.2f,\"p99Ms\":%.2f,"
+                        + "\"maxMs\":%.2f,\"errors\":%d,\"histogram\":{%s}}",
+                endpoint, count(), count() / seconds, percentileMs(0.50), percentileMs(0.99),
+                percentileMs(1.0), errors(), histogram);
+    }
+
+    private static String formatMs(long micros) {
+        return micros % 1_000 == 0 ? String.valueOf(micros / 1_000) : String.valueOf(micros / 1_000.0);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.bookexchange.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model workload: each scenario starts new work at its target arrival rate no matter
+ * how long earlier requests take, so a slow server builds a queue instead of quietly
+ * slowing the load down. Latency is measured from the scheduled arrival time, which keeps
+ * queueing delay in the numbers (no coordinated omission).
+ */
+public class OpenModelDriver {
+
+    /** One unit of work; receives the scheduled start so multi-step flows can measure from it. */
+    @FunctionalInterface
+    public interface Arrival {
+        void run(long scheduledNanos) throws Exception;
+    }
+
+    public record Scenario(String name, double ratePerSecond, Arrival arrival) {
+    }
+
+    private final boolean poisson;
+    private final int maxInFlight;
+    private final LongAdder dropped = new LongAdder();
+
+    public OpenModelDriver(boolean poisson, int maxInFlight) {
+        this.poisson = poisson;
+        this.maxInFlight = maxInFlight;
+    }
+
+    // Runs all scenarios concurrently for the given time and waits for in-flight work to finish
+    public void run(List<Scenario> scenarios, long durationNanos) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Thread> dispatchers = new ArrayList<>();
+            long start = System.nanoTime();
+            for (Scenario scenario : scenarios) {
+                if (scenario.ratePerSecond() <= 0) {
+                    continue;
+                }
+                dispatchers.add(Thread.ofPlatform().name("load-" + scenario.name()).start(() ->
+                        dispatch(scenario, start, start + durationNanos, workers, inFlight)));
+            }
+            for (Thread dispatcher : dispatchers) {
+                dispatcher.join();
+            }
+            workers.shutdown();
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    // Arrivals the driver could not start because maxInFlight was reached; counted as failures
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    private void dispatch(Scenario scenario, long start, long end, ExecutorService workers, Semaphore inFlight) {
+        SplittableRandom random = new SplittableRandom(scenario.name().hashCode());
+        double meanGapNanos = 1_000_000_000.0 / scenario.ratePerSecond();
+        double next = start;
+        while (next < end) {
+            long scheduled = (long) next;
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (inFlight.tryAcquire()) {
+                workers.execute(() -> {
+                    try {
+                        scenario.arrival().run(scheduled);
+                    } catch (Exception e) {
+                        // Scenarios record their own failures
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            } else {
+                dropped.increment();
+            }
+            next += poisson ? -Math.log(1.0 - random.nextDouble()) * meanGapNanos : meanGapNanos;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.bookexchange.repository;
+
+import com.example.bookexchange.model.entity.Book;
+import com.example.bookexchange.model.entity.Exchange;
+import com.example.bookexchange.model.entity.User;
+import com.example.bookexchange.model.enums.ExchangeStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:exchange-transitions;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.sql.init.mode=never"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ExchangeTransitionConcurrencyTest {
+    private static final int ROUNDS = 25;
+    private static final int THREADS = 16;
+
+    @Autowired
+    private ExchangeRepository exchangeRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void concurrentConfirmationsCompleteExactlyOnce() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            Long exchangeId = createExchange(ExchangeStatus.MEETUP_ARRANGED);
+            AtomicInteger completions = new AtomicInteger();
+
+            runConcurrently(i -> {
+                Integer completed = transactionTemplate.execute(status -> {
+                    if (i % 2 == 0) {
+                        exchangeRepository.confirmByUser1(exchangeId, ExchangeStatus.MEETUP_ARRANGED);
+                    } else {
+                        exchangeRepository.confirmByUser2(exchangeId, ExchangeStatus.MEETUP_ARRANGED);
+                    }
+                    return exchangeRepository.completeIfConfirmed(exchangeId,
+                            ExchangeStatus.sourcesOf(ExchangeStatus.COMPLETED), ExchangeStatus.COMPLETED);
+                });
+                completions.addAndGet(completed);
+            });
+
+            Exchange exchange = exchangeRepository.findById(exchangeId).orElseThrow();
+            assertThat(completions.get()).isEqualTo(1);
+            assertThat(exchange.getStatus()).isEqualTo(ExchangeStatus.COMPLETED);
+            assertThat(exchange.isUser1Confirmed()).isTrue();
+            assertThat(exchange.isUser2Confirmed()).isTrue();
+        }
+    }
+
+    @Test
+    void confirmAndCancelRaceEndsInExactlyOneTerminalState() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            Long exchangeId = createExchange(ExchangeStatus.MEETUP_ARRANGED);
+            AtomicInteger completions = new AtomicInteger();
+            AtomicInteger cancellations = new AtomicInteger();
+
+            runConcurrently(i -> transactionTemplate.executeWithoutResult(status -> {
+                switch (i % 3) {
+                    case 0 -> exchangeRepository.confirmByUser1(exchangeId, ExchangeStatus.MEETUP_ARRANGED);
+                    case 1 -> exchangeRepository.confirmByUser2(exchangeId, ExchangeStatus.MEETUP_ARRANGED);
+                    default -> cancellations.addAndGet(exchangeRepository.cancel(exchangeId,
+                            ExchangeStatus.sourcesOf(ExchangeStatus.CANCELLED), ExchangeStatus.CANCELLED));
+                }
+                completions.addAndGet(exchangeRepository.completeIfConfirmed(exchangeId,
+                        ExchangeStatus.sourcesOf(ExchangeStatus.COMPLETED), ExchangeStatus.COMPLETED));
+            }));
+
+            Exchange exchange = exchangeRepository.findById(exchangeId).orElseThrow();
+            assertThat(completions.get() + cancellations.get()).isEqualTo(1);
+            if (exchange.getStatus() == ExchangeStatus.COMPLETED) {
+                assertThat(completions.get()).isEqualTo(1);
+            } else {
+                assertThat(exchange.getStatus()).isEqualTo(ExchangeStatus.CANCELLED);
+                assertThat(cancellations.get()).isEqualTo(1);
+            }
+        }
+    }
+
+    @Test
+    void transitionsOutsideTheStateMachineAreRejected() {
+        Long exchangeId = createExchange(ExchangeStatus.PROPOSED);
+
+        Integer confirmed = transactionTemplate.execute(status ->
+                exchangeRepository.confirmByUser1(exchangeId, ExchangeStatus.MEETUP_ARRANGED));
+        assertThat(confirmed).isZero();
+        assertThat(ExchangeStatus.COMPLETED.nextStates()).isEmpty();
+        assertThat(ExchangeStatus.sourcesOf(ExchangeStatus.MEETUP_ARRANGED)).isEqualTo(Set.of(ExchangeStatus.PROPOSED));
+    }
+
+    private void runConcurrently(IndexedTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                int index = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(index);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Long createExchange(ExchangeStatus status) {
+        return transactionTemplate.execute(tx -> {
+            User user1 = userRepository.save(newUser());
+            User user2 = userRepository.save(newUser());
+            Book book1 = bookRepository.save(newBook(user1));
+            Book book2 = bookRepository.save(newBook(user2));
+
+            Exchange exchange = new Exchange();
+            exchange.setUser1(user1);
+            exchange.setUser2(user2);
+            exchange.setBook1(book1);
+            exchange.setBook2(book2);
+            exchange.setStatus(status);
+            return exchangeRepository.save(exchange).getId();
+        });
+    }
+
+    private static User newUser() {
+        String name = UUID.randomUUID().toString();
+        User user = new User();
+        user.setKeycloakId(name);
+        user.setUsername(name);
+        user.setEmail(name + "@example.com");
+        user.setPassword("n/a");
+        user.setCountry("Spain");
+        user.setCity("Madrid");
+        user.setProfilePicture("/default-avatar.png");
+        return user;
+    }
+
+    private static Book newBook(User owner) {
+        Book book = new Book();
+        book.setTitle("Title");
+        book.setAuthor("Author");
+        book.setPictureUrl("/cover.png");
+        book.setOwner(owner);
+        return book;
+    }
+
+    @FunctionalInterface
+    private interface IndexedTask {
+        void run(int index) throws Exception;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.model.entity.Book;
+import com.example.bookexchange.repository.BookRepository;
+import com.example.bookexchange.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.example.bookexchange.service.BookCounterService.Counter.LIKES;
+import static com.example.bookexchange.support.TestEntities.newBook;
+import static com.example.bookexchange.support.TestEntities.newUser;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * One book liked from many threads while flushes (and the sweeps of drained adders that
+ * ride on them) run alongside: every increment lands exactly once, and no read counts a
+ * folded batch twice on the way.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:book-counters;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.sql.init.mode=never",
+        // The test drives the flushes itself
+        "bookexchange.counters.flush-interval-ms=3600000"
+})
+class BookCounterServiceTest {
+    private static final int WRITERS = 8;
+    private static final int INCREMENTS_PER_WRITER = 500;
+    private static final long TOTAL = (long) WRITERS * INCREMENTS_PER_WRITER;
+
+    @Autowired
+    private BookCounterService bookCounterService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void hammeringOneBookAcrossFlushesKeepsTheExactTotal() throws Exception {
+        Long bookId = bookRepository.save(newBook(userRepository.save(newUser()))).getId();
+
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int i = 0; i < WRITERS; i++) {
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    for (int n = 0; n < INCREMENTS_PER_WRITER; n++) {
+                        transactionTemplate.executeWithoutResult(status -> bookCounterService.increment(LIKES, bookId));
+                    }
+                    return null;
+                }));
+            }
+            Future<Long> flusher = executor.submit(() -> {
+                start.await();
+                long flushes = 0;
+                while (writing.get()) {
+                    bookCounterService.flush();
+                    flushes++;
+                    // Stored first, so a batch folded in between can only be missed, never counted twice
+                    long visible = likeCount(bookId) + bookCounterService.pending(LIKES, bookId);
+                    assertThat(visible).isLessThanOrEqualTo(TOTAL);
+                }
+                return flushes;
+            });
+
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+            assertThat(flusher.get(60, TimeUnit.SECONDS)).isPositive();
+        } finally {
+            executor.shutdownNow();
+        }
+        // Enough flushes to be sure at least one sweep of drained adders has run
+        for (int i = 0; i < 60; i++) {
+            bookCounterService.flush();
+        }
+
+        assertThat(likeCount(bookId)).isEqualTo(TOTAL);
+        assertThat(bookCounterService.pending(LIKES, bookId)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM book_counter_deltas", Long.class)).isZero();
+    }
+
+    private long likeCount(Long bookId) {
+        Book book = bookRepository.findById(bookId).orElseThrow();
+        return book.getLikeCount();
+    }
+}
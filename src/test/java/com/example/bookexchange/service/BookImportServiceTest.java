@@ -0,0 +1,108 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.exception.BadRequestException;
+import com.example.bookexchange.exception.ResourceNotFoundException;
+import com.example.bookexchange.model.dto.response.BookImportResponse;
+import com.example.bookexchange.model.entity.User;
+import com.example.bookexchange.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static com.example.bookexchange.support.TestEntities.newUser;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:book-import;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.sql.init.mode=never",
+        // Small chunks so every import below spans more than one
+        "bookexchange.import.chunk-size=2"
+})
+class BookImportServiceTest {
+    @Autowired
+    private BookImportService bookImportService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void csvImportHandlesQuotingBlankLinesAndBadRows() {
+        User owner = userRepository.save(newUser());
+        String csv = String.join("\n",
+                "Title,Author,PictureUrl,Description",
+                "\"Dune, Part 1\",Frank Herbert,/dune.png,\"A \"\"desert\"\" planet\"",
+                "",
+                ",Nobody,/none.png,",
+                "Emma,Jane Austen,/emma.png,\"Two",
+                "lines\"",
+                "Solo,Author Only",
+                "Persuasion,Jane Austen,/persuasion.png,",
+                "");
+
+        BookImportResponse response = bookImportService.importBooks(owner.getId(), BookImportService.CSV, body(csv));
+
+        assertThat(response.getReceived()).isEqualTo(5);
+        assertThat(response.getImported()).isEqualTo(3);
+        assertThat(response.getFailed()).isEqualTo(2);
+        assertThat(response.getErrors())
+                .extracting(BookImportResponse.RowError::getLine, BookImportResponse.RowError::getMessage)
+                .containsExactly(
+                        tuple(4L, "Title is required"),
+                        tuple(7L, "Picture URL is required"));
+        assertThat(jdbcTemplate.queryForList("SELECT title FROM books WHERE owner_id = ? ORDER BY id",
+                String.class, owner.getId())).containsExactly("Dune, Part 1", "Emma", "Persuasion");
+        assertThat(jdbcTemplate.queryForList("SELECT description FROM books WHERE owner_id = ? ORDER BY id",
+                String.class, owner.getId())).containsExactly("A \"desert\" planet", "Two\nlines", null);
+    }
+
+    @Test
+    void csvWithoutRequiredColumnsIsRejected() {
+        User owner = userRepository.save(newUser());
+
+        assertThatThrownBy(() -> bookImportService.importBooks(owner.getId(), BookImportService.CSV,
+                body("title,author\nDune,Herbert\n")))
+                .isInstanceOf(BadRequestException.class);
+    }
+
+    @Test
+    void ndjsonImportReportsMalformedAndInvalidLines() {
+        User owner = userRepository.save(newUser());
+        String ndjson = String.join("\n",
+                "{\"title\":\"Dune\",\"author\":\"Herbert\",\"pictureUrl\":\"/dune.png\"}",
+                "",
+                "{\"title\":",
+                "{\"title\":\"Emma\",\"pictureUrl\":\"/emma.png\"}",
+                "{\"title\":\"Persuasion\",\"author\":\"Austen\",\"pictureUrl\":\"/p.png\"}");
+
+        BookImportResponse response = bookImportService.importBooks(owner.getId(), BookImportService.NDJSON, body(ndjson));
+
+        assertThat(response.getReceived()).isEqualTo(4);
+        assertThat(response.getImported()).isEqualTo(2);
+        assertThat(response.getErrors()).extracting(BookImportResponse.RowError::getLine).containsExactly(3L, 4L);
+        assertThat(response.getErrors().get(0).getMessage()).startsWith("Malformed JSON");
+    }
+
+    @Test
+    void importForAnUnknownUserIsRejected() {
+        assertThatThrownBy(() -> bookImportService.importBooks(Long.MAX_VALUE, BookImportService.CSV,
+                body("title,author,pictureUrl\n")))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    private static InputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.repository.BookMatchRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CoOccurrenceIndexTest {
+    private static final long OVERLAP_MS = 300_000;
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    private final BookMatchRepository matchRepository = mock(BookMatchRepository.class);
+
+    @Test
+    void similarRanksBooksWantedTogetherFirst() {
+        CoOccurrenceIndex index = index(null);
+        long matchId = 0;
+        // Books 1 and 2 are wanted together by three users, 1 and 3 by one
+        for (long user = 1; user <= 3; user++) {
+            index.matchCreated(++matchId, user, 1L);
+            index.matchCreated(++matchId, user, 2L);
+        }
+        index.matchCreated(++matchId, 4L, 1L);
+        index.matchCreated(++matchId, 4L, 3L);
+
+        assertThat(index.similar(1L, 10)).containsExactly(2L, 3L);
+        assertThat(index.similar(3L, 10)).containsExactly(1L);
+        assertThat(index.similar(1L, 1)).containsExactly(2L);
+        assertThat(index.similar(99L, 10)).isEmpty();
+    }
+
+    @Test
+    void popularNeighboursAreDamped() {
+        CoOccurrenceIndex index = index(null);
+        long matchId = 0;
+        // Book 2 is wanted by everyone; book 3 only by the two users who also want book 1
+        for (long user = 1; user <= 2; user++) {
+            index.matchCreated(++matchId, user, 1L);
+            index.matchCreated(++matchId, user, 2L);
+            index.matchCreated(++matchId, user, 3L);
+        }
+        for (long user = 3; user <= 20; user++) {
+            index.matchCreated(++matchId, user, 2L);
+        }
+
+        assertThat(index.similar(1L, 10)).containsExactly(3L, 2L);
+    }
+
+    @Test
+    void recommendationsLeaveOutBooksTheUserAlreadyWants() {
+        CoOccurrenceIndex index = index(null);
+        index.matchCreated(1L, 1L, 10L);
+        index.matchCreated(2L, 1L, 11L);
+        index.matchCreated(3L, 2L, 10L);
+        index.matchCreated(4L, 2L, 12L);
+        index.matchCreated(5L, 3L, 11L);
+        index.matchCreated(6L, 3L, 13L);
+
+        assertThat(index.recommendFor(1L, 10)).containsExactlyInAnyOrder(12L, 13L);
+        assertThat(index.recommendFor(42L, 10)).isEmpty();
+    }
+
+    @Test
+    void repeatMatchesOnTheSameBookCountOnce() {
+        CoOccurrenceIndex index = index(null);
+        index.matchCreated(1L, 1L, 10L);
+        index.matchCreated(2L, 1L, 11L);
+        index.matchCreated(3L, 1L, 11L);
+        index.matchCreated(4L, 2L, 10L);
+        index.matchCreated(5L, 2L, 12L);
+        index.matchCreated(6L, 3L, 10L);
+        index.matchCreated(7L, 3L, 12L);
+
+        assertThat(index.similar(10L, 10)).containsExactly(12L, 11L);
+    }
+
+    @Test
+    void catchUpPicksUpLateCommitsWithoutCountingAnyMatchTwice() {
+        CoOccurrenceIndex index = index(null);
+        when(matchRepository.streamAllMatchSignals()).thenReturn(Stream.of(
+                signal(1L, 1L, 10L, T0),
+                signal(2L, 1L, 11L, T0.plusSeconds(10))));
+        index.warmUp();
+
+        // Match 3 was created before match 2 but committed after the first scan; the
+        // overlap brings 2 round again
+        when(matchRepository.streamMatchSignalsSince(any())).thenReturn(Stream.of(
+                signal(3L, 2L, 10L, T0.plusSeconds(5)),
+                signal(2L, 1L, 11L, T0.plusSeconds(10)),
+                signal(4L, 2L, 12L, T0.plusSeconds(20))));
+        index.catchUp();
+
+        assertThat(index.similar(10L, 10)).containsExactlyInAnyOrder(11L, 12L);
+        assertThat(index.recommendFor(1L, 10)).containsExactly(12L);
+        assertThat(index.recommendFor(2L, 10)).containsExactly(11L);
+    }
+
+    @Test
+    void catchUpSkipsMatchesThisNodeAlreadyRecorded() {
+        // With a history of one book, re-applying a match would pair its book up again
+        CoOccurrenceIndex index = index(null, 1);
+        when(matchRepository.streamAllMatchSignals()).thenReturn(Stream.empty());
+        index.warmUp();
+        index.matchCreated(1L, 2L, 10L);
+        index.matchCreated(2L, 2L, 11L);
+
+        when(matchRepository.streamAllMatchSignals()).thenReturn(Stream.of(
+                signal(1L, 2L, 10L, T0),
+                signal(2L, 2L, 11L, T0),
+                signal(3L, 3L, 10L, T0),
+                signal(4L, 3L, 12L, T0),
+                signal(5L, 4L, 10L, T0),
+                signal(6L, 4L, 12L, T0)));
+        index.catchUp();
+
+        // 12 co-occurs with 10 twice and 11 once; counting match 1 again would put 11 first
+        assertThat(index.similar(10L, 10)).containsExactly(12L, 11L);
+    }
+
+    @Test
+    void aRestoredSnapshotCatchesUpFromWhereItWasSaved(@TempDir Path dir) {
+        Path snapshot = dir.resolve("co-occurrence.snapshot");
+        CoOccurrenceIndex saved = index(snapshot);
+        when(matchRepository.streamAllMatchSignals()).thenReturn(Stream.of(
+                signal(1L, 1L, 10L, T0),
+                signal(2L, 1L, 11L, T0.plusSeconds(10))));
+        saved.warmUp();
+        saved.saveSnapshot();
+
+        when(matchRepository.streamMatchSignalsSince(T0.plusSeconds(10).minusNanos(OVERLAP_MS * 1_000_000)))
+                .thenReturn(Stream.of(
+                        signal(2L, 1L, 11L, T0.plusSeconds(10)),
+                        signal(3L, 2L, 10L, T0.plusSeconds(20)),
+                        signal(4L, 2L, 12L, T0.plusSeconds(20))));
+        CoOccurrenceIndex restored = index(snapshot);
+        restored.warmUp();
+
+        assertThat(restored.similar(10L, 10)).containsExactlyInAnyOrder(11L, 12L);
+        assertThat(restored.similar(11L, 10)).containsExactly(10L);
+        assertThat(restored.recommendFor(1L, 10)).containsExactly(12L);
+    }
+
+    private CoOccurrenceIndex index(Path snapshot) {
+        return index(snapshot, 200);
+    }
+
+    private CoOccurrenceIndex index(Path snapshot, int maxUserHistory) {
+        return new CoOccurrenceIndex(matchRepository, 50, maxUserHistory,
+                snapshot == null ? null : snapshot.toString(), OVERLAP_MS);
+    }
+
+    private static Object[] signal(Long matchId, Long userId, Long bookId, LocalDateTime createdAt) {
+        return new Object[]{matchId, userId, bookId, createdAt};
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.exception.BadRequestException;
+import com.example.bookexchange.model.entity.Book;
+import com.example.bookexchange.model.entity.Exchange;
+import com.example.bookexchange.model.entity.User;
+import com.example.bookexchange.model.enums.ExchangeStatus;
+import com.example.bookexchange.repository.BookRepository;
+import com.example.bookexchange.repository.ExchangeRepository;
+import com.example.bookexchange.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.bookexchange.support.TestEntities.newBook;
+import static com.example.bookexchange.support.TestEntities.newUser;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * The final confirmation and a cancellation racing through the services: exactly one of
+ * them wins, and the completion side effects run once or not at all.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:exchange-completion-race;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.sql.init.mode=never",
+        // Cached book versions only change through eviction during the test
+        "bookexchange.etag.version-ttl-ms=3600000"
+})
+class ExchangeCompletionRaceTest {
+    private static final int ROUNDS = 20;
+
+    @Autowired
+    private ExchangeService exchangeService;
+
+    @Autowired
+    private BookCounterService bookCounterService;
+
+    @Autowired
+    private EntityTagService entityTagService;
+
+    @SpyBean
+    private TrendingBooks trendingBooks;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ExchangeRepository exchangeRepository;
+
+    @Test
+    void confirmAndCancelHaveOneWinnerAndSingleSideEffects() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            Exchange exchange = awaitingSecondConfirmation();
+            Long user1Id = exchange.getUser1().getId();
+            Long user2Id = exchange.getUser2().getId();
+            // Cache both books' versions, so a stale tag would survive the completion
+            entityTagService.currentBookTag(exchange.getBook1().getId());
+            entityTagService.currentBookTag(exchange.getBook2().getId());
+
+            List<Boolean> outcomes = race(
+                    () -> exchangeService.confirmExchange(user2Id, exchange.getId()),
+                    () -> exchangeService.cancelExchange(user1Id, exchange.getId()));
+            boolean confirmed = outcomes.get(0);
+            boolean cancelled = outcomes.get(1);
+
+            assertThat(confirmed ^ cancelled).as("exactly one of confirm and cancel succeeds").isTrue();
+            ExchangeStatus status = exchangeRepository.findById(exchange.getId()).orElseThrow().getStatus();
+            assertThat(status).isEqualTo(confirmed ? ExchangeStatus.COMPLETED : ExchangeStatus.CANCELLED);
+
+            int expected = confirmed ? 1 : 0;
+            bookCounterService.flush();
+            for (Book book : List.of(exchange.getBook1(), exchange.getBook2())) {
+                Book current = bookRepository.findById(book.getId()).orElseThrow();
+                assertThat(current.getExchangeCount()).isEqualTo(expected);
+                assertThat(bookCounterService.pending(BookCounterService.Counter.EXCHANGES, book.getId())).isZero();
+                assertThat(current.isAvailable()).isEqualTo(!confirmed);
+                assertThat(entityTagService.currentBookTag(book.getId())).startsWith("b" + current.getVersion() + ".");
+                verify(trendingBooks, times(expected)).record(TrendingBooks.Event.EXCHANGE, book.getId());
+            }
+            for (Long userId : List.of(user1Id, user2Id)) {
+                User user = userRepository.findById(userId).orElseThrow();
+                assertThat(user.getExchangeCount()).isEqualTo(expected);
+                assertThat(user.getRatingCount()).isZero();
+            }
+        }
+    }
+
+    // Runs both tasks from a common start; each result is whether the task returned normally
+    private static List<Boolean> race(Callable<?> first, Callable<?> second) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            Future<Boolean> a = executor.submit(() -> attempt(start, first));
+            Future<Boolean> b = executor.submit(() -> attempt(start, second));
+            start.countDown();
+            return List.of(a.get(30, TimeUnit.SECONDS), b.get(30, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static boolean attempt(CountDownLatch start, Callable<?> task) throws Exception {
+        start.await();
+        try {
+            task.call();
+            return true;
+        } catch (BadRequestException e) {
+            return false;
+        }
+    }
+
+    private Exchange awaitingSecondConfirmation() {
+        User user1 = userRepository.save(newUser());
+        User user2 = userRepository.save(newUser());
+        Exchange exchange = new Exchange();
+        exchange.setUser1(user1);
+        exchange.setUser2(user2);
+        exchange.setBook1(bookRepository.save(newBook(user2)));
+        exchange.setBook2(bookRepository.save(newBook(user1)));
+        exchange.setStatus(ExchangeStatus.MEETUP_ARRANGED);
+        exchange.setUser1Confirmed(true);
+        return exchangeRepository.save(exchange);
+    }
+}
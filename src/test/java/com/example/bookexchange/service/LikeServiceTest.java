@@ -0,0 +1,185 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.exception.BadRequestException;
+import com.example.bookexchange.exception.ResourceNotFoundException;
+import com.example.bookexchange.model.entity.Book;
+import com.example.bookexchange.model.entity.User;
+import com.example.bookexchange.repository.BookLikeRepository;
+import com.example.bookexchange.repository.BookRepository;
+import com.example.bookexchange.repository.BookUnlikeRepository;
+import com.example.bookexchange.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static com.example.bookexchange.support.TestEntities.newBook;
+import static com.example.bookexchange.support.TestEntities.newUser;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:like-service;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.sql.init.mode=never",
+        // Like counts are read from the pending deltas, so they must not be flushed mid-test
+        "bookexchange.counters.flush-interval-ms=3600000"
+})
+class LikeServiceTest {
+
+    @Autowired
+    private LikeService likeService;
+
+    @Autowired
+    private LikeIndex likeIndex;
+
+    @Autowired
+    private BookCounterService bookCounterService;
+
+    @Autowired
+    private BookLikeRepository likeRepository;
+
+    @Autowired
+    private BookUnlikeRepository unlikeRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void likingTwiceCountsOnce() {
+        User user = userRepository.save(newUser());
+        Book book = newBookOf(userRepository.save(newUser()));
+
+        likeService.likeBook(user.getId(), book.getId());
+        likeService.likeBook(user.getId(), book.getId());
+
+        assertThat(likeRows(book, user)).isEqualTo(1);
+        assertThat(bookCounterService.pending(BookCounterService.Counter.LIKES, book.getId())).isEqualTo(1);
+        assertThat(likeIndex.hasLiked(book.getId(), user.getId())).isTrue();
+    }
+
+    @Test
+    void aLikeRemovedElsewhereCanBeMadeAgain() {
+        User user = userRepository.save(newUser());
+        Book book = newBookOf(userRepository.save(newUser()));
+        likeService.likeBook(user.getId(), book.getId());
+
+        // Unliked on another node: the row is gone but this node's index still has it
+        transactionTemplate.executeWithoutResult(status ->
+                likeRepository.deleteByBookIdAndUserId(book.getId(), user.getId()));
+        assertThat(likeIndex.hasLiked(book.getId(), user.getId())).isTrue();
+
+        likeService.likeBook(user.getId(), book.getId());
+
+        assertThat(likeRows(book, user)).isEqualTo(1);
+        assertThat(bookCounterService.pending(BookCounterService.Counter.LIKES, book.getId())).isEqualTo(2);
+    }
+
+    @Test
+    void unlikingRemovesTheLikeOnceAndIsIdempotent() {
+        User user = userRepository.save(newUser());
+        Book book = newBookOf(userRepository.save(newUser()));
+        likeService.likeBook(user.getId(), book.getId());
+
+        likeService.unlikeBook(user.getId(), book.getId());
+        likeService.unlikeBook(user.getId(), book.getId());
+
+        assertThat(likeRows(book, user)).isZero();
+        assertThat(bookCounterService.pending(BookCounterService.Counter.LIKES, book.getId())).isZero();
+        assertThat(likeIndex.hasLiked(book.getId(), user.getId())).isFalse();
+    }
+
+    @Test
+    void catchUpPicksUpLikesAndUnlikesMadeElsewhere() {
+        User user = userRepository.save(newUser());
+        Book book = newBookOf(userRepository.save(newUser()));
+
+        // Liked on another node: the row is there but this node's index never heard of it
+        transactionTemplate.executeWithoutResult(status -> likeRepository.insertIfAbsent(book.getId(), user.getId()));
+        assertThat(likeIndex.hasLiked(book.getId(), user.getId())).isFalse();
+        likeIndex.catchUp();
+        assertThat(likeIndex.hasLiked(book.getId(), user.getId())).isTrue();
+
+        // Then unliked there, which leaves an unlike record behind
+        transactionTemplate.executeWithoutResult(status -> {
+            likeRepository.deleteByBookIdAndUserId(book.getId(), user.getId());
+            unlikeRepository.recordUnlike(book.getId(), user.getId());
+        });
+        likeIndex.catchUp();
+        assertThat(likeIndex.hasLiked(book.getId(), user.getId())).isFalse();
+
+        // And liked again: the unlike is still within the overlap, but the like wins
+        transactionTemplate.executeWithoutResult(status -> likeRepository.insertIfAbsent(book.getId(), user.getId()));
+        likeIndex.catchUp();
+        assertThat(likeIndex.hasLiked(book.getId(), user.getId())).isTrue();
+    }
+
+    @Test
+    void userIdsBeyondThirtyTwoBitsAreIndexed() {
+        Book book = newBookOf(userRepository.save(newUser()));
+        long bigId = 1L << 40;
+
+        likeIndex.liked(book.getId(), bigId);
+        likeIndex.liked(book.getId(), bigId + 1);
+        likeIndex.unliked(book.getId(), bigId + 1);
+
+        assertThat(likeIndex.hasLiked(book.getId(), bigId)).isTrue();
+        assertThat(likeIndex.hasLiked(book.getId(), bigId + 1)).isFalse();
+        // Same low 32 bits as bigId, so a truncating index would answer true
+        assertThat(likeIndex.hasLiked(book.getId(), 0L)).isFalse();
+        assertThat(likeIndex.likedAmong(bigId, List.of(book.getId()))).containsExactly(book.getId());
+    }
+
+    @Test
+    void likingAMissingBookFails() {
+        User user = userRepository.save(newUser());
+
+        assertThatThrownBy(() -> likeService.likeBook(user.getId(), Long.MAX_VALUE))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void batchLookupReturnsTheLikedBooksInTheOrderGiven() {
+        User user = userRepository.save(newUser());
+        User owner = userRepository.save(newUser());
+        Book first = newBookOf(owner);
+        Book second = newBookOf(owner);
+        Book third = newBookOf(owner);
+        likeService.likeBook(user.getId(), third.getId());
+        likeService.likeBook(user.getId(), first.getId());
+
+        assertThat(likeService.getLikedBookIds(user.getId(),
+                List.of(third.getId(), second.getId(), first.getId(), Long.MAX_VALUE)))
+                .containsExactly(third.getId(), first.getId());
+        assertThat(likeService.getLikedBookIds(owner.getId(), List.of(first.getId(), third.getId()))).isEmpty();
+    }
+
+    @Test
+    void batchLookupIsCappedAtAPage() {
+        List<Long> tooMany = LongStream.rangeClosed(1, BookService.MAX_PAGE_SIZE + 1).boxed().toList();
+
+        assertThatThrownBy(() -> likeService.getLikedBookIds(1L, tooMany))
+                .isInstanceOf(BadRequestException.class);
+    }
+
+    private Book newBookOf(User owner) {
+        return bookRepository.save(newBook(owner));
+    }
+
+    private long likeRows(Book book, User user) {
+        return likeRepository.findAll().stream()
+                .filter(like -> like.getBook().getId().equals(book.getId()) && like.getUser().getId().equals(user.getId()))
+                .count();
+    }
+}
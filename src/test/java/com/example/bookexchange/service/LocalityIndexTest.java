@@ -0,0 +1,50 @@
+package com.example.bookexchange.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalityIndexTest {
+    private static final LocalityIndex.Region HOME = LocalityIndex.Region.of("Germany", "Berlin");
+
+    private final LocalityIndex index = new LocalityIndex(null);
+
+    @Test
+    void sameCountryMergesTheOtherCitiesInIdOrder() {
+        index.bookAvailable(1L, 10L, "Germany", "Berlin");
+        index.bookAvailable(2L, 11L, "Germany", "Munich");
+        index.bookAvailable(3L, 12L, "germany ", "Hamburg");
+        index.bookAvailable(4L, 10L, "Germany", "Berlin");
+        index.bookAvailable(5L, 11L, "Germany", "Munich");
+        index.bookAvailable(6L, 13L, "France", "Paris");
+        index.bookAvailable(7L, 12L, "Germany", "Hamburg");
+
+        assertThat(index.nearby(HOME, LocalityIndex.SAME_CITY, 99L, 0, 10)).containsExactly(1L, 4L);
+        assertThat(index.nearby(HOME, LocalityIndex.SAME_COUNTRY, 99L, 0, 10)).containsExactly(2L, 3L, 5L, 7L);
+    }
+
+    @Test
+    void sameCountryPagesAfterTheCursorAndSkipsTheCallersBooks() {
+        for (long id = 1; id <= 1000; id++) {
+            index.bookAvailable(id, 10L, "Germany", "Berlin");
+        }
+        index.bookAvailable(1001L, 11L, "Germany", "Munich");
+        index.bookAvailable(1002L, 12L, "Germany", "Munich");
+        index.bookAvailable(1003L, 11L, "Germany", "Hamburg");
+        index.bookAvailable(1004L, 13L, "Germany", "Hamburg");
+
+        assertThat(index.nearby(HOME, LocalityIndex.SAME_COUNTRY, 11L, 0, 2)).containsExactly(1002L, 1004L);
+        assertThat(index.nearby(HOME, LocalityIndex.SAME_COUNTRY, 99L, 1001L, 2)).containsExactly(1002L, 1003L);
+    }
+
+    @Test
+    void unavailableAndMovedBooksLeaveTheirCity() {
+        index.bookAvailable(1L, 10L, "Germany", "Munich");
+        index.bookAvailable(2L, 11L, "Germany", "Munich");
+        index.bookUnavailable(1L);
+        index.ownerMoved(11L, "Germany", "Berlin");
+
+        assertThat(index.nearby(HOME, LocalityIndex.SAME_COUNTRY, 99L, 0, 10)).isEmpty();
+        assertThat(index.nearby(HOME, LocalityIndex.SAME_CITY, 99L, 0, 10)).containsExactly(2L);
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.exception.BadRequestException;
+import com.example.bookexchange.exception.ServiceUnavailableException;
+import com.example.bookexchange.model.dto.request.MessageRequest;
+import com.example.bookexchange.model.dto.response.MessageResponse;
+import com.example.bookexchange.model.entity.Exchange;
+import com.example.bookexchange.model.entity.User;
+import com.example.bookexchange.model.enums.ExchangeStatus;
+import com.example.bookexchange.repository.BookRepository;
+import com.example.bookexchange.repository.ExchangeRepository;
+import com.example.bookexchange.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static com.example.bookexchange.support.TestEntities.newBook;
+import static com.example.bookexchange.support.TestEntities.newUser;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:message-write-buffer;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.sql.init.mode=never",
+        // The tests flush by hand, so what is buffered stays put until they do
+        "bookexchange.chat.flush-interval-ms=3600000",
+        "bookexchange.chat.buffer-capacity=" + MessageWriteBufferTest.CAPACITY
+})
+class MessageWriteBufferTest {
+    static final int CAPACITY = 4;
+
+    @Autowired
+    private MessageWriteBuffer messageWriteBuffer;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ExchangeRepository exchangeRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void rejectedMessageIsDeadLetteredAndTheRestAreWrittenInOrder() {
+        Long chatId = newChat();
+        Long senderId = jdbcTemplate.queryForObject("SELECT user1_id FROM chats WHERE id = ?", Long.class, chatId);
+        MessageResponse poison = message(Long.MAX_VALUE, senderId, "no such chat");
+        long deadLettersBefore = messageWriteBuffer.deadLetterCount();
+
+        messageWriteBuffer.enqueue(message(chatId, senderId, "first"));
+        messageWriteBuffer.enqueue(poison);
+        messageWriteBuffer.enqueue(message(chatId, senderId, "second"));
+        messageWriteBuffer.enqueue(message(chatId, senderId, "third"));
+        messageWriteBuffer.flush();
+
+        assertThat(jdbcTemplate.queryForList("SELECT content FROM messages WHERE chat_id = ? ORDER BY id",
+                String.class, chatId)).containsExactly("first", "second", "third");
+        assertThat(messageWriteBuffer.deadLetters()).contains(poison);
+        assertThat(messageWriteBuffer.deadLetterCount()).isEqualTo(deadLettersBefore + 1);
+        assertThat(messageWriteBuffer.pending(chatId)).isEmpty();
+        assertThat(messageWriteBuffer.pending(Long.MAX_VALUE)).isEmpty();
+    }
+
+    @Test
+    void contentTheDatabaseWouldRefuseIsRejectedBeforeBuffering() {
+        Long chatId = newChat();
+        Long senderId = jdbcTemplate.queryForObject("SELECT user1_id FROM chats WHERE id = ?", Long.class, chatId);
+        MessageRequest request = new MessageRequest();
+        request.setContent("nul \u0000 byte");
+
+        assertThatThrownBy(() -> chatService.sendMessage(senderId, chatId, request))
+                .isInstanceOf(BadRequestException.class);
+        request.setContent("x".repeat(MessageRequest.MAX_CONTENT_LENGTH + 1));
+        assertThatThrownBy(() -> chatService.sendMessage(senderId, chatId, request))
+                .isInstanceOf(BadRequestException.class);
+        assertThat(messageWriteBuffer.pending(chatId)).isEmpty();
+    }
+
+    @Test
+    void markReadCoversBufferedMessagesWithoutFlushing() {
+        Long chatId = newChat();
+        Long senderId = jdbcTemplate.queryForObject("SELECT user1_id FROM chats WHERE id = ?", Long.class, chatId);
+        Long readerId = jdbcTemplate.queryForObject("SELECT user2_id FROM chats WHERE id = ?", Long.class, chatId);
+
+        messageWriteBuffer.enqueue(message(chatId, senderId, "before"));
+        chatService.markRead(readerId, chatId);
+        assertThat(messageWriteBuffer.pending(chatId)).allMatch(MessageResponse::isRead);
+        MessageResponse after = message(chatId, senderId, "after");
+        after.setSentAt(after.getSentAt().plusSeconds(1));
+        messageWriteBuffer.enqueue(after);
+        messageWriteBuffer.flush();
+
+        assertThat(jdbcTemplate.queryForList("SELECT read FROM messages WHERE chat_id = ? ORDER BY id",
+                Boolean.class, chatId)).containsExactly(true, false);
+        assertThat(jdbcTemplate.queryForObject("SELECT unread_count FROM chat_inbox WHERE chat_id = ? AND user_id = ?",
+                Integer.class, chatId, readerId)).isEqualTo(1);
+    }
+
+    @Test
+    void fullBufferRefusesMessagesUntilAFlushMakesRoom() {
+        Long chatId = newChat();
+        Long otherChatId = newChat();
+        Long senderId = jdbcTemplate.queryForObject("SELECT user1_id FROM chats WHERE id = ?", Long.class, chatId);
+        Long otherSenderId = jdbcTemplate.queryForObject("SELECT user1_id FROM chats WHERE id = ?", Long.class, otherChatId);
+
+        for (int i = 0; i < CAPACITY - 1; i++) {
+            messageWriteBuffer.enqueue(message(chatId, senderId, "message " + i));
+        }
+        messageWriteBuffer.enqueue(message(otherChatId, otherSenderId, "other"));
+        assertThat(messageWriteBuffer.depth()).isEqualTo(CAPACITY);
+        assertThat(messageWriteBuffer.pending(chatId)).hasSize(CAPACITY - 1);
+        assertThat(messageWriteBuffer.pending(otherChatId)).extracting(MessageResponse::getContent).containsExactly("other");
+        assertThatThrownBy(() -> messageWriteBuffer.enqueue(message(chatId, senderId, "one too many")))
+                .isInstanceOf(ServiceUnavailableException.class);
+
+        messageWriteBuffer.flush();
+        assertThat(messageWriteBuffer.depth()).isZero();
+        assertThat(messageWriteBuffer.pending(chatId)).isEmpty();
+        messageWriteBuffer.enqueue(message(chatId, senderId, "accepted again"));
+        assertThat(messageWriteBuffer.pending(chatId)).extracting(MessageResponse::getContent)
+                .containsExactly("accepted again");
+        messageWriteBuffer.flush();
+    }
+
+    private Long newChat() {
+        return transactionTemplate.execute(status -> {
+            User user1 = userRepository.save(newUser());
+            User user2 = userRepository.save(newUser());
+            Exchange exchange = new Exchange();
+            exchange.setUser1(user1);
+            exchange.setUser2(user2);
+            exchange.setBook1(bookRepository.save(newBook(user2)));
+            exchange.setBook2(bookRepository.save(newBook(user1)));
+            exchange.setStatus(ExchangeStatus.PROPOSED);
+            return chatService.openChat(exchangeRepository.save(exchange)).getId();
+        });
+    }
+
+    private static MessageResponse message(Long chatId, Long senderId, String content) {
+        return new MessageResponse(null, chatId, senderId, content, false,
+                LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.model.dto.request.ReviewRequest;
+import com.example.bookexchange.model.dto.response.ReviewResponse;
+import com.example.bookexchange.model.entity.Exchange;
+import com.example.bookexchange.model.entity.User;
+import com.example.bookexchange.model.enums.ExchangeStatus;
+import com.example.bookexchange.repository.BookRepository;
+import com.example.bookexchange.repository.ExchangeRepository;
+import com.example.bookexchange.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static com.example.bookexchange.support.TestEntities.newBook;
+import static com.example.bookexchange.support.TestEntities.newUser;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The incremental rating deltas applied by reviews, and the nightly rebuild that repairs
+ * them when they drift.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:rating-aggregates;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.sql.init.mode=never"
+})
+class RatingAggregatesTest {
+    @Autowired
+    private ReviewService reviewService;
+
+    @Autowired
+    private RatingReconciliationJob reconciliationJob;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ExchangeRepository exchangeRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void reviewsAddAndRemoveTheirRating() {
+        User reviewed = userRepository.save(newUser());
+        User first = partnerOf(reviewed);
+        User second = partnerOf(reviewed);
+
+        ReviewResponse four = reviewService.createReview(first.getId(), review(reviewed, 4));
+        reviewService.createReview(second.getId(), review(reviewed, 2));
+
+        User afterTwo = userRepository.findById(reviewed.getId()).orElseThrow();
+        assertThat(afterTwo.getRatingSum()).isEqualTo(6);
+        assertThat(afterTwo.getRatingCount()).isEqualTo(2);
+        assertThat(afterTwo.getRating4Count()).isEqualTo(1);
+        assertThat(afterTwo.getRating2Count()).isEqualTo(1);
+        assertThat(afterTwo.getAverageRating()).isEqualTo(3.0);
+        assertThat(afterTwo.getVersion()).isGreaterThan(reviewed.getVersion());
+
+        reviewService.deleteReview(first.getId(), four.getId());
+
+        User afterDelete = userRepository.findById(reviewed.getId()).orElseThrow();
+        assertThat(afterDelete.getRatingSum()).isEqualTo(2);
+        assertThat(afterDelete.getRatingCount()).isEqualTo(1);
+        assertThat(afterDelete.getRating4Count()).isZero();
+        assertThat(afterDelete.getAverageRating()).isEqualTo(2.0);
+    }
+
+    @Test
+    void reconciliationRepairsDriftedUsersOnly() {
+        User drifted = userRepository.save(newUser());
+        User accurate = userRepository.save(newUser());
+        User unreviewed = userRepository.save(newUser());
+        reviewService.createReview(partnerOf(drifted).getId(), review(drifted, 5));
+        reviewService.createReview(partnerOf(accurate).getId(), review(accurate, 3));
+        // A delta without a review behind it, and one left behind on a user with no reviews
+        transactionTemplate.executeWithoutResult(status -> {
+            userRepository.applyRatingDelta(drifted.getId(), 1, 1);
+            userRepository.applyRatingDelta(unreviewed.getId(), 4, 1);
+        });
+        long accurateVersion = userRepository.findVersionById(accurate.getId()).orElseThrow();
+
+        reconciliationJob.reconcile();
+
+        User repaired = userRepository.findById(drifted.getId()).orElseThrow();
+        assertThat(repaired.getRatingSum()).isEqualTo(5);
+        assertThat(repaired.getRatingCount()).isEqualTo(1);
+        assertThat(repaired.getRating1Count()).isZero();
+        assertThat(repaired.getRating5Count()).isEqualTo(1);
+        assertThat(repaired.getAverageRating()).isEqualTo(5.0);
+
+        User cleared = userRepository.findById(unreviewed.getId()).orElseThrow();
+        assertThat(cleared.getRatingSum()).isZero();
+        assertThat(cleared.getRatingCount()).isZero();
+        assertThat(cleared.getRating4Count()).isZero();
+        assertThat(cleared.getAverageRating()).isZero();
+
+        assertThat(userRepository.findVersionById(accurate.getId())).contains(accurateVersion);
+    }
+
+    @Test
+    void deltasAfterReconciliationApplyOnTop() {
+        User reviewed = userRepository.save(newUser());
+        reviewService.createReview(partnerOf(reviewed).getId(), review(reviewed, 4));
+        transactionTemplate.executeWithoutResult(status -> userRepository.applyRatingDelta(reviewed.getId(), 2, 1));
+
+        reconciliationJob.reconcile();
+        reviewService.createReview(partnerOf(reviewed).getId(), review(reviewed, 2));
+
+        User user = userRepository.findById(reviewed.getId()).orElseThrow();
+        assertThat(user.getRatingSum()).isEqualTo(6);
+        assertThat(user.getRatingCount()).isEqualTo(2);
+        assertThat(user.getRating2Count()).isEqualTo(1);
+    }
+
+    // A user who has completed an exchange with reviewed, and so may review them
+    private User partnerOf(User reviewed) {
+        User partner = userRepository.save(newUser());
+        Exchange exchange = new Exchange();
+        exchange.setUser1(partner);
+        exchange.setUser2(reviewed);
+        exchange.setBook1(bookRepository.save(newBook(reviewed)));
+        exchange.setBook2(bookRepository.save(newBook(partner)));
+        exchange.setStatus(ExchangeStatus.COMPLETED);
+        exchangeRepository.save(exchange);
+        return partner;
+    }
+
+    private static ReviewRequest review(User reviewed, int rating) {
+        ReviewRequest request = new ReviewRequest();
+        request.setReviewedUserId(reviewed.getId());
+        request.setRating(rating);
+        return request;
+    }
+}
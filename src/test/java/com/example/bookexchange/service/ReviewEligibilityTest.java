@@ -0,0 +1,109 @@
+package com.example.bookexchange.service;
+
+import com.example.bookexchange.model.dto.request.ReviewRequest;
+import com.example.bookexchange.model.entity.Exchange;
+import com.example.bookexchange.model.entity.User;
+import com.example.bookexchange.model.enums.ExchangeStatus;
+import com.example.bookexchange.repository.BookRepository;
+import com.example.bookexchange.repository.ExchangeRepository;
+import com.example.bookexchange.repository.UserRepository;
+import com.example.bookexchange.util.QueryCounters;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static com.example.bookexchange.support.TestEntities.newBook;
+import static com.example.bookexchange.support.TestEntities.newUser;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Review eligibility is a single existence probe: reviewing a user with a long exchange
+ * history issues the same statements, and loads the same entities, as reviewing a newcomer.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:review-eligibility;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.sql.init.mode=never"
+})
+class ReviewEligibilityTest {
+    private static final int FEW = 1;
+    private static final int MANY = 200;
+
+    @Autowired
+    private ReviewService reviewService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ExchangeRepository exchangeRepository;
+
+    @Test
+    void eligibilityCheckIsOneStatement() {
+        User reviewed = userWithHistory(MANY);
+        User partner = userRepository.save(newUser());
+        completeExchange(partner, reviewed);
+
+        QueryCounters counters = QueryCounters.start();
+        try {
+            assertThat(exchangeRepository.existsCompletedExchangeBetween(partner.getId(), reviewed.getId())).isTrue();
+            assertThat(exchangeRepository.existsCompletedExchangeBetween(reviewed.getId(), partner.getId())).isTrue();
+        } finally {
+            QueryCounters.clear();
+        }
+        assertThat(counters.getStatements()).isEqualTo(2);
+        assertThat(counters.getEntityLoads()).isZero();
+    }
+
+    @Test
+    void createReviewIsIndependentOfExchangeHistory() {
+        QueryCounters few = countCreateReview(userWithHistory(FEW));
+        QueryCounters many = countCreateReview(userWithHistory(MANY));
+
+        assertThat(many.getStatements())
+                .as("statements for a history of %d exchanges vs %d", MANY, FEW)
+                .isEqualTo(few.getStatements());
+        assertThat(many.getEntityLoads())
+                .as("entities loaded for a history of %d exchanges vs %d", MANY, FEW)
+                .isEqualTo(few.getEntityLoads());
+    }
+
+    private QueryCounters countCreateReview(User reviewed) {
+        User reviewer = userRepository.save(newUser());
+        completeExchange(reviewer, reviewed);
+        ReviewRequest request = new ReviewRequest();
+        request.setReviewedUserId(reviewed.getId());
+        request.setRating(5);
+
+        QueryCounters counters = QueryCounters.start();
+        try {
+            reviewService.createReview(reviewer.getId(), request);
+        } finally {
+            QueryCounters.clear();
+        }
+        return counters;
+    }
+
+    private User userWithHistory(int exchanges) {
+        User user = userRepository.save(newUser());
+        for (int i = 0; i < exchanges; i++) {
+            completeExchange(userRepository.save(newUser()), user);
+        }
+        return user;
+    }
+
+    private void completeExchange(User user1, User user2) {
+        Exchange exchange = new Exchange();
+        exchange.setUser1(user1);
+        exchange.setUser2(user2);
+        exchange.setBook1(bookRepository.save(newBook(user2)));
+        exchange.setBook2(bookRepository.save(newBook(user1)));
+        exchange.setStatus(ExchangeStatus.COMPLETED);
+        exchangeRepository.save(exchange);
+    }
+}
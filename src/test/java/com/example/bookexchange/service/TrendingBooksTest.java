@@ -0,0 +1,59 @@
+package com.example.bookexchange.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrendingBooksTest {
+    private static final int TOP_K = 3;
+
+    private final LocalityIndex localityIndex = new LocalityIndex(null);
+    private final TrendingBooks trending = new TrendingBooks(localityIndex, TOP_K);
+
+    @Test
+    void aTrendingPageStillFillsAfterExchangesComplete() {
+        for (long bookId = 1; bookId <= 9; bookId++) {
+            localityIndex.bookAvailable(bookId, bookId + 100, "Germany", "Berlin");
+        }
+        for (long bookId = 3; bookId <= 9; bookId++) {
+            trending.record(TrendingBooks.Event.LIKE, bookId);
+        }
+        // Two exchanges complete, in the order ExchangeService records them
+        for (long bookId = 1; bookId <= 2; bookId++) {
+            for (int i = 0; i < 10; i++) {
+                trending.record(TrendingBooks.Event.MATCH, bookId);
+            }
+            trending.record(TrendingBooks.Event.EXCHANGE, bookId);
+            localityIndex.bookUnavailable(bookId);
+            trending.bookUnavailable(bookId);
+        }
+
+        assertThat(trending.top(TrendingBooks.Window.HOUR, null, TOP_K)).containsExactly(3L, 4L, 5L);
+        assertThat(trending.top(TrendingBooks.Window.DAY, "germany", TOP_K)).containsExactly(3L, 4L, 5L);
+    }
+
+    @Test
+    void aBookIsRankedAgainWithItsScoreOnceAvailable() {
+        localityIndex.bookAvailable(1L, 101L, "Germany", "Berlin");
+        localityIndex.bookAvailable(2L, 102L, "Germany", "Berlin");
+        trending.record(TrendingBooks.Event.LIKE, 1L);
+        trending.record(TrendingBooks.Event.MATCH, 2L);
+
+        localityIndex.bookUnavailable(2L);
+        trending.bookUnavailable(2L);
+        assertThat(trending.top(TrendingBooks.Window.HOUR, null, TOP_K)).containsExactly(1L);
+
+        localityIndex.bookAvailable(2L, 102L, "Germany", "Berlin");
+        trending.bookAvailable(2L);
+        assertThat(trending.top(TrendingBooks.Window.HOUR, null, TOP_K)).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void eventsOnUnavailableBooksAreNotRanked() {
+        localityIndex.bookAvailable(1L, 101L, "Germany", "Berlin");
+        trending.record(TrendingBooks.Event.LIKE, 1L);
+        trending.record(TrendingBooks.Event.MATCH, 2L);
+
+        assertThat(trending.top(TrendingBooks.Window.HOUR, null, TOP_K)).containsExactly(1L);
+    }
+}
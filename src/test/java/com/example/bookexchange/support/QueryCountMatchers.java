@@ -0,0 +1,68 @@
+package com.example.bookexchange.support;
+
+import com.example.bookexchange.config.StatementBudget;
+import com.example.bookexchange.util.QueryCounters;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultMatcher;
+import org.springframework.web.method.HandlerMethod;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * MockMvc matchers over the statement counts recorded by
+ * {@link com.example.bookexchange.config.RequestQueryMetricsFilter}, e.g.
+ * {@code .andExpect(statementsAtMost(3))} or {@code .andExpect(withinStatementBudget())}.
+ */
+public final class QueryCountMatchers {
+
+    private QueryCountMatchers() {
+    }
+
+    public static ResultMatcher statementsAtMost(long max) {
+        return result -> assertThat(statements(result))
+                .as("SQL statements issued by %s", describe(result))
+                .isLessThanOrEqualTo(max);
+    }
+
+    public static ResultMatcher entityLoadsAtMost(long max) {
+        return result -> assertThat(counters(result).getEntityLoads())
+                .as("entities loaded by %s", describe(result))
+                .isLessThanOrEqualTo(max);
+    }
+
+    public static ResultMatcher collectionFetchesAtMost(long max) {
+        return result -> assertThat(counters(result).getCollectionFetches())
+                .as("lazy collections initialized by %s", describe(result))
+                .isLessThanOrEqualTo(max);
+    }
+
+    // Checks the count against the @StatementBudget declared on the handler that served the request
+    public static ResultMatcher withinStatementBudget() {
+        return result -> {
+            assertThat(result.getHandler())
+                    .as("handler of %s", describe(result))
+                    .isInstanceOf(HandlerMethod.class);
+            StatementBudget budget = ((HandlerMethod) result.getHandler()).getMethodAnnotation(StatementBudget.class);
+            assertThat(budget)
+                    .as("@StatementBudget on the handler of %s", describe(result))
+                    .isNotNull();
+            statementsAtMost(budget.value()).match(result);
+        };
+    }
+
+    public static long statements(MvcResult result) {
+        return counters(result).getStatements();
+    }
+
+    private static QueryCounters counters(MvcResult result) {
+        Object counters = result.getRequest().getAttribute(QueryCounters.REQUEST_ATTRIBUTE);
+        assertThat(counters)
+                .as("query counters of %s; is RequestQueryMetricsFilter in the filter chain?", describe(result))
+                .isInstanceOf(QueryCounters.class);
+        return (QueryCounters) counters;
+    }
+
+    private static String describe(MvcResult result) {
+        return result.getRequest().getMethod() + " " + result.getRequest().getRequestURI();
+    }
+}
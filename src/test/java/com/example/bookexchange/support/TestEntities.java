@@ -0,0 +1,34 @@
+package com.example.bookexchange.support;
+
+import com.example.bookexchange.model.entity.Book;
+import com.example.bookexchange.model.entity.User;
+
+import java.util.UUID;
+
+// Minimal valid entities for tests that seed their own rows
+public final class TestEntities {
+    private TestEntities() {
+    }
+
+    public static User newUser() {
+        String name = UUID.randomUUID().toString();
+        User user = new User();
+        user.setKeycloakId(name);
+        user.setUsername(name);
+        user.setEmail(name + "@example.com");
+        user.setPassword("n/a");
+        user.setCountry("Spain");
+        user.setCity("Madrid");
+        user.setProfilePicture("/default-avatar.png");
+        return user;
+    }
+
+    public static Book newBook(User owner) {
+        Book book = new Book();
+        book.setTitle("Title");
+        book.setAuthor("Author");
+        book.setPictureUrl("/cover.png");
+        book.setOwner(owner);
+        return book;
+    }
+}
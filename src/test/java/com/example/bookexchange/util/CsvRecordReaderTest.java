@@ -0,0 +1,68 @@
+package com.example.bookexchange.util;
+
+import com.example.bookexchange.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CsvRecordReaderTest {
+
+    @Test
+    void readsOneRecordPerLine() throws IOException {
+        CsvRecordReader csv = reader("title,author\nDune,Herbert\n");
+
+        assertThat(csv.next()).containsExactly("title", "author");
+        assertThat(csv.next()).containsExactly("Dune", "Herbert");
+        assertThat(csv.getRecordLine()).isEqualTo(2);
+        assertThat(csv.next()).isNull();
+    }
+
+    @Test
+    void quotedFieldsKeepSeparatorsQuotesAndLineBreaks() throws IOException {
+        CsvRecordReader csv = reader("\"Dune, Part 1\",\"say \"\"hi\"\"\",\"two\nlines\"\nnext,row\n");
+
+        assertThat(csv.next()).containsExactly("Dune, Part 1", "say \"hi\"", "two\nlines");
+        assertThat(csv.getRecordLine()).isEqualTo(1);
+        assertThat(csv.next()).containsExactly("next", "row");
+        assertThat(csv.getRecordLine()).isEqualTo(3);
+    }
+
+    @Test
+    void acceptsCrLfAndAMissingFinalLineBreak() throws IOException {
+        CsvRecordReader csv = reader("a,b\r\nc,d");
+
+        assertThat(csv.next()).containsExactly("a", "b");
+        assertThat(csv.next()).containsExactly("c", "d");
+        assertThat(csv.getRecordLine()).isEqualTo(2);
+        assertThat(csv.next()).isNull();
+    }
+
+    @Test
+    void keepsEmptyFieldsAndBlankLines() throws IOException {
+        CsvRecordReader csv = reader(",,\n\nlast\n");
+
+        assertThat(csv.next()).containsExactly("", "", "");
+        assertThat(csv.next()).containsExactly("");
+        assertThat(csv.next()).containsExactly("last");
+        assertThat(csv.getRecordLine()).isEqualTo(3);
+    }
+
+    @Test
+    void rejectsAnUnterminatedQuote() throws IOException {
+        CsvRecordReader csv = reader("ok\n\"never closed,\nstill open");
+
+        assertThat(csv.next()).containsExactly("ok");
+        assertThatThrownBy(csv::next)
+                .isInstanceOf(BadRequestException.class)
+                .hasMessageContaining("line 2");
+    }
+
+    private static CsvRecordReader reader(String content) {
+        return new CsvRecordReader(new StringReader(content));
+    }
+}
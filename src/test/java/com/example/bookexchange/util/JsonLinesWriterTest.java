@@ -0,0 +1,66 @@
+package com.example.bookexchange.util;
+
+import com.example.bookexchange.exception.ResourceNotFoundException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JsonLinesWriterTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void writesOneLinePerRow() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        JsonLinesWriter.<Map<String, Integer>>stream(mapper, response, sink -> {
+            sink.accept(Map.of("id", 1));
+            sink.accept(Map.of("id", 2));
+        });
+
+        assertThat(response.getContentType()).startsWith("application/x-ndjson");
+        assertThat(response.getContentAsString()).isEqualTo("{\"id\":1}\n{\"id\":2}\n");
+    }
+
+    @Test
+    void anEmptyListIsAnEmptyBody() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        JsonLinesWriter.<Object>stream(mapper, response, sink -> {
+        });
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsString()).isEmpty();
+    }
+
+    @Test
+    void aFailureBeforeTheFirstRowLeavesTheResponseToTheExceptionHandlers() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThatThrownBy(() -> JsonLinesWriter.<Object>stream(mapper, response, sink -> {
+            throw new ResourceNotFoundException("User not found");
+        })).isInstanceOf(ResourceNotFoundException.class);
+
+        assertThat(response.isCommitted()).isFalse();
+        assertThat(response.getContentType()).isNull();
+    }
+
+    @Test
+    void aFailureAfterRowsEndsTheBodyWithAnErrorLine() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        JsonLinesWriter.<Map<String, Integer>>stream(mapper, response, sink -> {
+            sink.accept(Map.of("id", 1));
+            throw new IllegalStateException("connection lost");
+        });
+
+        String[] lines = response.getContentAsString().split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).isEqualTo("{\"id\":1}");
+        assertThat(mapper.readTree(lines[1]).path("error").asText()).isEqualTo("Internal Server Error");
+    }
+}